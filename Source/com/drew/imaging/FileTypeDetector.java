@@ -21,54 +21,68 @@
 package com.drew.imaging;
 
 import com.drew.lang.ByteTrie;
+import com.drew.lang.CompiledByteTrie;
 import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
 
 import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Examines the a file's first bytes and estimates the file's type.
  */
 public class FileTypeDetector
 {
-    private final static ByteTrie<FileType> _root;
+    private final static CompiledByteTrie<FileType> _root;
 
     static
     {
-        _root = new ByteTrie<FileType>();
-        _root.setDefaultValue(FileType.Unknown);
+        ByteTrie<FileType> root = new ByteTrie<FileType>();
+        root.setDefaultValue(FileType.Unknown);
 
         // https://en.wikipedia.org/wiki/List_of_file_signatures
 
-        _root.addPath(FileType.Jpeg, new byte[]{(byte)0xff, (byte)0xd8});
-        _root.addPath(FileType.Tiff, "II".getBytes(), new byte[]{0x2a, 0x00});
-        _root.addPath(FileType.Tiff, "MM".getBytes(), new byte[]{0x00, 0x2a});
-        _root.addPath(FileType.Psd, "8BPS".getBytes());
-        _root.addPath(FileType.Png, new byte[]{(byte)0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A, 0x00, 0x00, 0x00, 0x0D, 0x49, 0x48, 0x44, 0x52});
-        _root.addPath(FileType.Bmp, "BM".getBytes()); // Standard Bitmap Windows and OS/2
-        _root.addPath(FileType.Bmp, "BA".getBytes()); // OS/2 Bitmap Array
-        _root.addPath(FileType.Bmp, "CI".getBytes()); // OS/2 Color Icon
-        _root.addPath(FileType.Bmp, "CP".getBytes()); // OS/2 Color Pointer
-        _root.addPath(FileType.Bmp, "IC".getBytes()); // OS/2 Icon
-        _root.addPath(FileType.Bmp, "PT".getBytes()); // OS/2 Pointer
-        _root.addPath(FileType.Gif, "GIF87a".getBytes());
-        _root.addPath(FileType.Gif, "GIF89a".getBytes());
-        _root.addPath(FileType.Ico, new byte[]{0x00, 0x00, 0x01, 0x00});
-        _root.addPath(FileType.Pcx, new byte[]{0x0A, 0x00, 0x01}); // multiple PCX versions, explicitly listed
-        _root.addPath(FileType.Pcx, new byte[]{0x0A, 0x02, 0x01});
-        _root.addPath(FileType.Pcx, new byte[]{0x0A, 0x03, 0x01});
-        _root.addPath(FileType.Pcx, new byte[]{0x0A, 0x05, 0x01});
-        _root.addPath(FileType.Riff, "RIFF".getBytes());
-
-        _root.addPath(FileType.Arw, "II".getBytes(), new byte[]{0x2a, 0x00, 0x08, 0x00});
-        _root.addPath(FileType.Crw, "II".getBytes(), new byte[]{0x1a, 0x00, 0x00, 0x00}, "HEAPCCDR".getBytes());
-        _root.addPath(FileType.Cr2, "II".getBytes(), new byte[]{0x2a, 0x00, 0x10, 0x00, 0x00, 0x00, 0x43, 0x52});
-        _root.addPath(FileType.Nef, "MM".getBytes(), new byte[]{0x00, 0x2a, 0x00, 0x00, 0x00, (byte)0x80, 0x00});
-        _root.addPath(FileType.Orf, "IIRO".getBytes(), new byte[]{(byte)0x08, 0x00});
-        _root.addPath(FileType.Orf, "MMOR".getBytes(), new byte[]{(byte)0x00, 0x00});
-        _root.addPath(FileType.Orf, "IIRS".getBytes(), new byte[]{(byte)0x08, 0x00});
-        _root.addPath(FileType.Raf, "FUJIFILMCCD-RAW".getBytes());
-        _root.addPath(FileType.Rw2, "II".getBytes(), new byte[]{0x55, 0x00});
+        root.addPath(FileType.Jpeg, new byte[]{(byte)0xff, (byte)0xd8});
+        root.addPath(FileType.Tiff, "II".getBytes(), new byte[]{0x2a, 0x00});
+        root.addPath(FileType.Tiff, "MM".getBytes(), new byte[]{0x00, 0x2a});
+        root.addPath(FileType.Tiff, "II".getBytes(), new byte[]{0x2b, 0x00}); // BigTIFF
+        root.addPath(FileType.Tiff, "MM".getBytes(), new byte[]{0x00, 0x2b}); // BigTIFF
+        root.addPath(FileType.Psd, "8BPS".getBytes());
+        root.addPath(FileType.Png, new byte[]{(byte)0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A, 0x00, 0x00, 0x00, 0x0D, 0x49, 0x48, 0x44, 0x52});
+        root.addPath(FileType.Bmp, "BM".getBytes()); // Standard Bitmap Windows and OS/2
+        root.addPath(FileType.Bmp, "BA".getBytes()); // OS/2 Bitmap Array
+        root.addPath(FileType.Bmp, "CI".getBytes()); // OS/2 Color Icon
+        root.addPath(FileType.Bmp, "CP".getBytes()); // OS/2 Color Pointer
+        root.addPath(FileType.Bmp, "IC".getBytes()); // OS/2 Icon
+        root.addPath(FileType.Bmp, "PT".getBytes()); // OS/2 Pointer
+        root.addPath(FileType.Gif, "GIF87a".getBytes());
+        root.addPath(FileType.Gif, "GIF89a".getBytes());
+        root.addPath(FileType.Ico, new byte[]{0x00, 0x00, 0x01, 0x00});
+        root.addPath(FileType.Pcx, new byte[]{0x0A, 0x00, 0x01}); // multiple PCX versions, explicitly listed
+        root.addPath(FileType.Pcx, new byte[]{0x0A, 0x02, 0x01});
+        root.addPath(FileType.Pcx, new byte[]{0x0A, 0x03, 0x01});
+        root.addPath(FileType.Pcx, new byte[]{0x0A, 0x05, 0x01});
+        root.addPath(FileType.Riff, "RIFF".getBytes());
+
+        root.addPath(FileType.Arw, "II".getBytes(), new byte[]{0x2a, 0x00, 0x08, 0x00});
+        root.addPath(FileType.Crw, "II".getBytes(), new byte[]{0x1a, 0x00, 0x00, 0x00}, "HEAPCCDR".getBytes());
+        root.addPath(FileType.Cr2, "II".getBytes(), new byte[]{0x2a, 0x00, 0x10, 0x00, 0x00, 0x00, 0x43, 0x52});
+        root.addPath(FileType.Nef, "MM".getBytes(), new byte[]{0x00, 0x2a, 0x00, 0x00, 0x00, (byte)0x80, 0x00});
+        root.addPath(FileType.Orf, "IIRO".getBytes(), new byte[]{(byte)0x08, 0x00});
+        root.addPath(FileType.Orf, "MMOR".getBytes(), new byte[]{(byte)0x00, 0x00});
+        root.addPath(FileType.Orf, "IIRS".getBytes(), new byte[]{(byte)0x08, 0x00});
+        root.addPath(FileType.Raf, "FUJIFILMCCD-RAW".getBytes());
+        root.addPath(FileType.Rw2, "II".getBytes(), new byte[]{0x55, 0x00});
+
+        // Detection occurs for every file processed, so search a form that doesn't box or allocate
+        _root = root.compile();
     }
 
     private FileTypeDetector() throws Exception
@@ -107,4 +121,121 @@ public class FileTypeDetector
         //noinspection ConstantConditions
         return _root.find(bytes);
     }
+
+    /**
+     * Examines the first bytes of a file's data, held in <code>prefix</code>, and estimates the file's type.
+     * <p>
+     * No more than {@link #getMaxPrefixLength()} bytes are examined, so callers need provide no more than that.
+     */
+    @NotNull
+    public static FileType detectFileType(@NotNull final byte[] prefix)
+    {
+        //noinspection ConstantConditions
+        return _root.find(prefix, 0, Math.min(prefix.length, _root.getMaxDepth()));
+    }
+
+    /**
+     * Examines the first bytes of a file's data, being the remaining bytes of <code>prefix</code>, and estimates
+     * the file's type. The buffer's position is not modified.
+     * <p>
+     * No more than {@link #getMaxPrefixLength()} bytes are examined, so callers need provide no more than that.
+     */
+    @NotNull
+    public static FileType detectFileType(@NotNull final ByteBuffer prefix)
+    {
+        int count = Math.min(prefix.remaining(), _root.getMaxDepth());
+
+        if (prefix.hasArray()) {
+            //noinspection ConstantConditions
+            return _root.find(prefix.array(), prefix.arrayOffset() + prefix.position(), count);
+        }
+
+        byte[] bytes = new byte[count];
+        prefix.duplicate().get(bytes);
+        return detectFileType(bytes);
+    }
+
+    /**
+     * Examines a file's first bytes and estimates the file's type.
+     * <p>
+     * Only the first {@link #getMaxPrefixLength()} bytes are read, in a single positional read, without setting up
+     * a buffered stream. Empty files are of type {@link FileType#Unknown}.
+     *
+     * @throws IOException if the file could not be read.
+     */
+    @NotNull
+    public static FileType detectFileType(@NotNull final File file) throws IOException
+    {
+        ByteBuffer scratch = ByteBuffer.allocate(_root.getMaxDepth());
+        return detectFileType(file, scratch);
+    }
+
+    /**
+     * Estimates the type of each of <code>files</code>, as for {@link #detectFileType(File)}, reusing a single
+     * scratch buffer for all of them. Files that could not be read are of type {@link FileType#Unknown}.
+     *
+     * @return the type of each file, in the iteration order of <code>files</code>.
+     */
+    @NotNull
+    public static Map<File, FileType> detectFileTypes(@NotNull final Collection<File> files)
+    {
+        return detectFileTypes(files, null);
+    }
+
+    /**
+     * Estimates the type of each of <code>files</code>, as for {@link #detectFileType(File)}, reusing a single
+     * scratch buffer for all of them. Files that could not be read are of type {@link FileType#Unknown}, and the
+     * batch continues with the next file.
+     *
+     * @param errors if not <code>null</code>, receives the exception thrown when reading each file that could not be
+     *               read.
+     * @return the type of each file, in the iteration order of <code>files</code>.
+     */
+    @NotNull
+    public static Map<File, FileType> detectFileTypes(@NotNull final Collection<File> files, @Nullable final Map<File, IOException> errors)
+    {
+        Map<File, FileType> fileTypes = new LinkedHashMap<File, FileType>();
+        ByteBuffer scratch = ByteBuffer.allocate(_root.getMaxDepth());
+        for (File file : files) {
+            FileType fileType;
+            try {
+                fileType = detectFileType(file, scratch);
+            } catch (IOException e) {
+                if (errors != null)
+                    errors.put(file, e);
+                fileType = FileType.Unknown;
+            }
+            fileTypes.put(file, fileType);
+        }
+        return fileTypes;
+    }
+
+    /**
+     * Gets the number of leading bytes examined during detection. Reading more than this is unnecessary.
+     */
+    public static int getMaxPrefixLength()
+    {
+        return _root.getMaxDepth();
+    }
+
+    @NotNull
+    private static FileType detectFileType(@NotNull final File file, @NotNull final ByteBuffer scratch) throws IOException
+    {
+        scratch.clear();
+
+        FileInputStream inputStream = new FileInputStream(file);
+        try {
+            FileChannel channel = inputStream.getChannel();
+            // A short read is possible, though unusual, so read until the buffer is full or the file ends
+            while (scratch.hasRemaining()) {
+                if (channel.read(scratch, scratch.position()) <= 0)
+                    break;
+            }
+        } finally {
+            inputStream.close();
+        }
+
+        //noinspection ConstantConditions
+        return _root.find(scratch.array(), scratch.arrayOffset(), scratch.position());
+    }
 }
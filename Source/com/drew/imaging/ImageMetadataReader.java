@@ -30,17 +30,24 @@ import com.drew.imaging.psd.PsdMetadataReader;
 import com.drew.imaging.raf.RafMetadataReader;
 import com.drew.imaging.tiff.TiffMetadataReader;
 import com.drew.imaging.webp.WebpMetadataReader;
+import com.drew.lang.ByteBufferReader;
+import com.drew.lang.DigestingInputStream;
+import com.drew.lang.RandomAccessFileReader;
 import com.drew.lang.RandomAccessStreamReader;
 import com.drew.lang.StringUtil;
 import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
 import com.drew.metadata.Directory;
+import com.drew.metadata.ExtractionSpec;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.MetadataException;
 import com.drew.metadata.Tag;
 import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.file.FileMetadataDirectory;
 import com.drew.metadata.file.FileMetadataReader;
 
 import java.io.*;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -71,6 +78,16 @@ import java.util.Collection;
  * {@link FileTypeDetector} is used to determine the provided image's file type, and therefore
  * the appropriate metadata reader to use.
  *
+ * Reads are synchronous. To avoid blocking a thread on disk I/O, such as an event loop, submit them to an
+ * {@link java.util.concurrent.ExecutorService} instead, whose size then bounds the number of concurrent reads:
+ * <pre><code>
+ * Future&lt;Metadata&gt; future = executor.submit(new Callable&lt;Metadata&gt;() {
+ *     public Metadata call() throws Exception {
+ *         return ImageMetadataReader.readMetadata(file);
+ *     }
+ * });
+ * </code></pre>
+ *
  * @author Drew Noakes https://drewnoakes.com
  */
 public class ImageMetadataReader
@@ -122,17 +139,38 @@ public class ImageMetadataReader
      */
     @NotNull
     public static Metadata readMetadata(@NotNull final InputStream inputStream, final long streamLength, final FileType fileType) throws IOException, ImageProcessingException
+    {
+        return readMetadata(inputStream, streamLength, fileType, null);
+    }
+
+    /**
+     * Reads metadata from an {@link InputStream} of known length and file type, extracting only what
+     * <code>extractionSpec</code> requires where the format's reader supports it. JPEG and TIFF-based formats
+     * currently honour the spec, while other formats are read in full.
+     *
+     * @param inputStream a stream from which the file data may be read.  The stream must be positioned at the
+     *                    beginning of the file's data.
+     * @param streamLength the length of the stream, if known, otherwise -1.
+     * @param fileType the file type of the data stream.
+     * @param extractionSpec the directories and tags required, or <code>null</code> if all are required.
+     * @return a populated {@link Metadata} object containing directories of tags with values and any processing errors.
+     * @throws ImageProcessingException if the file type is unknown, or for general processing errors.
+     */
+    @NotNull
+    public static Metadata readMetadata(@NotNull final InputStream inputStream, final long streamLength, final FileType fileType, @Nullable final ExtractionSpec extractionSpec) throws IOException, ImageProcessingException
     {
         switch (fileType) {
             case Jpeg:
-                return JpegMetadataReader.readMetadata(inputStream);
+                Metadata metadata = new Metadata(extractionSpec);
+                JpegMetadataReader.process(metadata, inputStream);
+                return metadata;
             case Tiff:
             case Arw:
             case Cr2:
             case Nef:
             case Orf:
             case Rw2:
-                return TiffMetadataReader.readMetadata(new RandomAccessStreamReader(inputStream, RandomAccessStreamReader.DEFAULT_CHUNK_LENGTH, streamLength));
+                return TiffMetadataReader.readMetadata(new RandomAccessStreamReader(inputStream, RandomAccessStreamReader.DEFAULT_CHUNK_LENGTH, RandomAccessStreamReader.DEFAULT_MAX_CHUNK_LENGTH, streamLength), extractionSpec);
             case Psd:
                 return PsdMetadataReader.readMetadata(inputStream);
             case Png:
@@ -164,17 +202,137 @@ public class ImageMetadataReader
     @NotNull
     public static Metadata readMetadata(@NotNull final File file) throws ImageProcessingException, IOException
     {
+        return readMetadata(file, null);
+    }
+
+    /**
+     * Reads {@link Metadata} from a {@link File} object, extracting only what <code>extractionSpec</code> requires
+     * where the format's reader supports it. See {@link #readMetadata(InputStream, long, FileType, ExtractionSpec)}.
+     *
+     * @param file a file from which the image data may be read.
+     * @param extractionSpec the directories and tags required, or <code>null</code> if all are required.
+     * @return a populated {@link Metadata} object containing directories of tags with values and any processing errors.
+     * @throws ImageProcessingException for general processing errors.
+     */
+    @NotNull
+    public static Metadata readMetadata(@NotNull final File file, @Nullable final ExtractionSpec extractionSpec) throws ImageProcessingException, IOException
+    {
+        return readMetadata(file, extractionSpec, (ReadOptions)null);
+    }
+
+    /**
+     * Reads {@link Metadata} from a {@link File} object as for {@link #readMetadata(File, ExtractionSpec)}, reading
+     * the file according to <code>readOptions</code>.
+     *
+     * @param file a file from which the image data may be read.
+     * @param extractionSpec the directories and tags required, or <code>null</code> if all are required.
+     * @param readOptions how the file is read, or <code>null</code> for the defaults.
+     * @return a populated {@link Metadata} object containing directories of tags with values and any processing errors.
+     * @throws ImageProcessingException for general processing errors.
+     */
+    @NotNull
+    public static Metadata readMetadata(@NotNull final File file, @Nullable final ExtractionSpec extractionSpec, @Nullable final ReadOptions readOptions) throws ImageProcessingException, IOException
+    {
+        InputStream inputStream = new FileInputStream(file);
+        Metadata metadata;
+        try {
+            BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream);
+            FileType fileType = FileTypeDetector.detectFileType(bufferedInputStream);
+            if (isTiffFamily(fileType)) {
+                metadata = readTiffMetadata(file, extractionSpec, readOptions);
+            } else {
+                metadata = readMetadata(bufferedInputStream, file.length(), fileType, extractionSpec);
+            }
+        } finally {
+            inputStream.close();
+        }
+        new FileMetadataReader().read(file, metadata);
+        return metadata;
+    }
+
+    /**
+     * Reads {@link Metadata} from a {@link File} object, and computes a digest of its entire content in the same pass
+     * over the file. Once parsing is complete, the rest of the file is read and digested. The digest is stored in the
+     * {@link FileMetadataDirectory} as {@link FileMetadataDirectory#TAG_CONTENT_DIGEST}, which saves reading the file a
+     * second time to compute it, such as when deduplicating files. The digest is stored even if
+     * <code>extractionSpec</code> does not include that directory.
+     * <p>
+     * Unlike {@link #readMetadata(File, ExtractionSpec)}, TIFF-based files are read sequentially rather than seeking,
+     * so data up to the furthest IFD is buffered in memory.
+     *
+     * @param file a file from which the image data may be read.
+     * @param extractionSpec the directories and tags required, or <code>null</code> if all are required.
+     * @param digest the digest to compute, such as <code>MessageDigest.getInstance("SHA-256")</code>. It is reset
+     *               before use.
+     * @return a populated {@link Metadata} object containing directories of tags with values and any processing errors.
+     * @throws ImageProcessingException for general processing errors.
+     */
+    @NotNull
+    public static Metadata readMetadata(@NotNull final File file, @Nullable final ExtractionSpec extractionSpec, @NotNull final MessageDigest digest) throws ImageProcessingException, IOException
+    {
+        digest.reset();
+
         InputStream inputStream = new FileInputStream(file);
         Metadata metadata;
         try {
-            metadata = readMetadata(inputStream, file.length());
+            DigestingInputStream digestingStream = new DigestingInputStream(inputStream, digest);
+            BufferedInputStream bufferedInputStream = new BufferedInputStream(digestingStream);
+            FileType fileType = FileTypeDetector.detectFileType(bufferedInputStream);
+            metadata = readMetadata(bufferedInputStream, file.length(), fileType, extractionSpec);
+
+            // Bytes held by the buffered stream have already been digested
+            digestingStream.drain();
         } finally {
             inputStream.close();
         }
+
         new FileMetadataReader().read(file, metadata);
+
+        // FileMetadataReader adds the directory regardless of extractionSpec, but the digest must be stored either way
+        FileMetadataDirectory directory = metadata.getFirstDirectoryOfType(FileMetadataDirectory.class);
+        if (directory == null) {
+            directory = new FileMetadataDirectory();
+            metadata.addDirectory(directory);
+        }
+        directory.setByteArray(FileMetadataDirectory.TAG_CONTENT_DIGEST, digest.digest());
+        directory.setString(FileMetadataDirectory.TAG_CONTENT_DIGEST_ALGORITHM, digest.getAlgorithm());
         return metadata;
     }
 
+    @NotNull
+    private static Metadata readTiffMetadata(@NotNull final File file, @Nullable final ExtractionSpec extractionSpec, @Nullable final ReadOptions readOptions) throws ImageProcessingException, IOException
+    {
+        // TIFF data is scattered throughout the file, so seek to it rather than buffering everything
+        // up to the furthest IFD. If requested, map the file so that only pages actually read are loaded.
+        if (readOptions != null && readOptions.isMemoryMapFiles() && file.length() <= Integer.MAX_VALUE)
+            return TiffMetadataReader.readMetadata(ByteBufferReader.map(file), extractionSpec, readOptions);
+
+        // The file is closed once read, so tag values can't be decoded later
+        ReadOptions fileReadOptions = readOptions == null ? null : new ReadOptions().setPrefetchRanges(readOptions.isPrefetchRanges());
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            return TiffMetadataReader.readMetadata(new RandomAccessFileReader(randomAccessFile), extractionSpec, fileReadOptions);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static boolean isTiffFamily(@NotNull final FileType fileType)
+    {
+        switch (fileType) {
+            case Tiff:
+            case Arw:
+            case Cr2:
+            case Nef:
+            case Orf:
+            case Rw2:
+                return true;
+            default:
+                return false;
+        }
+    }
+
     private ImageMetadataReader() throws Exception
     {
         throw new Exception("Not intended for instantiation");
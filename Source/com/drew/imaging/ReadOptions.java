@@ -0,0 +1,97 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import com.drew.lang.annotations.NotNull;
+
+/**
+ * Options controlling how data is read while extracting metadata, as distinct from which metadata is extracted,
+ * which is specified via {@link com.drew.metadata.ExtractionSpec}.
+ * <p>
+ * All options are off by default.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class ReadOptions
+{
+    private boolean _memoryMapFiles;
+    private boolean _prefetchRanges;
+    private boolean _deferTagValues;
+
+    /**
+     * Sets whether files of formats read with random access, such as TIFF and RAW files, are memory-mapped rather than
+     * read via {@link com.drew.lang.RandomAccessFileReader}. Mapping leaves the operating system to load only the
+     * pages actually read, but a mapped file cannot be unmapped deterministically. It stays open until the mapping is
+     * garbage collected, and on Windows cannot be deleted or renamed until then.
+     *
+     * @return these options
+     */
+    @NotNull
+    public ReadOptions setMemoryMapFiles(boolean memoryMapFiles)
+    {
+        _memoryMapFiles = memoryMapFiles;
+        return this;
+    }
+
+    public boolean isMemoryMapFiles()
+    {
+        return _memoryMapFiles;
+    }
+
+    /**
+     * Sets whether the ranges of a TIFF file that will be read are prefetched in ascending order before being
+     * processed. This suits readers over storage where seeking is costly, such as
+     * {@link com.drew.lang.RangeFetchReader}. See {@link com.drew.imaging.tiff.TiffReader#TiffReader(boolean)}.
+     *
+     * @return these options
+     */
+    @NotNull
+    public ReadOptions setPrefetchRanges(boolean prefetchRanges)
+    {
+        _prefetchRanges = prefetchRanges;
+        return this;
+    }
+
+    public boolean isPrefetchRanges()
+    {
+        return _prefetchRanges;
+    }
+
+    /**
+     * Sets whether decoding each TIFF tag value is deferred until it is first requested. Deferred values are decoded
+     * from the data read, which must remain readable for as long as the metadata is in use, so this only applies
+     * where that holds: to readers passed to {@link com.drew.imaging.tiff.TiffMetadataReader}, which the caller keeps
+     * open, and to memory-mapped files. See {@link com.drew.metadata.exif.ExifTiffHandler#setDeferTagValues(boolean)}.
+     *
+     * @return these options
+     */
+    @NotNull
+    public ReadOptions setDeferTagValues(boolean deferTagValues)
+    {
+        _deferTagValues = deferTagValues;
+        return this;
+    }
+
+    public boolean isDeferTagValues()
+    {
+        return _deferTagValues;
+    }
+}
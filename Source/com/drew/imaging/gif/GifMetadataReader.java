@@ -21,7 +21,7 @@
 
 package com.drew.imaging.gif;
 
-import com.drew.lang.StreamReader;
+import com.drew.lang.SequentialByteBufferReader;
 import com.drew.lang.annotations.NotNull;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.file.FileMetadataReader;
@@ -57,7 +57,12 @@ public class GifMetadataReader
     public static Metadata readMetadata(@NotNull InputStream inputStream)
     {
         Metadata metadata = new Metadata();
-        new GifReader().extract(new StreamReader(inputStream), metadata);
+        SequentialByteBufferReader reader = new SequentialByteBufferReader(inputStream);
+        try {
+            new GifReader().extract(reader, metadata);
+        } finally {
+            reader.close();
+        }
         return metadata;
     }
 }
@@ -23,6 +23,9 @@ package com.drew.imaging.jpeg;
 import com.drew.lang.StreamReader;
 import com.drew.lang.annotations.NotNull;
 import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.Directory;
+import com.drew.metadata.ErrorDirectory;
+import com.drew.metadata.ExtractionSpec;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.adobe.AdobeJpegReader;
 import com.drew.metadata.exif.ExifReader;
@@ -43,18 +46,28 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 /**
  * Obtains all available metadata from JPEG formatted files.
+ * <p>
+ * Metadata may be read lazily, in which case segments are retained after reading and each reader implementing
+ * {@link JpegSegmentDirectoryReader} only runs when a directory of a type it produces is first requested from the
+ * {@link Metadata}. This avoids decoding XMP, ICC, Photoshop and similar data when only a few directories are used.
+ * <p>
+ * If the {@link Metadata} has an {@link ExtractionSpec}, readers of {@link JpegSegmentDirectoryReader} producing
+ * none of its directories are not run, and the segments only they would read are skipped.
  *
  * @author Drew Noakes https://drewnoakes.com
  */
 public class JpegMetadataReader
 {
-    public static final Iterable<JpegSegmentMetadataReader> ALL_READERS = Arrays.asList(
+    public static final Iterable<JpegSegmentMetadataReader> ALL_READERS = Arrays.<JpegSegmentMetadataReader>asList(
             new JpegReader(),
             new JpegCommentReader(),
             new JfifReader(),
@@ -70,11 +83,21 @@ public class JpegMetadataReader
             new JpegDnlReader()
     );
 
+    /** A dispatch table of {@link #ALL_READERS}, built once and shared by all calls that don't specify readers. */
+    @NotNull
+    public static final JpegSegmentDispatchTable ALL_READERS_TABLE = new JpegSegmentDispatchTable(ALL_READERS);
+
     @NotNull
     public static Metadata readMetadata(@NotNull InputStream inputStream, @Nullable Iterable<JpegSegmentMetadataReader> readers) throws JpegProcessingException, IOException
+    {
+        return readMetadata(inputStream, readers, false);
+    }
+
+    @NotNull
+    public static Metadata readMetadata(@NotNull InputStream inputStream, @Nullable Iterable<JpegSegmentMetadataReader> readers, boolean lazy) throws JpegProcessingException, IOException
     {
         Metadata metadata = new Metadata();
-        process(metadata, inputStream, readers);
+        process(metadata, inputStream, readers, lazy);
         return metadata;
     }
 
@@ -86,11 +109,17 @@ public class JpegMetadataReader
 
     @NotNull
     public static Metadata readMetadata(@NotNull File file, @Nullable Iterable<JpegSegmentMetadataReader> readers) throws JpegProcessingException, IOException
+    {
+        return readMetadata(file, readers, false);
+    }
+
+    @NotNull
+    public static Metadata readMetadata(@NotNull File file, @Nullable Iterable<JpegSegmentMetadataReader> readers, boolean lazy) throws JpegProcessingException, IOException
     {
         InputStream inputStream = new FileInputStream(file);
         Metadata metadata;
         try {
-            metadata = readMetadata(inputStream, readers);
+            metadata = readMetadata(inputStream, readers, lazy);
         } finally {
             inputStream.close();
         }
@@ -111,26 +140,217 @@ public class JpegMetadataReader
 
     public static void process(@NotNull Metadata metadata, @NotNull InputStream inputStream, @Nullable Iterable<JpegSegmentMetadataReader> readers) throws JpegProcessingException, IOException
     {
-        if (readers == null)
-            readers = ALL_READERS;
+        process(metadata, inputStream, readers, false);
+    }
 
-        Set<JpegSegmentType> segmentTypes = new HashSet<JpegSegmentType>();
-        for (JpegSegmentMetadataReader reader : readers) {
-            for (JpegSegmentType type : reader.getSegmentTypes()) {
-                segmentTypes.add(type);
-            }
+    public static void process(@NotNull Metadata metadata, @NotNull InputStream inputStream, @Nullable Iterable<JpegSegmentMetadataReader> readers, boolean lazy) throws JpegProcessingException, IOException
+    {
+        process(metadata, inputStream, readers == null ? ALL_READERS_TABLE : new JpegSegmentDispatchTable(readers), lazy);
+    }
+
+    /**
+     * Reads the segments required by the readers of <code>dispatchTable</code> from <code>inputStream</code>, and
+     * passes them to those readers. Reusing one table across files avoids rebuilding it for each.
+     */
+    public static void process(@NotNull Metadata metadata, @NotNull InputStream inputStream, @NotNull JpegSegmentDispatchTable dispatchTable, boolean lazy) throws JpegProcessingException, IOException
+    {
+        process(metadata, inputStream, dispatchTable, JpegSegmentScanPolicy.UNBOUNDED, lazy);
+    }
+
+    /**
+     * Reads the segments required by the readers of <code>dispatchTable</code> from <code>inputStream</code>,
+     * scanning no further than <code>scanPolicy</code> allows, and passes them to those readers. If the scan exceeds
+     * the policy's header byte budget, an error is added to an {@link ErrorDirectory}.
+     */
+    public static void process(@NotNull Metadata metadata, @NotNull InputStream inputStream, @NotNull JpegSegmentDispatchTable dispatchTable, @NotNull JpegSegmentScanPolicy scanPolicy, boolean lazy) throws JpegProcessingException, IOException
+    {
+        // Segments are only needed by readers that produce a requested directory
+        dispatchTable = dispatchTable.forExtractionSpec(metadata.getExtractionSpec());
+
+        JpegSegmentData segmentData = JpegSegmentReader.readSegmentsFor(new StreamReader(inputStream), dispatchTable, scanPolicy);
+
+        if (segmentData.isHeaderBudgetExceeded()) {
+            metadata.addDirectory(new ErrorDirectory("JPEG segment scan stopped at the header byte budget of "
+                + scanPolicy.getMaxHeaderBytes() + " bytes, so some metadata may be missing"));
         }
 
-        JpegSegmentData segmentData = JpegSegmentReader.readSegments(new StreamReader(inputStream), segmentTypes);
+        dispatch(metadata, dispatchTable, segmentData, lazy);
+    }
+
+    /**
+     * Reads the segments required by the readers of <code>dispatchTable</code> from <code>inputStream</code>, then
+     * runs those readers concurrently on <code>executor</code>. See
+     * {@link #processJpegSegmentData(Metadata, JpegSegmentDispatchTable, JpegSegmentData, Executor)}.
+     */
+    public static void process(@NotNull Metadata metadata, @NotNull InputStream inputStream, @NotNull JpegSegmentDispatchTable dispatchTable, @NotNull Executor executor) throws JpegProcessingException, IOException
+    {
+        dispatchTable = dispatchTable.forExtractionSpec(metadata.getExtractionSpec());
+
+        JpegSegmentData segmentData = JpegSegmentReader.readSegmentsFor(new StreamReader(inputStream), dispatchTable);
 
-        processJpegSegmentData(metadata, readers, segmentData);
+        dispatch(metadata, dispatchTable, segmentData, executor);
     }
 
     public static void processJpegSegmentData(Metadata metadata, Iterable<JpegSegmentMetadataReader> readers, JpegSegmentData segmentData)
     {
-        // Pass the appropriate byte arrays to each reader.
-        for (JpegSegmentMetadataReader reader : readers) {
-            for (JpegSegmentType segmentType : reader.getSegmentTypes()) {
+        processJpegSegmentData(metadata, readers, segmentData, false);
+    }
+
+    public static void processJpegSegmentData(@NotNull final Metadata metadata, @NotNull Iterable<JpegSegmentMetadataReader> readers, @NotNull final JpegSegmentData segmentData, boolean lazy)
+    {
+        processJpegSegmentData(metadata, new JpegSegmentDispatchTable(readers), segmentData, lazy);
+    }
+
+    /**
+     * Passes the segments of <code>segmentData</code> to each reader of <code>dispatchTable</code>, in order. Readers
+     * for which <code>segmentData</code> holds no segments are not called.
+     *
+     * @param lazy if <code>true</code>, readers implementing {@link JpegSegmentDirectoryReader} are deferred via
+     *             {@link Metadata#addDeferredRead} until one of their directory types is requested. Others run
+     *             immediately. <code>segmentData</code> must not be modified afterwards.
+     */
+    public static void processJpegSegmentData(@NotNull final Metadata metadata, @NotNull JpegSegmentDispatchTable dispatchTable, @NotNull final JpegSegmentData segmentData, boolean lazy)
+    {
+        dispatch(metadata, dispatchTable.forExtractionSpec(metadata.getExtractionSpec()), segmentData, lazy);
+    }
+
+    /**
+     * Passes the segments of <code>segmentData</code> to the readers of <code>dispatchTable</code>, running readers
+     * of application segments APP1 to APPF concurrently on <code>executor</code>. This suits large files where
+     * parsing Exif, XMP, ICC or Photoshop data dominates, and a single file's latency matters.
+     * <p>
+     * Readers of other segments, such as the frame header, Huffman tables, DNL and JFIF, may depend on one another,
+     * so run in order on the calling thread while the concurrent readers proceed. Each concurrent reader populates
+     * its own {@link Metadata}, and all directories are then added to <code>metadata</code> in reader order, so the
+     * result is the same as that of a sequential read. The exception is that readers which encounter errors outside
+     * of any directory each add their own {@link ErrorDirectory}.
+     * <p>
+     * The calling thread also runs one concurrent reader, then waits for the rest. <code>executor</code> must
+     * therefore not be saturated by tasks that are themselves waiting on this call.
+     *
+     * @throws JpegProcessingException if the calling thread is interrupted while waiting for readers
+     */
+    public static void processJpegSegmentData(@NotNull final Metadata metadata, @NotNull JpegSegmentDispatchTable dispatchTable, @NotNull final JpegSegmentData segmentData, @NotNull Executor executor) throws JpegProcessingException
+    {
+        dispatch(metadata, dispatchTable.forExtractionSpec(metadata.getExtractionSpec()), segmentData, executor);
+    }
+
+    private static void dispatch(@NotNull final Metadata metadata, @NotNull JpegSegmentDispatchTable dispatchTable, @NotNull final JpegSegmentData segmentData, @NotNull Executor executor) throws JpegProcessingException
+    {
+        final int readerCount = dispatchTable.getReaderCount();
+        final boolean[] readersWithSegments = dispatchTable.getReadersWithSegments(segmentData);
+        final Metadata[] results = new Metadata[readerCount];
+        final List<FutureTask<Metadata>> tasks = new ArrayList<FutureTask<Metadata>>(readerCount);
+
+        for (int i = 0; i < readerCount; i++) {
+            // Readers with nothing to read are not worth a task
+            if (!readersWithSegments[i] || !dispatchTable.isConcurrent(i))
+                continue;
+
+            final JpegSegmentMetadataReader reader = dispatchTable.getReader(i);
+            final JpegSegmentType[] segmentTypes = dispatchTable.getSegmentTypes(i);
+            final Metadata result = new Metadata(metadata.getExtractionSpec());
+            results[i] = result;
+
+            tasks.add(new FutureTask<Metadata>(new Runnable()
+            {
+                public void run()
+                {
+                    processJpegSegments(result, reader, segmentTypes, segmentData);
+                }
+            }, result));
+        }
+
+        for (int t = 0; t < tasks.size() - 1; t++)
+            executor.execute(tasks.get(t));
+
+        // Meanwhile, run the remaining readers in order on this thread, noting the range of directories each adds
+        Metadata orderedResult = new Metadata(metadata.getExtractionSpec());
+        int[] orderedDirectoryEnds = new int[readerCount];
+        boolean completed = false;
+        try {
+            for (int i = 0; i < readerCount; i++) {
+                if (readersWithSegments[i] && !dispatchTable.isConcurrent(i))
+                    processJpegSegments(orderedResult, dispatchTable.getReader(i), dispatchTable.getSegmentTypes(i), segmentData);
+                orderedDirectoryEnds[i] = orderedResult.getDirectoryCount();
+            }
+
+            // Run the last task on this thread too, rather than leaving it idle
+            if (!tasks.isEmpty())
+                tasks.get(tasks.size() - 1).run();
+            completed = true;
+        } finally {
+            if (!completed) {
+                for (FutureTask<Metadata> pending : tasks)
+                    pending.cancel(true);
+            }
+        }
+
+        for (FutureTask<Metadata> task : tasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                // Surface failures as a sequential read would have
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException)cause;
+                if (cause instanceof Error)
+                    throw (Error)cause;
+                throw new JpegProcessingException(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (FutureTask<Metadata> pending : tasks)
+                    pending.cancel(true);
+                throw new JpegProcessingException("Interrupted while waiting for JPEG segment readers", e);
+            }
+        }
+
+        List<Directory> orderedDirectories = new ArrayList<Directory>();
+        for (Directory directory : orderedResult.getDirectories())
+            orderedDirectories.add(directory);
+
+        int orderedDirectoryStart = 0;
+        for (int i = 0; i < readerCount; i++) {
+            if (results[i] != null) {
+                for (Directory directory : results[i].getDirectories())
+                    metadata.addDirectory(directory);
+            } else {
+                for (Directory directory : orderedDirectories.subList(orderedDirectoryStart, orderedDirectoryEnds[i]))
+                    metadata.addDirectory(directory);
+                orderedDirectoryStart = orderedDirectoryEnds[i];
+            }
+        }
+    }
+
+    private static void dispatch(@NotNull final Metadata metadata, @NotNull JpegSegmentDispatchTable dispatchTable, @NotNull final JpegSegmentData segmentData, boolean lazy)
+    {
+        boolean[] readersWithSegments = dispatchTable.getReadersWithSegments(segmentData);
+        for (int i = 0; i < dispatchTable.getReaderCount(); i++) {
+            if (!readersWithSegments[i])
+                continue;
+            final JpegSegmentMetadataReader reader = dispatchTable.getReader(i);
+            final JpegSegmentType[] segmentTypes = dispatchTable.getSegmentTypes(i);
+            if (lazy && reader instanceof JpegSegmentDirectoryReader) {
+                metadata.addDeferredRead(((JpegSegmentDirectoryReader)reader).getDirectoryTypes(), new Runnable()
+                {
+                    public void run()
+                    {
+                        processJpegSegments(metadata, reader, segmentTypes, segmentData);
+                    }
+                });
+            } else {
+                processJpegSegments(metadata, reader, segmentTypes, segmentData);
+            }
+        }
+    }
+
+    private static void processJpegSegments(@NotNull Metadata metadata, @NotNull JpegSegmentMetadataReader reader, @NotNull JpegSegmentType[] segmentTypes, @NotNull JpegSegmentData segmentData)
+    {
+        // Pass the appropriate segments to the reader, as slices where the reader supports them.
+        for (JpegSegmentType segmentType : segmentTypes) {
+            if (reader instanceof JpegSegmentSliceMetadataReader) {
+                ((JpegSegmentSliceMetadataReader)reader).readJpegSegmentSlices(segmentData.getSegmentSlices(segmentType), metadata, segmentType);
+            } else {
                 reader.readJpegSegments(segmentData.getSegments(segmentType), metadata, segmentType);
             }
         }
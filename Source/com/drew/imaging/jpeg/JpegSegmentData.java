@@ -23,6 +23,7 @@ package com.drew.imaging.jpeg;
 import com.drew.lang.annotations.NotNull;
 import com.drew.lang.annotations.Nullable;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 
 /**
@@ -36,14 +37,26 @@ import java.util.*;
  * Each segment type may contain multiple entries. Conceptually the model is:
  * <code>Map&lt;JpegSegmentType, Collection&lt;byte[]&gt;&gt;</code>. This class provides
  * convenience methods around that structure.
+ * <p>
+ * Segments are held as {@link ByteBuffer} slices. When segments are read from data already in memory, each slice is
+ * a view of that data, so no segment bytes are copied. Readers implementing {@link JpegSegmentSliceMetadataReader}
+ * consume these slices directly via {@link #getSegmentSlices(JpegSegmentType)}. The <code>byte[]</code> accessors
+ * copy a slice's bytes only if it does not span an entire array, in which case each call returns a new copy.
+ * <p>
+ * None of the accessors modify the collection, so once populated it may be read from several threads.
  *
  * @author Drew Noakes https://drewnoakes.com
  */
 public class JpegSegmentData
 {
-    // TODO key this on JpegSegmentType rather than Byte, and hopefully lose much of the use of 'byte' with this class
+    /** The segments of each type, indexed by marker byte, so that no boxing or hashing is needed. */
     @NotNull
-    private final HashMap<Byte, List<byte[]>> _segmentDataMap = new HashMap<Byte, List<byte[]>>(10);
+    private final SegmentList[] _segmentLists = new SegmentList[256];
+
+    private boolean _scanCutShort;
+    private boolean _headerBudgetExceeded;
+    private long _endOfImageOffset = -1;
+    private long _trailingDataLength;
 
     /**
      * Adds segment bytes to the collection.
@@ -54,7 +67,20 @@ public class JpegSegmentData
     @SuppressWarnings({"MismatchedQueryAndUpdateOfCollection"})
     public void addSegment(byte segmentType, @NotNull byte[] segmentBytes)
     {
-        getOrCreateSegmentList(segmentType).add(segmentBytes);
+        getOrCreateSegmentList(segmentType).add(ByteBuffer.wrap(segmentBytes));
+    }
+
+    /**
+     * Adds a segment to the collection without copying its bytes.
+     *
+     * @param segmentType  the type of the segment being added
+     * @param segmentSlice a buffer whose remaining bytes are the data for the segment being added. It must not be
+     *                     modified after being added.
+     */
+    @SuppressWarnings({"MismatchedQueryAndUpdateOfCollection"})
+    public void addSegment(byte segmentType, @NotNull ByteBuffer segmentSlice)
+    {
+        getOrCreateSegmentList(segmentType).add(segmentSlice.slice());
     }
 
     /**
@@ -64,11 +90,13 @@ public class JpegSegmentData
     {
         Set<JpegSegmentType> segmentTypes = new HashSet<JpegSegmentType>();
 
-        for (Byte segmentTypeByte : _segmentDataMap.keySet())
+        for (int marker = 0; marker < _segmentLists.length; marker++)
         {
-            JpegSegmentType segmentType = JpegSegmentType.fromByte(segmentTypeByte);
+            if (_segmentLists[marker] == null)
+                continue;
+            JpegSegmentType segmentType = JpegSegmentType.fromByte((byte)marker);
             if (segmentType == null) {
-                throw new IllegalStateException("Should not have a segmentTypeByte that is not in the enum: " + Integer.toHexString(segmentTypeByte));
+                throw new IllegalStateException("Should not have a segmentTypeByte that is not in the enum: " + Integer.toHexString(marker));
             }
             segmentTypes.add(segmentType);
         }
@@ -125,10 +153,10 @@ public class JpegSegmentData
     @Nullable
     public byte[] getSegment(byte segmentType, int occurrence)
     {
-        final List<byte[]> segmentList = getSegmentList(segmentType);
+        final List<ByteBuffer> segmentList = getSegmentList(segmentType);
 
         return segmentList != null && segmentList.size() > occurrence
-                ? segmentList.get(occurrence)
+                ? getArray(segmentList, occurrence)
                 : null;
     }
 
@@ -153,25 +181,101 @@ public class JpegSegmentData
     @NotNull
     public Iterable<byte[]> getSegments(byte segmentType)
     {
-        final List<byte[]> segmentList = getSegmentList(segmentType);
-        return segmentList == null ? new ArrayList<byte[]>() : segmentList;
+        final List<ByteBuffer> segmentList = getSegmentList(segmentType);
+        final List<byte[]> segments = new ArrayList<byte[]>();
+        if (segmentList != null) {
+            for (int i = 0; i < segmentList.size(); i++)
+                segments.add(getArray(segmentList, i));
+        }
+        return segments;
+    }
+
+    /**
+     * Returns all instances of a given JPEG segment as slices, without copying their bytes. If no instances exist,
+     * an empty sequence is returned.
+     * <p>
+     * Each slice is positioned at the start of its segment's data. Slices may share a backing array or mapped
+     * file, and must not be modified.
+     *
+     * @param segmentType identifies the required segment
+     * @return zero or more buffers, each holding the data of a JPEG segment
+     */
+    @NotNull
+    public Iterable<ByteBuffer> getSegmentSlices(@NotNull JpegSegmentType segmentType)
+    {
+        return getSegmentSlices(segmentType.byteValue);
+    }
+
+    /**
+     * Returns all instances of a given JPEG segment as slices, without copying their bytes. If no instances exist,
+     * an empty sequence is returned.
+     *
+     * @param segmentType a number which identifies the type of JPEG segment being queried
+     * @return zero or more buffers, each holding the data of a JPEG segment
+     */
+    @NotNull
+    public Iterable<ByteBuffer> getSegmentSlices(byte segmentType)
+    {
+        final List<ByteBuffer> segmentList = getSegmentList(segmentType);
+        final List<ByteBuffer> slices = new ArrayList<ByteBuffer>();
+        if (segmentList != null) {
+            // Duplicate, so that consumers moving the position don't affect one another
+            for (ByteBuffer slice : segmentList)
+                slices.add(slice.duplicate());
+        }
+        return slices;
+    }
+
+    /**
+     * Returns the bytes of a segment as an array, copying them only if the slice doesn't span an entire array.
+     */
+    @NotNull
+    private static byte[] getArray(@NotNull List<ByteBuffer> segmentList, int occurrence)
+    {
+        ByteBuffer slice = segmentList.get(occurrence);
+        if (slice.hasArray() && slice.arrayOffset() == 0 && slice.remaining() == slice.array().length)
+            return slice.array();
+        return toArray(slice);
+    }
+
+    /**
+     * Copies the remaining bytes of <code>slice</code> into a new array, without changing its position.
+     */
+    @NotNull
+    public static byte[] toArray(@NotNull ByteBuffer slice)
+    {
+        byte[] bytes = new byte[slice.remaining()];
+        slice.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Decodes the first <code>length</code> bytes of <code>slice</code> as a string in the platform's default
+     * charset, for comparison with a known preamble, or returns <code>null</code> if the slice is shorter.
+     */
+    @Nullable
+    public static String getPreamble(@NotNull ByteBuffer slice, int length)
+    {
+        if (slice.remaining() < length)
+            return null;
+        byte[] bytes = new byte[length];
+        slice.duplicate().get(bytes);
+        return new String(bytes);
     }
 
     @Nullable
-    private List<byte[]> getSegmentList(byte segmentType)
+    private List<ByteBuffer> getSegmentList(byte segmentType)
     {
-        return _segmentDataMap.get(segmentType);
+        return _segmentLists[segmentType & 0xFF];
     }
 
     @NotNull
-    private List<byte[]> getOrCreateSegmentList(byte segmentType)
+    private List<ByteBuffer> getOrCreateSegmentList(byte segmentType)
     {
-        List<byte[]> segmentList;
-        if (_segmentDataMap.containsKey(segmentType)) {
-            segmentList = _segmentDataMap.get(segmentType);
-        } else {
-            segmentList = new ArrayList<byte[]>();
-            _segmentDataMap.put(segmentType, segmentList);
+        SegmentList segmentList = _segmentLists[segmentType & 0xFF];
+        if (segmentList == null) {
+            segmentList = new SegmentList();
+            _segmentLists[segmentType & 0xFF] = segmentList;
         }
         return segmentList;
     }
@@ -195,7 +299,7 @@ public class JpegSegmentData
      */
     public int getSegmentCount(byte segmentType)
     {
-        final List<byte[]> segmentList = getSegmentList(segmentType);
+        final List<ByteBuffer> segmentList = getSegmentList(segmentType);
         return segmentList == null ? 0 : segmentList.size();
     }
 
@@ -222,7 +326,7 @@ public class JpegSegmentData
     @SuppressWarnings({"MismatchedQueryAndUpdateOfCollection"})
     public void removeSegmentOccurrence(byte segmentType, int occurrence)
     {
-        final List<byte[]> segmentList = _segmentDataMap.get(segmentType);
+        final List<ByteBuffer> segmentList = getSegmentList(segmentType);
         segmentList.remove(occurrence);
     }
 
@@ -243,7 +347,7 @@ public class JpegSegmentData
      */
     public void removeSegment(byte segmentType)
     {
-        _segmentDataMap.remove(segmentType);
+        _segmentLists[segmentType & 0xFF] = null;
     }
 
     /**
@@ -265,6 +369,62 @@ public class JpegSegmentData
      */
     public boolean containsSegment(byte segmentType)
     {
-        return _segmentDataMap.containsKey(segmentType);
+        return _segmentLists[segmentType & 0xFF] != null;
+    }
+
+    /**
+     * Indicates whether the scan that produced this data stopped before reaching the image data, because of its
+     * {@link JpegSegmentScanPolicy}. This is the case if either all requested segment types had been seen, or the
+     * header byte budget was exceeded. Only the latter means requested segments may be missing.
+     */
+    public boolean isScanCutShort()
+    {
+        return _scanCutShort;
+    }
+
+    /**
+     * Indicates whether the scan that produced this data stopped because continuing would have exceeded the header
+     * byte budget of its {@link JpegSegmentScanPolicy}, in which case requested segments may be missing.
+     */
+    public boolean isHeaderBudgetExceeded()
+    {
+        return _headerBudgetExceeded;
+    }
+
+    void markScanCutShort(boolean headerBudgetExceeded)
+    {
+        _scanCutShort = true;
+        _headerBudgetExceeded = headerBudgetExceeded;
+    }
+
+    /**
+     * Gets the offset of the end of image (EOI) marker from the start of the JPEG data, or -1 if the image data
+     * wasn't scanned or ended without one. The image data is only scanned if requested by a
+     * {@link JpegSegmentScanPolicy}.
+     */
+    public long getEndOfImageOffset()
+    {
+        return _endOfImageOffset;
+    }
+
+    /**
+     * Gets the number of bytes following the end of image (EOI) marker, such as appended MPF images or trailers. The
+     * data starts at {@link #getEndOfImageOffset()} plus two. This is zero if the image data wasn't scanned.
+     */
+    public long getTrailingDataLength()
+    {
+        return _trailingDataLength;
+    }
+
+    void setEndOfImage(long endOfImageOffset, long trailingDataLength)
+    {
+        _endOfImageOffset = endOfImageOffset;
+        _trailingDataLength = trailingDataLength;
+    }
+
+    /** A non-generic list type, so that an array of them may be created without unchecked conversion. */
+    private static final class SegmentList extends ArrayList<ByteBuffer>
+    {
+        private static final long serialVersionUID = 1L;
     }
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging.jpeg;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Directory;
+import com.drew.metadata.Metadata;
+
+/**
+ * A {@link JpegSegmentMetadataReader} that declares the types of {@link Directory} it may add, allowing
+ * {@link JpegMetadataReader} to defer running it until one of them is requested from the {@link Metadata}.
+ */
+public interface JpegSegmentDirectoryReader extends JpegSegmentMetadataReader
+{
+    /**
+     * Gets the types of {@link Directory} that this reader may add, including any added by readers it delegates to.
+     */
+    @NotNull
+    Iterable<Class<? extends Directory>> getDirectoryTypes();
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging.jpeg;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.ExtractionSpec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable, precompiled set of {@link JpegSegmentMetadataReader} instances, indexed by the marker byte of the
+ * segments they read.
+ * <p>
+ * Building a table iterates each reader's segment types once. Thereafter, determining whether a segment is wanted,
+ * and which readers consume it, is an array lookup on the marker byte, with no boxing or hashing. A table may be
+ * shared between threads and reused for any number of files, provided its readers are themselves stateless, as
+ * this library's readers are. The tables it derives for {@link ExtractionSpec}s are cached, so reusing a table
+ * across files builds each derived table once.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class JpegSegmentDispatchTable
+{
+    private static final JpegSegmentMetadataReader[] NO_READERS = new JpegSegmentMetadataReader[0];
+
+    /** The readers, in the order they were provided. */
+    @NotNull
+    private final JpegSegmentMetadataReader[] _readers;
+
+    /** The distinct segment types of each reader in {@link #_readers}, at the same index. */
+    @NotNull
+    private final JpegSegmentType[][] _segmentTypesByReader;
+
+    /** Whether each reader in {@link #_readers} may run concurrently with others, at the same index. */
+    @NotNull
+    private final boolean[] _concurrentReaders;
+
+    /**
+     * The indexes in {@link #_readers} of the readers of each segment type, indexed by marker byte. Entries for unread
+     * markers are <code>null</code>.
+     */
+    @NotNull
+    private final int[][] _readerIndexesByMarker = new int[256][];
+
+    /** Whether any reader reads each segment type, indexed by marker byte. */
+    @NotNull
+    private final boolean[] _markerMask = new boolean[256];
+
+    /**
+     * Tables derived by {@link #forExtractionSpec}, keyed by the indexes of the readers they include. Specs may be
+     * modified after use, so they are not themselves the key.
+     */
+    @NotNull
+    private final ConcurrentMap<BitSet, JpegSegmentDispatchTable> _derivedTables = new ConcurrentHashMap<BitSet, JpegSegmentDispatchTable>();
+
+    public JpegSegmentDispatchTable(@NotNull Iterable<? extends JpegSegmentMetadataReader> readers)
+    {
+        this(readers, null);
+    }
+
+    /**
+     * Creates a table of those <code>readers</code> that may produce a directory requested by
+     * <code>extractionSpec</code>. Readers that don't implement {@link JpegSegmentDirectoryReader} are always
+     * included.
+     *
+     * @param extractionSpec the directories required, or <code>null</code> to include all readers
+     */
+    public JpegSegmentDispatchTable(@NotNull Iterable<? extends JpegSegmentMetadataReader> readers, @Nullable ExtractionSpec extractionSpec)
+    {
+        List<JpegSegmentMetadataReader> included = new ArrayList<JpegSegmentMetadataReader>();
+        for (JpegSegmentMetadataReader reader : readers) {
+            if (isRequired(reader, extractionSpec))
+                included.add(reader);
+        }
+
+        _readers = included.toArray(new JpegSegmentMetadataReader[included.size()]);
+        _segmentTypesByReader = new JpegSegmentType[_readers.length][];
+        _concurrentReaders = new boolean[_readers.length];
+
+        for (int i = 0; i < _readers.length; i++) {
+            List<JpegSegmentType> segmentTypes = new ArrayList<JpegSegmentType>();
+            for (JpegSegmentType segmentType : _readers[i].getSegmentTypes()) {
+                if (segmentTypes.contains(segmentType))
+                    continue;
+                segmentTypes.add(segmentType);
+
+                int marker = segmentType.byteValue & 0xFF;
+                int[] readerIndexes = _readerIndexesByMarker[marker];
+                if (readerIndexes == null) {
+                    readerIndexes = new int[] { i };
+                } else {
+                    readerIndexes = Arrays.copyOf(readerIndexes, readerIndexes.length + 1);
+                    readerIndexes[readerIndexes.length - 1] = i;
+                }
+                _readerIndexesByMarker[marker] = readerIndexes;
+                _markerMask[marker] = true;
+            }
+            _segmentTypesByReader[i] = segmentTypes.toArray(new JpegSegmentType[segmentTypes.size()]);
+            _concurrentReaders[i] = isConcurrent(_segmentTypesByReader[i]);
+        }
+    }
+
+    /**
+     * Returns a table of the readers of this one that may produce a directory requested by
+     * <code>extractionSpec</code>, or this table if that is all of them. Tables are cached by the readers they
+     * include, so repeated calls for the same or equivalent specs return the same table.
+     */
+    @NotNull
+    public JpegSegmentDispatchTable forExtractionSpec(@Nullable ExtractionSpec extractionSpec)
+    {
+        if (extractionSpec == null)
+            return this;
+
+        BitSet included = new BitSet(_readers.length);
+        for (int i = 0; i < _readers.length; i++) {
+            if (isRequired(_readers[i], extractionSpec))
+                included.set(i);
+        }
+        if (included.cardinality() == _readers.length)
+            return this;
+
+        JpegSegmentDispatchTable table = _derivedTables.get(included);
+        if (table == null) {
+            List<JpegSegmentMetadataReader> readers = new ArrayList<JpegSegmentMetadataReader>(included.cardinality());
+            for (int i = included.nextSetBit(0); i >= 0; i = included.nextSetBit(i + 1))
+                readers.add(_readers[i]);
+            table = new JpegSegmentDispatchTable(readers);
+            JpegSegmentDispatchTable existing = _derivedTables.putIfAbsent(included, table);
+            if (existing != null)
+                table = existing;
+        }
+        return table;
+    }
+
+    /** Gets the number of readers in this table. */
+    public int getReaderCount()
+    {
+        return _readers.length;
+    }
+
+    /** Gets the reader at <code>index</code>, in the order provided when this table was created. */
+    @NotNull
+    public JpegSegmentMetadataReader getReader(int index)
+    {
+        return _readers[index];
+    }
+
+    /** Gets the distinct segment types read by the reader at <code>index</code>. */
+    @NotNull
+    JpegSegmentType[] getSegmentTypes(int index)
+    {
+        return _segmentTypesByReader[index];
+    }
+
+    /**
+     * Indicates whether the reader at <code>index</code> may run concurrently with others, as it reads only
+     * application segments APP1 to APPF, each of which holds self-contained metadata.
+     */
+    boolean isConcurrent(int index)
+    {
+        return _concurrentReaders[index];
+    }
+
+    /** Indicates whether any reader in this table reads segments having the specified marker byte. */
+    public boolean isMarkerRead(byte marker)
+    {
+        return _markerMask[marker & 0xFF];
+    }
+
+    /**
+     * Gets the readers of segments having the specified marker byte, in the order provided when this table was
+     * created.
+     */
+    @NotNull
+    public JpegSegmentMetadataReader[] getReaders(byte marker)
+    {
+        int[] readerIndexes = _readerIndexesByMarker[marker & 0xFF];
+        if (readerIndexes == null)
+            return NO_READERS;
+        JpegSegmentMetadataReader[] readers = new JpegSegmentMetadataReader[readerIndexes.length];
+        for (int i = 0; i < readerIndexes.length; i++)
+            readers[i] = _readers[readerIndexes[i]];
+        return readers;
+    }
+
+    /**
+     * Determines which readers have at least one segment to read in <code>segmentData</code>, by looking up the
+     * readers of each marker it holds.
+     *
+     * @return whether each reader has segments, indexed as for {@link #getReader(int)}
+     */
+    @NotNull
+    boolean[] getReadersWithSegments(@NotNull JpegSegmentData segmentData)
+    {
+        boolean[] readersWithSegments = new boolean[_readers.length];
+        for (int marker = 0; marker < _readerIndexesByMarker.length; marker++) {
+            int[] readerIndexes = _readerIndexesByMarker[marker];
+            if (readerIndexes == null || !segmentData.containsSegment((byte)marker))
+                continue;
+            for (int readerIndex : readerIndexes)
+                readersWithSegments[readerIndex] = true;
+        }
+        return readersWithSegments;
+    }
+
+    /** Gets the 256-entry mask of markers read by this table, which must not be modified. */
+    @NotNull
+    boolean[] getMarkerMask()
+    {
+        return _markerMask;
+    }
+
+    private static boolean isConcurrent(@NotNull JpegSegmentType[] segmentTypes)
+    {
+        // Frame, table and DNL segments are read in order, as DNL amends the frame header. APP0 holds only small
+        // JFIF and JFXX headers, which aren't worth a task.
+        for (JpegSegmentType segmentType : segmentTypes) {
+            int marker = segmentType.byteValue & 0xFF;
+            if (marker < 0xE1 || marker > 0xEF)
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isRequired(@NotNull JpegSegmentMetadataReader reader, @Nullable ExtractionSpec extractionSpec)
+    {
+        return extractionSpec == null
+            || !(reader instanceof JpegSegmentDirectoryReader)
+            || extractionSpec.includesAnyDirectory(((JpegSegmentDirectoryReader)reader).getDirectoryTypes());
+    }
+}
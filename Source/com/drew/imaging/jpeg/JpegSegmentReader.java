@@ -20,6 +20,7 @@
  */
 package com.drew.imaging.jpeg;
 
+import com.drew.lang.BufferPool;
 import com.drew.lang.SequentialReader;
 import com.drew.lang.StreamReader;
 import com.drew.lang.annotations.NotNull;
@@ -28,8 +29,7 @@ import com.drew.lang.annotations.Nullable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
+import java.nio.ByteBuffer;
 
 /**
  * Performs read functions of JPEG files, returning specific file segments.
@@ -92,27 +92,118 @@ public class JpegSegmentReader
      */
     @NotNull
     public static JpegSegmentData readSegments(@NotNull final SequentialReader reader, @Nullable Iterable<JpegSegmentType> segmentTypes) throws JpegProcessingException, IOException
+    {
+        return readSegments(reader, segmentTypes, JpegSegmentScanPolicy.UNBOUNDED);
+    }
+
+    /**
+     * Processes the provided JPEG data, and extracts the specified JPEG segments into a {@link JpegSegmentData} object,
+     * scanning no further than <code>scanPolicy</code> allows.
+     * <p>
+     * Will not return SOS (start of scan) or EOI (end of image) segments.
+     *
+     * @param reader a {@link SequentialReader} from which the JPEG data will be read. It must be positioned at the
+     *               beginning of the JPEG data stream.
+     * @param segmentTypes the set of JPEG segments types that are to be returned. If this argument is <code>null</code>
+     *                     then all found segment types are returned.
+     * @param scanPolicy limits on how far to scan. See {@link JpegSegmentData#isScanCutShort()}.
+     */
+    @NotNull
+    public static JpegSegmentData readSegments(@NotNull final SequentialReader reader, @Nullable Iterable<JpegSegmentType> segmentTypes, @NotNull JpegSegmentScanPolicy scanPolicy) throws JpegProcessingException, IOException
+    {
+        boolean[] markerMask = null;
+        if (segmentTypes != null) {
+            markerMask = new boolean[256];
+            for (JpegSegmentType segmentType : segmentTypes) {
+                markerMask[segmentType.byteValue & 0xFF] = true;
+            }
+        }
+
+        return readSegments(reader, markerMask, scanPolicy);
+    }
+
+    /**
+     * Processes the provided JPEG data, and extracts the segments read by any of the readers of
+     * <code>dispatchTable</code> into a {@link JpegSegmentData} object.
+     * <p>
+     * Will not return SOS (start of scan) or EOI (end of image) segments.
+     *
+     * @param reader a {@link SequentialReader} from which the JPEG data will be read. It must be positioned at the
+     *               beginning of the JPEG data stream.
+     * @param dispatchTable the readers whose segments are to be returned.
+     */
+    @NotNull
+    public static JpegSegmentData readSegmentsFor(@NotNull final SequentialReader reader, @NotNull JpegSegmentDispatchTable dispatchTable) throws JpegProcessingException, IOException
+    {
+        return readSegments(reader, dispatchTable.getMarkerMask(), JpegSegmentScanPolicy.UNBOUNDED);
+    }
+
+    /**
+     * Processes the provided JPEG data, and extracts the segments read by any of the readers of
+     * <code>dispatchTable</code> into a {@link JpegSegmentData} object, scanning no further than
+     * <code>scanPolicy</code> allows.
+     *
+     * @param scanPolicy limits on how far to scan. See {@link JpegSegmentData#isScanCutShort()}.
+     */
+    @NotNull
+    public static JpegSegmentData readSegmentsFor(@NotNull final SequentialReader reader, @NotNull JpegSegmentDispatchTable dispatchTable, @NotNull JpegSegmentScanPolicy scanPolicy) throws JpegProcessingException, IOException
+    {
+        return readSegments(reader, dispatchTable.getMarkerMask(), scanPolicy);
+    }
+
+    /**
+     * @param markerMask whether to return segments of each marker byte, indexed by that byte, or <code>null</code>
+     *                   if all found segment types are to be returned.
+     */
+    @NotNull
+    private static JpegSegmentData readSegments(@NotNull final SequentialReader reader, @Nullable boolean[] markerMask, @NotNull JpegSegmentScanPolicy scanPolicy) throws JpegProcessingException, IOException
     {
         // Must be big-endian
         assert (reader.isMotorolaByteOrder());
 
+        final long startPosition = reader.getPosition();
+        final long maxHeaderBytes = scanPolicy.getMaxHeaderBytes();
+
         // first two bytes should be JPEG magic number
         final int magicNumber = reader.getUInt16();
         if (magicNumber != 0xFFD8) {
             throw new JpegProcessingException("JPEG data is expected to begin with 0xFFD8 (ÿØ) not 0x" + Integer.toHexString(magicNumber));
         }
 
-        Set<Byte> segmentTypeBytes = null;
-        if (segmentTypes != null) {
-            segmentTypeBytes = new HashSet<Byte>();
-            for (JpegSegmentType segmentType : segmentTypes) {
-                segmentTypeBytes.add(segmentType.byteValue);
+        JpegSegmentData segmentData = new JpegSegmentData();
+
+        // Track requested types not yet seen, if the scan may stop once all have been
+        boolean[] unseenMarkers = null;
+        int unseenCount = 0;
+        if (scanPolicy.isStopWhenAllSeen() && markerMask != null) {
+            unseenMarkers = new boolean[256];
+            for (int marker = 0; marker < markerMask.length; marker++) {
+                if (!markerMask[marker])
+                    continue;
+                boolean isDnl = marker == (JpegSegmentType.DNL.byteValue & 0xFF);
+                if (isDnl && !scanPolicy.isScanImageData()) {
+                    // Only found in the image data, which won't be scanned
+                    continue;
+                }
+                if (isDnl || JpegSegmentScanPolicy.isRepeatable((byte)marker)) {
+                    // Can't know when all segments of this type have been seen, or they lie beyond the header
+                    unseenMarkers = null;
+                    break;
+                }
+                int seenMarker = JpegSegmentScanPolicy.getSeenMarker(marker);
+                if (!unseenMarkers[seenMarker]) {
+                    unseenMarkers[seenMarker] = true;
+                    unseenCount++;
+                }
             }
         }
 
-        JpegSegmentData segmentData = new JpegSegmentData();
-
         do {
+            if (unseenMarkers != null && unseenCount == 0) {
+                segmentData.markScanCutShort(false);
+                return segmentData;
+            }
+
             // Find the segment marker. Markers are zero or more 0xFF bytes, followed
             // by a 0xFF and then a byte not equal to 0x00 or 0xFF.
 
@@ -121,6 +212,10 @@ public class JpegSegmentReader
 
             // Read until we have a 0xFF byte followed by a byte that is not 0xFF or 0x00
             while (segmentIdentifier != SEGMENT_IDENTIFIER || segmentType == SEGMENT_IDENTIFIER || segmentType == 0) {
+                if (reader.getPosition() - startPosition >= maxHeaderBytes) {
+                    segmentData.markScanCutShort(true);
+                    return segmentData;
+                }
             	segmentIdentifier = segmentType;
             	segmentType = reader.getInt8();
             }
@@ -128,7 +223,9 @@ public class JpegSegmentReader
             if (segmentType == SEGMENT_SOS) {
                 // The 'Start-Of-Scan' segment's length doesn't include the image data, instead would
                 // have to search for the two bytes: 0xFF 0xD9 (EOI).
-                // It comes last so simply return at this point
+                // Unless asked to scan the image data, it comes last so simply return at this point
+                if (scanPolicy.isScanImageData())
+                    new ImageDataScanner(reader, reader.getPosition() - startPosition).scan(markerMask, segmentData);
                 return segmentData;
             }
 
@@ -146,11 +243,26 @@ public class JpegSegmentReader
             if (segmentLength < 0)
                 throw new JpegProcessingException("JPEG segment size would be less than zero");
 
+            // Stop rather than consume bytes beyond the budget
+            if (reader.getPosition() - startPosition + segmentLength > maxHeaderBytes) {
+                segmentData.markScanCutShort(true);
+                return segmentData;
+            }
+
+            if (unseenMarkers != null) {
+                int seenMarker = JpegSegmentScanPolicy.getSeenMarker(segmentType & 0xFF);
+                if (unseenMarkers[seenMarker]) {
+                    unseenMarkers[seenMarker] = false;
+                    unseenCount--;
+                }
+            }
+
             // Check whether we are interested in this segment
-            if (segmentTypeBytes == null || segmentTypeBytes.contains(segmentType)) {
-                byte[] segmentBytes = reader.getBytes(segmentLength);
-                assert (segmentLength == segmentBytes.length);
-                segmentData.addSegment(segmentType, segmentBytes);
+            if (markerMask == null || markerMask[segmentType & 0xFF]) {
+                // Readers over data in memory return a view of it here, rather than a copy
+                ByteBuffer segmentSlice = reader.getSlice(segmentLength);
+                assert (segmentLength == segmentSlice.remaining());
+                segmentData.addSegment(segmentType, segmentSlice);
             } else {
                 // Some if the JPEG is truncated, just return what data we've already gathered
                 if (!reader.trySkip(segmentLength)) {
@@ -161,6 +273,207 @@ public class JpegSegmentReader
         } while (true);
     }
 
+    /**
+     * Scans entropy-coded image data for markers, reading it in bulk into a buffer and searching that for 0xFF bytes,
+     * rather than reading the data a byte at a time.
+     */
+    private static final class ImageDataScanner
+    {
+        private static final int BUFFER_LENGTH = 64 * 1024;
+
+        @NotNull
+        private final SequentialReader _reader;
+        /** The offset from the start of the JPEG data of the first byte in the buffer. */
+        private long _bufferOffset;
+        private byte[] _buffer;
+        private int _position;
+        private int _limit;
+
+        /**
+         * @param offset the offset of the reader's current position from the start of the JPEG data
+         */
+        ImageDataScanner(@NotNull SequentialReader reader, long offset)
+        {
+            _reader = reader;
+            _bufferOffset = offset;
+        }
+
+        /**
+         * Reads the SOS segment header on which the reader is positioned, then scans the image data that follows,
+         * adding any segments selected by <code>markerMask</code> to <code>segmentData</code>, and recording where
+         * the image ends.
+         */
+        void scan(@Nullable boolean[] markerMask, @NotNull JpegSegmentData segmentData) throws IOException
+        {
+            _buffer = BufferPool.borrowArray(BUFFER_LENGTH);
+            try {
+                if (!skipSegment())
+                    return;
+
+                while (findMarker()) {
+                    byte marker = _buffer[_position + 1];
+
+                    if (marker == 0 || marker == SEGMENT_IDENTIFIER || (marker >= (byte)0xD0 && marker <= (byte)0xD7) || marker == 0x01) {
+                        // Stuffed zero, fill byte, restart marker or TEM, none of which end the entropy-coded data.
+                        // A fill byte may precede a marker, so only step over the 0xFF.
+                        _position += marker == SEGMENT_IDENTIFIER ? 1 : 2;
+                        continue;
+                    }
+
+                    if (marker == MARKER_EOI) {
+                        long endOfImageOffset = _bufferOffset + _position;
+                        _position += 2;
+                        segmentData.setEndOfImage(endOfImageOffset, countRemaining());
+                        return;
+                    }
+
+                    _position += 2;
+
+                    if (marker == SEGMENT_SOS) {
+                        // A further scan of a progressive image
+                        if (!skipSegment())
+                            return;
+                        continue;
+                    }
+
+                    // Other segments, such as DNL, or the tables between scans of a progressive image
+                    if (markerMask == null || markerMask[marker & 0xFF]) {
+                        byte[] segmentBytes = readSegment();
+                        if (segmentBytes == null)
+                            return;
+                        segmentData.addSegment(marker, segmentBytes);
+                    } else if (!skipSegment()) {
+                        return;
+                    }
+                }
+            } finally {
+                BufferPool.release(_buffer);
+                _buffer = null;
+            }
+        }
+
+        /**
+         * Advances to the next 0xFF byte that is followed by at least one more byte.
+         *
+         * @return <code>false</code> if the data ends first
+         */
+        private boolean findMarker() throws IOException
+        {
+            while (true) {
+                final byte[] buffer = _buffer;
+                final int limit = _limit;
+                int position = _position;
+                while (position < limit && buffer[position] != SEGMENT_IDENTIFIER)
+                    position++;
+                _position = position;
+
+                if (position + 1 < limit)
+                    return true;
+                if (!ensure(position < limit ? 2 : 1))
+                    return false;
+            }
+        }
+
+        /**
+         * Reads a segment's length and data.
+         *
+         * @return the segment's data, or <code>null</code> if the data ends first
+         */
+        @Nullable
+        private byte[] readSegment() throws IOException
+        {
+            int length = readLength();
+            if (length < 0)
+                return null;
+
+            byte[] bytes = new byte[length];
+            int copied = 0;
+            while (copied < length) {
+                if (!ensure(1))
+                    return null;
+                int count = Math.min(length - copied, _limit - _position);
+                System.arraycopy(_buffer, _position, bytes, copied, count);
+                _position += count;
+                copied += count;
+            }
+            return bytes;
+        }
+
+        /**
+         * Reads a segment's length and skips its data.
+         *
+         * @return <code>false</code> if the data ends first
+         */
+        private boolean skipSegment() throws IOException
+        {
+            int length = readLength();
+            if (length < 0)
+                return false;
+
+            int skipped = 0;
+            while (skipped < length) {
+                if (!ensure(1))
+                    return false;
+                int count = Math.min(length - skipped, _limit - _position);
+                _position += count;
+                skipped += count;
+            }
+            return true;
+        }
+
+        /**
+         * @return the length of the segment's data, excluding the length bytes, or -1 if the data ends first or the
+         *         length is invalid
+         */
+        private int readLength() throws IOException
+        {
+            if (!ensure(2))
+                return -1;
+            int length = ((_buffer[_position] & 0xFF) << 8 | (_buffer[_position + 1] & 0xFF)) - 2;
+            _position += 2;
+            return length;
+        }
+
+        /**
+         * Counts the bytes remaining, consuming them.
+         */
+        private long countRemaining() throws IOException
+        {
+            long count = _limit - _position;
+            _position = _limit;
+            int bytesRead;
+            while ((bytesRead = _reader.read(_buffer, 0, _buffer.length)) != -1)
+                count += bytesRead;
+            return count;
+        }
+
+        /**
+         * Ensures at least <code>count</code> unscanned bytes are buffered, moving those that are to the start of the
+         * buffer before reading more.
+         *
+         * @return <code>false</code> if the data ends first
+         */
+        private boolean ensure(int count) throws IOException
+        {
+            if (_limit - _position >= count)
+                return true;
+
+            int remaining = _limit - _position;
+            System.arraycopy(_buffer, _position, _buffer, 0, remaining);
+            _bufferOffset += _position;
+            _position = 0;
+            _limit = remaining;
+
+            while (_limit < count) {
+                int bytesRead = _reader.read(_buffer, _limit, _buffer.length - _limit);
+                if (bytesRead == -1)
+                    return false;
+                _limit += bytesRead;
+            }
+            return true;
+        }
+    }
+
     private JpegSegmentReader() throws Exception
     {
         throw new Exception("Not intended for instantiation.");
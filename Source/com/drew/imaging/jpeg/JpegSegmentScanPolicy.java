@@ -0,0 +1,128 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging.jpeg;
+
+import com.drew.lang.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Limits how much of a JPEG file {@link JpegSegmentReader} scans for segments, bounding the I/O per file when
+ * reading from slow or range-fetched streams.
+ * <p>
+ * Whether a scan was cut short by a policy is reported by {@link JpegSegmentData#isScanCutShort()}.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class JpegSegmentScanPolicy
+{
+    /** A policy that scans all segments up to the start of the image data, as is the default. */
+    @NotNull
+    public static final JpegSegmentScanPolicy UNBOUNDED = new JpegSegmentScanPolicy(Long.MAX_VALUE, false, false);
+
+    /**
+     * Segment types that may legitimately occur more than once, with data accumulated or split across them, such as
+     * Exif and XMP (APP1), ICC profiles (APP2), Photoshop IRBs (APPD), comments and tables. Seeing one of these does
+     * not mean all have been seen, so their presence among requested types prevents a scan stopping early.
+     */
+    @NotNull
+    public static final Collection<JpegSegmentType> REPEATABLE_TYPES = Collections.unmodifiableList(Arrays.asList(
+        JpegSegmentType.APP0, JpegSegmentType.APP1, JpegSegmentType.APP2, JpegSegmentType.APPD,
+        JpegSegmentType.COM, JpegSegmentType.DHT, JpegSegmentType.DQT, JpegSegmentType.DAC
+    ));
+
+    private final long _maxHeaderBytes;
+    private final boolean _stopWhenAllSeen;
+    private final boolean _scanImageData;
+
+    public JpegSegmentScanPolicy(long maxHeaderBytes, boolean stopWhenAllSeen)
+    {
+        this(maxHeaderBytes, stopWhenAllSeen, false);
+    }
+
+    /**
+     * @param maxHeaderBytes the maximum number of bytes to consume, from the start of the JPEG data. A segment that
+     *                       would end beyond this is neither read nor skipped, and the scan stops.
+     * @param stopWhenAllSeen whether to stop scanning once a segment of each requested type has been seen. This only
+     *                        takes effect when none of the requested types are in {@link #REPEATABLE_TYPES}. A
+     *                        JPEG has one frame header, so the SOFn types count as one, seen with the first of
+     *                        them. DNL segments only follow image data, so unless that is scanned they are never
+     *                        waited for, and if it is they prevent a scan stopping early. As {@link
+     *                        JpegMetadataReader#ALL_READERS} read repeatable types, restrict the readers, for
+     *                        example via an {@link com.drew.metadata.ExtractionSpec}, for this to take effect.
+     * @param scanImageData whether to continue past the start of the image data, scanning the entropy-coded data
+     *                      in bulk for segments such as DNL, and for the end of the image and any data appended
+     *                      after it. This scan is not subject to <code>maxHeaderBytes</code>, and only happens if the
+     *                      header scan reaches the image data. See {@link JpegSegmentData#getEndOfImageOffset()}.
+     */
+    public JpegSegmentScanPolicy(long maxHeaderBytes, boolean stopWhenAllSeen, boolean scanImageData)
+    {
+        if (maxHeaderBytes < 0)
+            throw new IllegalArgumentException("maxHeaderBytes must be zero or greater");
+
+        _maxHeaderBytes = maxHeaderBytes;
+        _stopWhenAllSeen = stopWhenAllSeen;
+        _scanImageData = scanImageData;
+    }
+
+    public long getMaxHeaderBytes()
+    {
+        return _maxHeaderBytes;
+    }
+
+    public boolean isStopWhenAllSeen()
+    {
+        return _stopWhenAllSeen;
+    }
+
+    public boolean isScanImageData()
+    {
+        return _scanImageData;
+    }
+
+    /**
+     * Gets the marker by which requested segments of type <code>marker</code> are counted as seen, which is that of
+     * SOF0 for all frame header types, and <code>marker</code> itself otherwise.
+     */
+    static int getSeenMarker(int marker)
+    {
+        // SOF0 to SOF15, other than DHT, JPG and DAC, which share the range
+        boolean isFrameHeader = marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+        return isFrameHeader ? JpegSegmentType.SOF0.byteValue & 0xFF : marker;
+    }
+
+    static boolean isRepeatable(byte marker)
+    {
+        for (JpegSegmentType segmentType : REPEATABLE_TYPES) {
+            if (segmentType.byteValue == marker)
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("maxHeaderBytes=%d stopWhenAllSeen=%s scanImageData=%s", _maxHeaderBytes, _stopWhenAllSeen, _scanImageData);
+    }
+}
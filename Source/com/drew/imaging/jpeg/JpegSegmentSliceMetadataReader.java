@@ -0,0 +1,47 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging.jpeg;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Metadata;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Defines an object that extracts metadata from JPEG segments held as {@link ByteBuffer} slices, which may be views
+ * of a buffer shared with other segments. This avoids copying segment bytes into arrays of their own.
+ * <p>
+ * {@link JpegMetadataReader} passes slices to readers implementing this interface in preference to calling
+ * {@link #readJpegSegments}.
+ */
+public interface JpegSegmentSliceMetadataReader extends JpegSegmentMetadataReader
+{
+    /**
+     * Extracts metadata from all instances of a particular JPEG segment type.
+     *
+     * @param segments A sequence of buffers, each positioned at the start of a segment's data, from which the
+     *                 metadata should be extracted. These are in the order encountered in the original file, and
+     *                 must not be modified.
+     * @param metadata The {@link Metadata} object into which extracted values should be merged.
+     * @param segmentType The {@link JpegSegmentType} being read.
+     */
+    void readJpegSegmentSlices(@NotNull final Iterable<ByteBuffer> segments, @NotNull final Metadata metadata, @NotNull final JpegSegmentType segmentType);
+}
@@ -163,12 +163,16 @@ public enum JpegSegmentType
 
     public static final Collection<JpegSegmentType> canContainMetadataTypes;
 
+    /** The segment type of each marker byte, indexed by that byte. */
+    private static final JpegSegmentType[] _typesByMarker = new JpegSegmentType[256];
+
     static {
         List<JpegSegmentType> segmentTypes = new ArrayList<JpegSegmentType>();
         for (JpegSegmentType segmentType : JpegSegmentType.class.getEnumConstants()) {
             if (segmentType.canContainMetadata) {
                 segmentTypes.add(segmentType);
             }
+            _typesByMarker[segmentType.byteValue & 0xFF] = segmentType;
         }
         canContainMetadataTypes = segmentTypes;
     }
@@ -185,10 +189,6 @@ public enum JpegSegmentType
     @Nullable
     public static JpegSegmentType fromByte(byte segmentTypeByte)
     {
-        for (JpegSegmentType segmentType : JpegSegmentType.class.getEnumConstants()) {
-            if (segmentType.byteValue == segmentTypeByte)
-                return segmentType;
-        }
-        return null;
+        return _typesByMarker[segmentTypeByte & 0xFF];
     }
 }
@@ -90,7 +90,12 @@ public class PngChunkReader
 
             boolean willStoreChunk = desiredChunkTypes == null || desiredChunkTypes.contains(chunkType);
 
-            byte[] chunkData = reader.getBytes(chunkDataLength);
+            // Chunks that won't be stored, such as IDAT, are skipped rather than read
+            byte[] chunkData = null;
+            if (willStoreChunk)
+                chunkData = reader.getBytes(chunkDataLength);
+            else
+                reader.skip(chunkDataLength);
 
             // Skip the CRC bytes at the end of the chunk
             // TODO consider verifying the CRC value to determine if we're processing bad data
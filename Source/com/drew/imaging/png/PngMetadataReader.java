@@ -94,7 +94,13 @@ public class PngMetadataReader
     @NotNull
     public static Metadata readMetadata(@NotNull InputStream inputStream) throws PngProcessingException, IOException
     {
-        Iterable<PngChunk> chunks = new PngChunkReader().extract(new StreamReader(inputStream), _desiredChunkTypes);
+        Iterable<PngChunk> chunks;
+        SequentialByteBufferReader reader = new SequentialByteBufferReader(inputStream);
+        try {
+            chunks = new PngChunkReader().extract(reader, _desiredChunkTypes);
+        } finally {
+            reader.close();
+        }
 
         Metadata metadata = new Metadata();
 
@@ -48,6 +48,23 @@ public interface TiffHandler
     void setTiffMarker(int marker) throws TiffProcessingException;
 
     boolean tryEnterSubIfd(int tagId);
+
+    /**
+     * Indicates whether the value of the specified tag in the current IFD is required. Values of tags that aren't
+     * required are not read, nor passed to any of the <code>set</code> methods.
+     */
+    boolean shouldReadTag(int tagId);
+
+    /**
+     * Offers the handler the location of a tag's value in place of reading it, so that it may be decoded later, if at
+     * all. Returns <code>true</code> if the handler accepted the value, in which case none of the <code>set</code>
+     * methods are called for it.
+     * <p>
+     * Handlers that accept values must only do so when <code>reader</code> will remain readable for as long as
+     * the values may be decoded.
+     */
+    boolean trySetDeferred(int tagId, int formatCode, int componentCount, long tagValueOffset, @NotNull RandomAccessReader reader);
+
     boolean hasFollowerIfd();
 
     void endingIFD();
@@ -55,9 +72,9 @@ public interface TiffHandler
     @Nullable
     Long tryCustomProcessFormat(int tagId, int formatCode, long componentCount);
 
-    boolean customProcessTag(int tagOffset,
-                             @NotNull Set<Integer> processedIfdOffsets,
-                             int tiffHeaderOffset,
+    boolean customProcessTag(long tagOffset,
+                             @NotNull Set<Long> processedIfdOffsets,
+                             long tiffHeaderOffset,
                              @NotNull RandomAccessReader reader,
                              int tagId,
                              int byteCount) throws IOException;
@@ -85,4 +102,8 @@ public interface TiffHandler
     void setInt32sArray(int tagId, @NotNull int[] array);
     void setInt32u(int tagId, long int32u);
     void setInt32uArray(int tagId, @NotNull long[] array);
+    void setInt64s(int tagId, long int64s);
+    void setInt64sArray(int tagId, @NotNull long[] array);
+    void setInt64u(int tagId, long int64u);
+    void setInt64uArray(int tagId, @NotNull long[] array);
 }
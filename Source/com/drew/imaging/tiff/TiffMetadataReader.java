@@ -20,10 +20,13 @@
  */
 package com.drew.imaging.tiff;
 
+import com.drew.imaging.ReadOptions;
 import com.drew.lang.RandomAccessFileReader;
 import com.drew.lang.RandomAccessReader;
 import com.drew.lang.RandomAccessStreamReader;
 import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.ExtractionSpec;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.exif.ExifTiffHandler;
 import com.drew.metadata.file.FileMetadataReader;
@@ -62,17 +65,42 @@ public class TiffMetadataReader
     {
         // TIFF processing requires random access, as directories can be scattered throughout the byte sequence.
         // InputStream does not support seeking backwards, so we wrap it with RandomAccessStreamReader, which
-        // buffers data from the stream as we seek forward.
+        // buffers data from the stream as we seek forward, in chunks that grow as the read moves further in.
 
-        return readMetadata(new RandomAccessStreamReader(inputStream));
+        return readMetadata(new RandomAccessStreamReader(inputStream, RandomAccessStreamReader.DEFAULT_CHUNK_LENGTH, RandomAccessStreamReader.DEFAULT_MAX_CHUNK_LENGTH, -1));
     }
 
     @NotNull
     public static Metadata readMetadata(@NotNull RandomAccessReader reader) throws IOException, TiffProcessingException
     {
-        Metadata metadata = new Metadata();
+        return readMetadata(reader, null, null);
+    }
+
+    /**
+     * Reads metadata from <code>reader</code>, skipping sub-IFDs, makernotes, embedded data and tag values that
+     * <code>extractionSpec</code> doesn't require. See {@link ExtractionSpec}.
+     */
+    @NotNull
+    public static Metadata readMetadata(@NotNull RandomAccessReader reader, @Nullable ExtractionSpec extractionSpec) throws IOException, TiffProcessingException
+    {
+        return readMetadata(reader, extractionSpec, null);
+    }
+
+    /**
+     * Reads the metadata that <code>extractionSpec</code> requires from <code>reader</code>, as
+     * <code>readOptions</code> specify. If tag values are deferred, they are decoded from <code>reader</code>, which
+     * must remain readable for as long as the returned metadata is in use. See {@link ReadOptions}.
+     *
+     * @param extractionSpec the directories and tags required, or <code>null</code> if all are required.
+     * @param readOptions how the data is read, or <code>null</code> for the defaults.
+     */
+    @NotNull
+    public static Metadata readMetadata(@NotNull RandomAccessReader reader, @Nullable ExtractionSpec extractionSpec, @Nullable ReadOptions readOptions) throws IOException, TiffProcessingException
+    {
+        Metadata metadata = new Metadata(extractionSpec);
         ExifTiffHandler handler = new ExifTiffHandler(metadata, null);
-        new TiffReader().processTiff(reader, handler, 0);
+        handler.setDeferTagValues(readOptions != null && readOptions.isDeferTagValues());
+        new TiffReader(readOptions != null && readOptions.isPrefetchRanges()).processTiff(reader, handler, 0);
         return metadata;
     }
 }
@@ -23,9 +23,17 @@ package com.drew.imaging.tiff;
 import com.drew.lang.RandomAccessReader;
 import com.drew.lang.Rational;
 import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.exif.ExifDirectoryBase;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifSubIFDDirectory;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -35,8 +43,47 @@ import java.util.Set;
  */
 public class TiffReader
 {
+    /** The value found at position 2 of a classic TIFF header. */
+    public static final int STANDARD_TIFF_MARKER = 0x002A;
+    /** The value found at position 2 of a BigTIFF header. */
+    public static final int BIG_TIFF_MARKER = 0x002B;
+
+    /** Prefetched ranges separated by no more than this many bytes are fetched as one. */
+    private static final int PREFETCH_MERGE_GAP = 4 * 1024;
+    /** Limits the number of IFDs visited while planning prefetches, as a guard against malformed data. */
+    private static final int MAX_PREFETCH_PLANNED_IFDS = 64;
+
+    private final boolean _prefetchRanges;
+
+    public TiffReader()
+    {
+        this(false);
+    }
+
+    /**
+     * Creates a TIFF reader, optionally in a mode that plans the reads made while processing.
+     * <p>
+     * When <code>prefetchRanges</code> is <code>true</code>, the IFD entry tables reachable via standard pointers
+     * are walked before anything is passed to the {@link TiffHandler}, collecting the ranges of their values and
+     * of any further IFDs. These ranges are then handed to {@link RandomAccessReader#prefetch(long, int)} in
+     * ascending order, with nearby ranges merged, so that readers over slow storage such as
+     * {@link com.drew.lang.RangeFetchReader} can load them in a few forward requests rather than seeking back and
+     * forth between IFD0, the Exif sub-IFD, GPS data, makernotes and IFD1. Processing itself is unchanged.
+     *
+     * @param prefetchRanges <code>true</code> to plan and prefetch the ranges read during processing
+     */
+    public TiffReader(boolean prefetchRanges)
+    {
+        _prefetchRanges = prefetchRanges;
+    }
+
     /**
      * Processes a TIFF data sequence.
+     * <p>
+     * Both classic TIFF and BigTIFF data are supported. BigTIFF is identified by a marker of
+     * {@link #BIG_TIFF_MARKER} and uses 64-bit offsets, counts and 20-byte IFD entries. Only the bytes
+     * of the IFDs and the values they reference are read, so metadata may be extracted from very large
+     * files via a {@link RandomAccessReader} that seeks, without reading image data.
      *
      * @param reader the {@link RandomAccessReader} from which the data should be read
      * @param handler the {@link TiffHandler} that will coordinate processing and accept read values
@@ -47,7 +94,7 @@ public class TiffReader
      */
     public void processTiff(@NotNull final RandomAccessReader reader,
                             @NotNull final TiffHandler handler,
-                            final int tiffHeaderOffset) throws TiffProcessingException, IOException
+                            final long tiffHeaderOffset) throws TiffProcessingException, IOException
     {
         // This must be either "MM" or "II".
         short byteOrderIdentifier = reader.getInt16(tiffHeaderOffset);
@@ -64,7 +111,12 @@ public class TiffReader
         final int tiffMarker = reader.getUInt16(2 + tiffHeaderOffset);
         handler.setTiffMarker(tiffMarker);
 
-        int firstIfdOffset = reader.getInt32(4 + tiffHeaderOffset) + tiffHeaderOffset;
+        if (tiffMarker == BIG_TIFF_MARKER) {
+            processBigTiff(reader, handler, tiffHeaderOffset, _prefetchRanges);
+            return;
+        }
+
+        long firstIfdOffset = reader.getUInt32(4 + tiffHeaderOffset) + tiffHeaderOffset;
 
         // David Ekholm sent a digital camera image that has this problem
         // TODO getLength should be avoided as it causes RandomAccessStreamReader to read to the end of the stream
@@ -74,10 +126,164 @@ public class TiffReader
             firstIfdOffset = tiffHeaderOffset + 2 + 2 + 4;
         }
 
-        Set<Integer> processedIfdOffsets = new HashSet<Integer>();
+        if (_prefetchRanges)
+            prefetchRanges(reader, firstIfdOffset, tiffHeaderOffset, false);
+
+        Set<Long> processedIfdOffsets = new HashSet<Long>();
         processIfd(handler, reader, processedIfdOffsets, firstIfdOffset, tiffHeaderOffset);
     }
 
+    /**
+     * Processes BigTIFF data, following the common byte order and marker.
+     * <p>
+     * BigTIFF Header:
+     * <ul>
+     *     <li><b>2 bytes</b> size of offsets, always 8</li>
+     *     <li><b>2 bytes</b> reserved, always 0</li>
+     *     <li><b>8 bytes</b> offset of the first IFD</li>
+     * </ul>
+     */
+    private static void processBigTiff(@NotNull final RandomAccessReader reader,
+                                       @NotNull final TiffHandler handler,
+                                       final long tiffHeaderOffset,
+                                       final boolean prefetchRanges) throws TiffProcessingException, IOException
+    {
+        final int offsetByteSize = reader.getUInt16(4 + tiffHeaderOffset);
+        final int reserved = reader.getUInt16(6 + tiffHeaderOffset);
+
+        if (offsetByteSize != 8 || reserved != 0)
+            throw new TiffProcessingException(String.format("Unsupported BigTIFF offset size %d (reserved value %d)", offsetByteSize, reserved));
+
+        long firstIfdOffset = reader.getInt64(8 + tiffHeaderOffset) + tiffHeaderOffset;
+
+        if (firstIfdOffset < 0 || firstIfdOffset >= reader.getLength() - 1) {
+            handler.warn("First IFD offset is beyond the end of the TIFF data segment -- trying default offset");
+            // First directory normally starts immediately after the header
+            firstIfdOffset = tiffHeaderOffset + 2 + 2 + 2 + 2 + 8;
+        }
+
+        if (prefetchRanges)
+            prefetchRanges(reader, firstIfdOffset, tiffHeaderOffset, true);
+
+        Set<Long> processedIfdOffsets = new HashSet<Long>();
+        processIfd(handler, reader, processedIfdOffsets, firstIfdOffset, tiffHeaderOffset, true);
+    }
+
+    /**
+     * Walks the IFDs reachable from <code>firstIfdOffset</code> via next-IFD links and the standard sub-IFD pointers,
+     * without calling a handler, then prefetches the ranges holding their values and entry tables in ascending
+     * order, merging ranges that lie within {@link #PREFETCH_MERGE_GAP} bytes of one another.
+     * <p>
+     * Entry tables must be read to discover the ranges, so they are fetched as they are found. IFDs that look
+     * malformed are simply not planned; {@link #processIfd} reports any problems with them as usual.
+     */
+    private static void prefetchRanges(@NotNull final RandomAccessReader reader,
+                                       final long firstIfdOffset,
+                                       final long tiffHeaderOffset,
+                                       final boolean isBigTiff) throws IOException
+    {
+        final long length = reader.getLength();
+        final int entryLength = isBigTiff ? 20 : 12;
+        final int countLength = isBigTiff ? 8 : 2;
+        final int pointerLength = isBigTiff ? 8 : 4;
+
+        // Each range is a pair of start and end offsets
+        List<long[]> ranges = new ArrayList<long[]>();
+        Set<Long> plannedIfdOffsets = new HashSet<Long>();
+        LinkedList<Long> pendingIfdOffsets = new LinkedList<Long>();
+        pendingIfdOffsets.add(firstIfdOffset);
+
+        while (!pendingIfdOffsets.isEmpty() && plannedIfdOffsets.size() < MAX_PREFETCH_PLANNED_IFDS) {
+            final long ifdOffset = pendingIfdOffsets.removeFirst();
+            if (ifdOffset < 0 || ifdOffset + countLength > length || !plannedIfdOffsets.add(ifdOffset))
+                continue;
+
+            final long dirTagCount = isBigTiff ? reader.getInt64(ifdOffset) : reader.getUInt16(ifdOffset);
+            // Skip IFDs whose byte order appears swapped, as well as those that are illegally sized
+            if (dirTagCount < 0 || dirTagCount > 0xFFFF || (!isBigTiff && dirTagCount > 0xFF && (dirTagCount & 0xFF) == 0))
+                continue;
+
+            final long dirLength = countLength + (entryLength * dirTagCount) + pointerLength;
+            if (ifdOffset + dirLength > length)
+                continue;
+            ranges.add(new long[]{ifdOffset, ifdOffset + dirLength});
+
+            for (int tagNumber = 0; tagNumber < dirTagCount; tagNumber++) {
+                final long tagOffset = ifdOffset + countLength + ((long)entryLength * tagNumber);
+                final int tagId = reader.getUInt16(tagOffset);
+                final TiffDataFormat format = TiffDataFormat.fromTiffFormatCode(reader.getUInt16(tagOffset + 2));
+                final long componentCount = isBigTiff ? reader.getInt64(tagOffset + 4) : reader.getUInt32(tagOffset + 4);
+                if (format == null || componentCount < 0 || componentCount > Integer.MAX_VALUE)
+                    continue;
+
+                final long byteCount = componentCount * format.getComponentSizeBytes();
+                if (byteCount > Integer.MAX_VALUE)
+                    continue;
+
+                final long valueOffset;
+                if (byteCount > pointerLength) {
+                    final long offsetVal = isBigTiff ? reader.getInt64(tagOffset + 4 + pointerLength) : reader.getUInt32(tagOffset + 8);
+                    valueOffset = tiffHeaderOffset + offsetVal;
+                    if (offsetVal < 0 || valueOffset + byteCount > length)
+                        continue;
+                    ranges.add(new long[]{valueOffset, valueOffset + byteCount});
+                } else {
+                    valueOffset = tagOffset + 4 + pointerLength;
+                }
+
+                if (isSubIfdPointer(tagId) && (byteCount == 4 * componentCount || (isBigTiff && byteCount == 8 * componentCount))) {
+                    for (int i = 0; i < componentCount; i++) {
+                        pendingIfdOffsets.add(tiffHeaderOffset + (byteCount == 4 * componentCount
+                            ? reader.getUInt32(valueOffset + i * 4)
+                            : reader.getInt64(valueOffset + i * 8)));
+                    }
+                }
+            }
+
+            final long finalTagOffset = ifdOffset + countLength + ((long)entryLength * dirTagCount);
+            final long nextIfdOffset = isBigTiff ? reader.getInt64(finalTagOffset) : reader.getUInt32(finalTagOffset);
+            if (nextIfdOffset != 0)
+                pendingIfdOffsets.add(tiffHeaderOffset + nextIfdOffset);
+        }
+
+        Collections.sort(ranges, new Comparator<long[]>()
+        {
+            public int compare(long[] a, long[] b)
+            {
+                return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+            }
+        });
+
+        long start = -1;
+        long end = -1;
+        for (long[] range : ranges) {
+            if (start != -1 && range[0] <= end + PREFETCH_MERGE_GAP) {
+                end = Math.max(end, range[1]);
+                continue;
+            }
+            if (start != -1)
+                prefetch(reader, start, end);
+            start = range[0];
+            end = range[1];
+        }
+        if (start != -1)
+            prefetch(reader, start, end);
+    }
+
+    private static void prefetch(@NotNull final RandomAccessReader reader, final long start, final long end) throws IOException
+    {
+        for (long index = start; index < end; index += Integer.MAX_VALUE)
+            reader.prefetch(index, (int)Math.min(end - index, Integer.MAX_VALUE));
+    }
+
+    private static boolean isSubIfdPointer(final int tagId)
+    {
+        return tagId == ExifIFD0Directory.TAG_EXIF_SUB_IFD_OFFSET
+            || tagId == ExifIFD0Directory.TAG_GPS_INFO_OFFSET
+            || tagId == ExifSubIFDDirectory.TAG_INTEROP_OFFSET
+            || tagId == ExifDirectoryBase.TAG_SUB_IFD_OFFSET;
+    }
+
     /**
      * Processes a TIFF IFD.
      *
@@ -103,14 +309,39 @@ public class TiffReader
      */
     public static void processIfd(@NotNull final TiffHandler handler,
                                   @NotNull final RandomAccessReader reader,
-                                  @NotNull final Set<Integer> processedIfdOffsets,
-                                  final int ifdOffset,
-                                  final int tiffHeaderOffset) throws IOException
+                                  @NotNull final Set<Long> processedIfdOffsets,
+                                  final long ifdOffset,
+                                  final long tiffHeaderOffset) throws IOException
+    {
+        processIfd(handler, reader, processedIfdOffsets, ifdOffset, tiffHeaderOffset, false);
+    }
+
+    /**
+     * Processes a TIFF or BigTIFF IFD.
+     * <p>
+     * BigTIFF IFDs differ from those of classic TIFF in that the number of tags is held in <b>8 bytes</b>,
+     * and each tag has an <b>8 byte</b> component count and an <b>8 byte</b> inline value or offset pointer,
+     * making 20 bytes per entry. The link to the next IFD is also 8 bytes.
+     *
+     * @param handler the {@link com.drew.imaging.tiff.TiffHandler} that will coordinate processing and accept read values
+     * @param reader the {@link com.drew.lang.RandomAccessReader} from which the data should be read
+     * @param processedIfdOffsets the set of visited IFD offsets, to avoid revisiting the same IFD in an endless loop
+     * @param ifdOffset the offset within <code>reader</code> at which the IFD data starts
+     * @param tiffHeaderOffset the offset within <code>reader</code> at which the TIFF header starts
+     * @param isBigTiff <code>true</code> if the IFD uses the BigTIFF layout, otherwise <code>false</code>
+     * @throws IOException an error occurred while accessing the required data
+     */
+    public static void processIfd(@NotNull final TiffHandler handler,
+                                  @NotNull final RandomAccessReader reader,
+                                  @NotNull final Set<Long> processedIfdOffsets,
+                                  final long ifdOffset,
+                                  final long tiffHeaderOffset,
+                                  final boolean isBigTiff) throws IOException
     {
         Boolean resetByteOrder = null;
         try {
             // check for directories we've already visited to avoid stack overflows when recursive/cyclic directory structures exist
-            if (processedIfdOffsets.contains(Integer.valueOf(ifdOffset))) {
+            if (processedIfdOffsets.contains(ifdOffset)) {
                 return;
             }
 
@@ -122,20 +353,30 @@ public class TiffReader
                 return;
             }
 
-            // First two bytes in the IFD are the number of tags in this directory
-            int dirTagCount = reader.getUInt16(ifdOffset);
+            final int entryLength = isBigTiff ? 20 : 12;
+            final int countLength = isBigTiff ? 8 : 2;
+            final int pointerLength = isBigTiff ? 8 : 4;
+
+            // The first bytes in the IFD are the number of tags in this directory
+            long dirTagCountLong = isBigTiff ? reader.getInt64(ifdOffset) : reader.getUInt16(ifdOffset);
 
             // Some software modifies the byte order of the file, but misses some IFDs (such as makernotes).
             // The entire test image repository doesn't contain a single IFD with more than 255 entries.
             // Here we detect switched bytes that suggest this problem, and temporarily swap the byte order.
             // This was discussed in GitHub issue #136.
-            if (dirTagCount > 0xFF && (dirTagCount & 0xFF) == 0) {
+            if (!isBigTiff && dirTagCountLong > 0xFF && (dirTagCountLong & 0xFF) == 0) {
                 resetByteOrder = reader.isMotorolaByteOrder();
-                dirTagCount >>= 8;
+                dirTagCountLong >>= 8;
                 reader.setMotorolaByteOrder(!reader.isMotorolaByteOrder());
             }
 
-            int dirLength = (2 + (12 * dirTagCount) + 4);
+            if (dirTagCountLong < 0 || dirTagCountLong > 0xFFFF) {
+                handler.error("Illegally sized IFD");
+                return;
+            }
+            final int dirTagCount = (int)dirTagCountLong;
+
+            long dirLength = countLength + ((long)entryLength * dirTagCount) + pointerLength;
             if (dirLength + ifdOffset > reader.getLength()) {
                 handler.error("Illegally sized IFD");
                 return;
@@ -146,7 +387,7 @@ public class TiffReader
             //
             int invalidTiffFormatCodeCount = 0;
             for (int tagNumber = 0; tagNumber < dirTagCount; tagNumber++) {
-                final int tagOffset = calculateTagOffset(ifdOffset, tagNumber);
+                final long tagOffset = ifdOffset + countLength + ((long)entryLength * tagNumber);
 
                 // 2 bytes for the tag id
                 final int tagId = reader.getUInt16(tagOffset);
@@ -155,8 +396,12 @@ public class TiffReader
                 final int formatCode = reader.getUInt16(tagOffset + 2);
                 final TiffDataFormat format = TiffDataFormat.fromTiffFormatCode(formatCode);
 
-                // 4 bytes dictate the number of components in this tag's data
-                final long componentCount = reader.getUInt32(tagOffset + 4);
+                // 4 (or 8 for BigTIFF) bytes dictate the number of components in this tag's data
+                final long componentCount = isBigTiff ? reader.getInt64(tagOffset + 4) : reader.getUInt32(tagOffset + 4);
+                if (componentCount < 0 || componentCount > Integer.MAX_VALUE) {
+                    handler.error(String.format("Illegal component count %d for tag 0x%04X", componentCount, tagId));
+                    continue;
+                }
 
                 final long byteCount;
                 if (format == null) {
@@ -178,18 +423,18 @@ public class TiffReader
                 }
 
                 final long tagValueOffset;
-                if (byteCount > 4) {
-                    // If it's bigger than 4 bytes, the dir entry contains an offset.
-                    final long offsetVal = reader.getUInt32(tagOffset + 8);
-                    if (offsetVal + byteCount > reader.getLength()) {
+                if (byteCount > pointerLength) {
+                    // If it's bigger than the pointer length, the dir entry contains an offset.
+                    final long offsetVal = isBigTiff ? reader.getInt64(tagOffset + 4 + pointerLength) : reader.getUInt32(tagOffset + 8);
+                    if (offsetVal < 0 || offsetVal + byteCount > reader.getLength()) {
                         // Bogus pointer offset and / or byteCount value
                         handler.error("Illegal TIFF tag pointer offset");
                         continue;
                     }
                     tagValueOffset = tiffHeaderOffset + offsetVal;
                 } else {
-                    // 4 bytes or less and value is in the dir entry itself.
-                    tagValueOffset = tagOffset + 8;
+                    // Value fits within the pointer bytes, so is in the dir entry itself.
+                    tagValueOffset = tagOffset + 4 + pointerLength;
                 }
 
                 if (tagValueOffset < 0 || tagValueOffset > reader.getLength()) {
@@ -199,47 +444,51 @@ public class TiffReader
 
                 // Check that this tag isn't going to allocate outside the bounds of the data array.
                 // This addresses an uncommon OutOfMemoryError.
-                if (byteCount < 0 || tagValueOffset + byteCount > reader.getLength()) {
+                if (byteCount < 0 || byteCount > Integer.MAX_VALUE || tagValueOffset + byteCount > reader.getLength()) {
                     handler.error("Illegal number of bytes for TIFF tag data: " + byteCount);
                     continue;
                 }
 
                 // Some tags point to one or more additional IFDs to process
                 boolean isIfdPointer = false;
-                if (byteCount == 4 * componentCount) {
+                final boolean isInt64Pointer = isBigTiff && byteCount == 8 * componentCount;
+                if (byteCount == 4 * componentCount || isInt64Pointer) {
                     for (int i = 0; i < componentCount; i++) {
                         if (handler.tryEnterSubIfd(tagId)) {
                             isIfdPointer = true;
-                            int subDirOffset = tiffHeaderOffset + reader.getInt32((int) (tagValueOffset + i * 4));
-                            processIfd(handler, reader, processedIfdOffsets, subDirOffset, tiffHeaderOffset);
+                            long subDirOffset = tiffHeaderOffset + (isInt64Pointer
+                                ? reader.getInt64(tagValueOffset + i * 8)
+                                : reader.getUInt32(tagValueOffset + i * 4));
+                            processIfd(handler, reader, processedIfdOffsets, subDirOffset, tiffHeaderOffset, isBigTiff);
                         }
                     }
                 }
 
                 // If it wasn't an IFD pointer, allow custom tag processing to occur
-                if (!isIfdPointer && !handler.customProcessTag((int) tagValueOffset, processedIfdOffsets, tiffHeaderOffset, reader, tagId, (int) byteCount)) {
-                    // If no custom processing occurred, process the tag in the standard fashion
-                    processTag(handler, tagId, (int) tagValueOffset, (int) componentCount, formatCode, reader);
+                if (!isIfdPointer && !handler.customProcessTag(tagValueOffset, processedIfdOffsets, tiffHeaderOffset, reader, tagId, (int) byteCount)) {
+                    // If no custom processing occurred, process the tag in the standard fashion, unless it's not wanted
+                    if (handler.shouldReadTag(tagId) && !handler.trySetDeferred(tagId, formatCode, (int) componentCount, tagValueOffset, reader))
+                        processTag(handler, tagId, tagValueOffset, (int) componentCount, formatCode, reader);
                 }
             }
 
             // at the end of each IFD is an optional link to the next IFD
-            final int finalTagOffset = calculateTagOffset(ifdOffset, dirTagCount);
-            int nextIfdOffset = reader.getInt32(finalTagOffset);
+            final long finalTagOffset = ifdOffset + countLength + ((long)entryLength * dirTagCount);
+            long nextIfdOffset = isBigTiff ? reader.getInt64(finalTagOffset) : reader.getUInt32(finalTagOffset);
             if (nextIfdOffset != 0) {
                 nextIfdOffset += tiffHeaderOffset;
-                if (nextIfdOffset >= reader.getLength()) {
-                    // Last 4 bytes of IFD reference another IFD with an address that is out of bounds
+                if (nextIfdOffset >= reader.getLength() || nextIfdOffset < 0) {
+                    // Last bytes of IFD reference another IFD with an address that is out of bounds
                     // Note this could have been caused by jhead 1.3 cropping too much
                     return;
                 } else if (nextIfdOffset < ifdOffset) {
                     // TODO is this a valid restriction?
-                    // Last 4 bytes of IFD reference another IFD with an address that is before the start of this directory
+                    // Last bytes of IFD reference another IFD with an address that is before the start of this directory
                     return;
                 }
 
                 if (handler.hasFollowerIfd()) {
-                    processIfd(handler, reader, processedIfdOffsets, nextIfdOffset, tiffHeaderOffset);
+                    processIfd(handler, reader, processedIfdOffsets, nextIfdOffset, tiffHeaderOffset, isBigTiff);
                 }
             }
         } finally {
@@ -251,7 +500,7 @@ public class TiffReader
 
     private static void processTag(@NotNull final TiffHandler handler,
                                    final int tagId,
-                                   final int tagValueOffset,
+                                   final long tagValueOffset,
                                    final int componentCount,
                                    final int formatCode,
                                    @NotNull final RandomAccessReader reader) throws IOException
@@ -268,80 +517,56 @@ public class TiffReader
                 if (componentCount == 1) {
                     handler.setRational(tagId, new Rational(reader.getInt32(tagValueOffset), reader.getInt32(tagValueOffset + 4)));
                 } else if (componentCount > 1) {
-                    Rational[] array = new Rational[componentCount];
-                    for (int i = 0; i < componentCount; i++)
-                        array[i] = new Rational(reader.getInt32(tagValueOffset + (8 * i)), reader.getInt32(tagValueOffset + 4 + (8 * i)));
-                    handler.setRationalArray(tagId, array);
+                    handler.setRationalArray(tagId, reader.getRationalArray(tagValueOffset, componentCount, true));
                 }
                 break;
             case TiffDataFormat.CODE_RATIONAL_U:
                 if (componentCount == 1) {
                     handler.setRational(tagId, new Rational(reader.getUInt32(tagValueOffset), reader.getUInt32(tagValueOffset + 4)));
                 } else if (componentCount > 1) {
-                    Rational[] array = new Rational[componentCount];
-                    for (int i = 0; i < componentCount; i++)
-                        array[i] = new Rational(reader.getUInt32(tagValueOffset + (8 * i)), reader.getUInt32(tagValueOffset + 4 + (8 * i)));
-                    handler.setRationalArray(tagId, array);
+                    handler.setRationalArray(tagId, reader.getRationalArray(tagValueOffset, componentCount, false));
                 }
                 break;
             case TiffDataFormat.CODE_SINGLE:
                 if (componentCount == 1) {
                     handler.setFloat(tagId, reader.getFloat32(tagValueOffset));
                 } else {
-                    float[] array = new float[componentCount];
-                    for (int i = 0; i < componentCount; i++)
-                        array[i] = reader.getFloat32(tagValueOffset + (i * 4));
-                    handler.setFloatArray(tagId, array);
+                    handler.setFloatArray(tagId, reader.getFloat32Array(tagValueOffset, componentCount));
                 }
                 break;
             case TiffDataFormat.CODE_DOUBLE:
                 if (componentCount == 1) {
                     handler.setDouble(tagId, reader.getDouble64(tagValueOffset));
                 } else {
-                    double[] array = new double[componentCount];
-                    for (int i = 0; i < componentCount; i++)
-                        array[i] = reader.getDouble64(tagValueOffset + (i * 4));
-                    handler.setDoubleArray(tagId, array);
+                    handler.setDoubleArray(tagId, reader.getDouble64Array(tagValueOffset, componentCount));
                 }
                 break;
             case TiffDataFormat.CODE_INT8_S:
                 if (componentCount == 1) {
                     handler.setInt8s(tagId, reader.getInt8(tagValueOffset));
                 } else {
-                    byte[] array = new byte[componentCount];
-                    for (int i = 0; i < componentCount; i++)
-                        array[i] = reader.getInt8(tagValueOffset + i);
-                    handler.setInt8sArray(tagId, array);
+                    handler.setInt8sArray(tagId, reader.getBytes(tagValueOffset, componentCount));
                 }
                 break;
             case TiffDataFormat.CODE_INT8_U:
                 if (componentCount == 1) {
                     handler.setInt8u(tagId, reader.getUInt8(tagValueOffset));
                 } else {
-                    short[] array = new short[componentCount];
-                    for (int i = 0; i < componentCount; i++)
-                        array[i] = reader.getUInt8(tagValueOffset + i);
-                    handler.setInt8uArray(tagId, array);
+                    handler.setInt8uArray(tagId, reader.getUInt8Array(tagValueOffset, componentCount));
                 }
                 break;
             case TiffDataFormat.CODE_INT16_S:
                 if (componentCount == 1) {
                     handler.setInt16s(tagId, (int)reader.getInt16(tagValueOffset));
                 } else {
-                    short[] array = new short[componentCount];
-                    for (int i = 0; i < componentCount; i++)
-                        array[i] = reader.getInt16(tagValueOffset + (i * 2));
-                    handler.setInt16sArray(tagId, array);
+                    handler.setInt16sArray(tagId, reader.getInt16Array(tagValueOffset, componentCount));
                 }
                 break;
             case TiffDataFormat.CODE_INT16_U:
                 if (componentCount == 1) {
                     handler.setInt16u(tagId, reader.getUInt16(tagValueOffset));
                 } else {
-                    int[] array = new int[componentCount];
-                    for (int i = 0; i < componentCount; i++)
-                        array[i] = reader.getUInt16(tagValueOffset + (i * 2));
-                    handler.setInt16uArray(tagId, array);
+                    handler.setInt16uArray(tagId, reader.getUInt16Array(tagValueOffset, componentCount));
                 }
                 break;
             case TiffDataFormat.CODE_INT32_S:
@@ -349,10 +574,7 @@ public class TiffReader
                 if (componentCount == 1) {
                     handler.setInt32s(tagId, reader.getInt32(tagValueOffset));
                 } else {
-                    int[] array = new int[componentCount];
-                    for (int i = 0; i < componentCount; i++)
-                        array[i] = reader.getInt32(tagValueOffset + (i * 4));
-                    handler.setInt32sArray(tagId, array);
+                    handler.setInt32sArray(tagId, reader.getInt32Array(tagValueOffset, componentCount));
                 }
                 break;
             case TiffDataFormat.CODE_INT32_U:
@@ -360,27 +582,27 @@ public class TiffReader
                 if (componentCount == 1) {
                     handler.setInt32u(tagId, reader.getUInt32(tagValueOffset));
                 } else {
-                    long[] array = new long[componentCount];
-                    for (int i = 0; i < componentCount; i++)
-                        array[i] = reader.getUInt32(tagValueOffset + (i * 4));
-                    handler.setInt32uArray(tagId, array);
+                    handler.setInt32uArray(tagId, reader.getUInt32Array(tagValueOffset, componentCount));
+                }
+                break;
+            case TiffDataFormat.CODE_INT64_S:
+                if (componentCount == 1) {
+                    handler.setInt64s(tagId, reader.getInt64(tagValueOffset));
+                } else {
+                    handler.setInt64sArray(tagId, reader.getInt64Array(tagValueOffset, componentCount));
+                }
+                break;
+            case TiffDataFormat.CODE_INT64_U:
+            case TiffDataFormat.CODE_IFD8:
+                // NOTE values beyond Long.MAX_VALUE will appear negative
+                if (componentCount == 1) {
+                    handler.setInt64u(tagId, reader.getInt64(tagValueOffset));
+                } else {
+                    handler.setInt64uArray(tagId, reader.getInt64Array(tagValueOffset, componentCount));
                 }
                 break;
             default:
                 handler.error(String.format("Invalid TIFF tag format code %d for tag 0x%04X", formatCode, tagId));
         }
     }
-
-    /**
-     * Determine the offset of a given tag within the specified IFD.
-     *
-     * @param ifdStartOffset the offset at which the IFD starts
-     * @param entryNumber    the zero-based entry number
-     */
-    private static int calculateTagOffset(int ifdStartOffset, int entryNumber)
-    {
-        // Add 2 bytes for the tag count.
-        // Each entry is 12 bytes.
-        return ifdStartOffset + 2 + (12 * entryNumber);
-    }
 }
@@ -22,7 +22,7 @@ package com.drew.imaging.webp;
 
 import com.drew.imaging.riff.RiffProcessingException;
 import com.drew.imaging.riff.RiffReader;
-import com.drew.lang.StreamReader;
+import com.drew.lang.SequentialByteBufferReader;
 import com.drew.lang.annotations.NotNull;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.file.FileMetadataReader;
@@ -55,7 +55,12 @@ public class WebpMetadataReader
     public static Metadata readMetadata(@NotNull InputStream inputStream) throws IOException, RiffProcessingException
     {
         Metadata metadata = new Metadata();
-        new RiffReader().processRiff(new StreamReader(inputStream), new WebpRiffHandler(metadata));
+        SequentialByteBufferReader reader = new SequentialByteBufferReader(inputStream);
+        try {
+            new RiffReader().processRiff(reader, new WebpRiffHandler(metadata));
+        } finally {
+            reader.close();
+        }
         return metadata;
     }
 }
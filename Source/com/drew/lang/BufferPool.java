@@ -0,0 +1,129 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.lang;
+
+import com.drew.lang.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds a few buffers per thread for reuse, so that readers can avoid allocating for transient data such as the
+ * window of {@link SequentialByteBufferReader}, or payloads that are only inspected and never kept.
+ * <p>
+ * A borrowed buffer must be released by the thread that borrowed it once it's no longer used, and must not be
+ * used after it is released. Buffers that are never released are simply garbage collected.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class BufferPool
+{
+    private static final int MAX_POOLED_PER_THREAD = 4;
+
+    private static final ThreadLocal<List<byte[]>> _arrays = new ThreadLocal<List<byte[]>>()
+    {
+        @Override
+        protected List<byte[]> initialValue()
+        {
+            return new ArrayList<byte[]>(MAX_POOLED_PER_THREAD);
+        }
+    };
+
+    private static final ThreadLocal<List<ByteBuffer>> _directBuffers = new ThreadLocal<List<ByteBuffer>>()
+    {
+        @Override
+        protected List<ByteBuffer> initialValue()
+        {
+            return new ArrayList<ByteBuffer>(MAX_POOLED_PER_THREAD);
+        }
+    };
+
+    /**
+     * Borrows an array of at least <code>minLength</code> bytes, whose contents are undefined.
+     */
+    @NotNull
+    public static byte[] borrowArray(int minLength)
+    {
+        List<byte[]> arrays = _arrays.get();
+        for (int i = 0; i < arrays.size(); i++) {
+            if (arrays.get(i).length >= minLength)
+                return arrays.remove(i);
+        }
+        return new byte[roundUp(minLength)];
+    }
+
+    /**
+     * Returns an array obtained from {@link #borrowArray(int)} to the calling thread's pool.
+     */
+    public static void release(@NotNull byte[] array)
+    {
+        List<byte[]> arrays = _arrays.get();
+        if (arrays.size() < MAX_POOLED_PER_THREAD)
+            arrays.add(array);
+    }
+
+    /**
+     * Borrows a direct buffer having a capacity of at least <code>minCapacity</code> bytes, cleared and in
+     * big-endian order. Its contents are undefined.
+     */
+    @NotNull
+    public static ByteBuffer borrowDirectBuffer(int minCapacity)
+    {
+        List<ByteBuffer> buffers = _directBuffers.get();
+        for (int i = 0; i < buffers.size(); i++) {
+            if (buffers.get(i).capacity() >= minCapacity) {
+                ByteBuffer buffer = buffers.remove(i);
+                buffer.clear();
+                buffer.order(ByteOrder.BIG_ENDIAN);
+                return buffer;
+            }
+        }
+        return ByteBuffer.allocateDirect(roundUp(minCapacity));
+    }
+
+    /**
+     * Returns a buffer obtained from {@link #borrowDirectBuffer(int)} to the calling thread's pool.
+     */
+    public static void release(@NotNull ByteBuffer buffer)
+    {
+        List<ByteBuffer> buffers = _directBuffers.get();
+        if (buffer.isDirect() && buffers.size() < MAX_POOLED_PER_THREAD)
+            buffers.add(buffer);
+    }
+
+    /**
+     * Rounds up to a power of two, so that buffers of similar sizes can be reused for one another.
+     */
+    private static int roundUp(int length)
+    {
+        if (length <= 64)
+            return 64;
+        int rounded = Integer.highestOneBit(length - 1) << 1;
+        return rounded > 0 ? rounded : length;
+    }
+
+    private BufferPool() throws Exception
+    {
+        throw new Exception("Not intended for instantiation");
+    }
+}
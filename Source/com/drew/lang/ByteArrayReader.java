@@ -24,6 +24,7 @@ package com.drew.lang;
 import com.drew.lang.annotations.NotNull;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Provides methods to read specific values from a byte array, with a consistent, checked exception structure for
@@ -73,35 +74,44 @@ public class ByteArrayReader extends RandomAccessReader
     }
 
     @Override
-    public byte getByte(int index) throws IOException
+    public byte getByte(long index) throws IOException
     {
         validateIndex(index, 1);
-        return _buffer[index + _baseOffset];
+        return _buffer[(int)index + _baseOffset];
     }
 
     @Override
-    protected void validateIndex(int index, int bytesRequested) throws IOException
+    protected void validateIndex(long index, int bytesRequested) throws IOException
     {
         if (!isValidIndex(index, bytesRequested))
-            throw new BufferBoundsException(toUnshiftedOffset(index), bytesRequested, _buffer.length);
+            throw new BufferBoundsException(index + _baseOffset, bytesRequested, _buffer.length);
     }
 
     @Override
-    protected boolean isValidIndex(int index, int bytesRequested) throws IOException
+    protected boolean isValidIndex(long index, int bytesRequested) throws IOException
     {
         return bytesRequested >= 0
             && index >= 0
-            && (long)index + (long)bytesRequested - 1L < getLength();
+            && index + (long)bytesRequested - 1L < getLength();
     }
 
     @Override
     @NotNull
-    public byte[] getBytes(int index, int count) throws IOException
+    protected ByteBuffer getBuffer(long index, int byteCount) throws IOException
+    {
+        validateIndex(index, byteCount);
+
+        return ByteBuffer.wrap(_buffer, (int)index + _baseOffset, byteCount).slice().order(getByteOrder());
+    }
+
+    @Override
+    @NotNull
+    public byte[] getBytes(long index, int count) throws IOException
     {
         validateIndex(index, count);
 
         byte[] bytes = new byte[count];
-        System.arraycopy(_buffer, index + _baseOffset, bytes, 0, count);
+        System.arraycopy(_buffer, (int)index + _baseOffset, bytes, 0, count);
         return bytes;
     }
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+
+package com.drew.lang;
+
+import com.drew.lang.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Provides methods to read specific values from a {@link ByteBuffer}, with a consistent, checked exception structure
+ * for issues.
+ * <p>
+ * This is most useful with a {@link java.nio.MappedByteBuffer} obtained via {@link FileChannel#map}, in which case
+ * only the pages of the file that are actually read are loaded by the operating system. See {@link #map(File)}.
+ * <p>
+ * Multi-byte values are decoded by the buffer itself, whose byte order tracks {@link #isMotorolaByteOrder()}.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class ByteBufferReader extends RandomAccessReader
+{
+    @NotNull
+    private final ByteBuffer _buffer;
+    @NotNull
+    private final ByteBuffer _bulkView;
+    private final int _baseOffset;
+
+    /**
+     * Creates a reader over the remaining bytes of <code>buffer</code>. Index zero of the reader corresponds
+     * to the buffer's current position. The buffer's position, limit and byte order are not modified.
+     */
+    @SuppressWarnings({ "ConstantConditions" })
+    public ByteBufferReader(@NotNull ByteBuffer buffer)
+    {
+        this(buffer, 0);
+    }
+
+    @SuppressWarnings({ "ConstantConditions" })
+    public ByteBufferReader(@NotNull ByteBuffer buffer, int baseOffset)
+    {
+        if (buffer == null)
+            throw new NullPointerException();
+        if (baseOffset < 0)
+            throw new IllegalArgumentException("Must be zero or greater");
+
+        _buffer = buffer.slice();
+        _bulkView = _buffer.duplicate();
+        _baseOffset = baseOffset;
+        _buffer.order(isMotorolaByteOrder() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Maps the entire contents of <code>file</code> into memory, read-only, and returns a reader over it.
+     * <p>
+     * The mapping remains valid after this method returns, even though the underlying file handle is closed.
+     * The memory is released when the returned reader is garbage collected.
+     *
+     * @throws IOException if the file could not be mapped, or is too large to be addressed by this reader
+     */
+    @NotNull
+    public static ByteBufferReader map(@NotNull File file) throws IOException
+    {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                throw new IOException("File is too large to be mapped: " + size + " bytes");
+            return new ByteBufferReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    @Override
+    public int toUnshiftedOffset(int localOffset)
+    {
+        return localOffset + _baseOffset;
+    }
+
+    @Override
+    public long getLength()
+    {
+        return _buffer.capacity();
+    }
+
+    @Override
+    public void setMotorolaByteOrder(boolean motorolaByteOrder)
+    {
+        super.setMotorolaByteOrder(motorolaByteOrder);
+        _buffer.order(motorolaByteOrder ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public byte getByte(long index) throws IOException
+    {
+        validateIndex(index, 1);
+        return _buffer.get((int)index);
+    }
+
+    @Override
+    @NotNull
+    public byte[] getBytes(long index, int count) throws IOException
+    {
+        validateIndex(index, count);
+
+        byte[] bytes = new byte[count];
+        _bulkView.position((int)index);
+        _bulkView.get(bytes);
+        return bytes;
+    }
+
+    @Override
+    @NotNull
+    protected ByteBuffer getBuffer(long index, int byteCount) throws IOException
+    {
+        validateIndex(index, byteCount);
+
+        ByteBuffer view = _bulkView.duplicate();
+        view.position((int)index);
+        view.limit((int)index + byteCount);
+        return view.slice().order(getByteOrder());
+    }
+
+    @Override
+    public int getUInt16(long index) throws IOException
+    {
+        validateIndex(index, 2);
+        return _buffer.getShort((int)index) & 0xFFFF;
+    }
+
+    @Override
+    public short getInt16(long index) throws IOException
+    {
+        validateIndex(index, 2);
+        return _buffer.getShort((int)index);
+    }
+
+    @Override
+    public long getUInt32(long index) throws IOException
+    {
+        validateIndex(index, 4);
+        return _buffer.getInt((int)index) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public int getInt32(long index) throws IOException
+    {
+        validateIndex(index, 4);
+        return _buffer.getInt((int)index);
+    }
+
+    @Override
+    public long getInt64(long index) throws IOException
+    {
+        validateIndex(index, 8);
+        return _buffer.getLong((int)index);
+    }
+
+    @Override
+    public float getFloat32(long index) throws IOException
+    {
+        validateIndex(index, 4);
+        return _buffer.getFloat((int)index);
+    }
+
+    @Override
+    public double getDouble64(long index) throws IOException
+    {
+        validateIndex(index, 8);
+        return _buffer.getDouble((int)index);
+    }
+
+    @Override
+    protected void validateIndex(long index, int bytesRequested) throws IOException
+    {
+        if (!isValidIndex(index, bytesRequested))
+            throw new BufferBoundsException(index, bytesRequested, getLength());
+    }
+
+    @Override
+    protected boolean isValidIndex(long index, int bytesRequested) throws IOException
+    {
+        return bytesRequested >= 0
+            && index >= 0
+            && index + (long)bytesRequested - 1L < getLength();
+    }
+}
@@ -20,13 +20,18 @@
  */
 package com.drew.lang;
 
+import com.drew.lang.annotations.NotNull;
 import com.drew.lang.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Stores values using a prefix tree (aka 'trie', i.e. reTRIEval data structure).
+ * <p>
+ * Once all paths are added, {@link #compile()} produces an immutable form that is faster to search.
  *
  * @param <T> the type of value to store for byte sequences
  */
@@ -56,11 +61,22 @@ public class ByteTrie<T>
      */
     @Nullable
     public T find(byte[] bytes)
+    {
+        return find(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Return the most specific value stored for the <code>count</code> bytes of <code>bytes</code> starting at
+     * <code>offset</code>. If not found, returns <code>null</code> or a default values as specified by calling
+     * {@link ByteTrie#setDefaultValue}.
+     */
+    @Nullable
+    public T find(byte[] bytes, int offset, int count)
     {
         ByteTrieNode<T> node = _root;
         T value = node._value;
-        for (byte b : bytes) {
-            ByteTrieNode<T> child = node._children.get(b);
+        for (int i = offset; i < offset + count; i++) {
+            ByteTrieNode<T> child = node._children.get(bytes[i]);
             if (child == null)
                 break;
             node = child;
@@ -101,4 +117,55 @@ public class ByteTrie<T>
     {
         return _maxDepth;
     }
+
+    /**
+     * Produces an immutable copy of this trie, whose lookups neither allocate nor box. Paths added to this trie
+     * afterwards are not reflected in the copy.
+     */
+    @NotNull
+    public CompiledByteTrie<T> compile()
+    {
+        // Number nodes breadth first, so that the root is zero and each node's children are numbered consecutively
+        List<ByteTrieNode<T>> nodes = new ArrayList<ByteTrieNode<T>>();
+        List<Object> values = new ArrayList<Object>();
+        nodes.add(_root);
+        values.add(_root._value);
+
+        int edgeCount = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            ByteTrieNode<T> node = nodes.get(i);
+            for (ByteTrieNode<T> child : node._children.values()) {
+                nodes.add(child);
+                // A node without a value inherits the most specific value of its parent
+                values.add(child._value != null ? child._value : values.get(i));
+            }
+            if (i != 0)
+                edgeCount += node._children.size();
+        }
+
+        int[] rootTransitions = new int[256];
+        int[] edgeStarts = new int[nodes.size() + 1];
+        byte[] edgeKeys = new byte[edgeCount];
+        int[] edgeTargets = new int[edgeCount];
+
+        int nextNode = 1;
+        int edge = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            edgeStarts[i] = edge;
+            // Iteration order matches that used when numbering above
+            for (Map.Entry<Byte, ByteTrieNode<T>> entry : nodes.get(i)._children.entrySet()) {
+                if (i == 0) {
+                    rootTransitions[entry.getKey() & 0xFF] = nextNode;
+                } else {
+                    edgeKeys[edge] = entry.getKey();
+                    edgeTargets[edge] = nextNode;
+                    edge++;
+                }
+                nextNode++;
+            }
+        }
+        edgeStarts[nodes.size()] = edge;
+
+        return new CompiledByteTrie<T>(rootTransitions, edgeStarts, edgeKeys, edgeTargets, values.toArray(), _maxDepth);
+    }
 }
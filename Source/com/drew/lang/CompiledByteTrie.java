@@ -0,0 +1,116 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.lang;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+
+/**
+ * An immutable form of {@link ByteTrie}, produced by {@link ByteTrie#compile()}, in which lookups neither allocate
+ * nor box.
+ * <p>
+ * Nodes are numbered breadth first, with the root being zero. The root's children are found via a table indexed by
+ * the first byte, as that byte alone discriminates most paths. The children of every other node are held as a run of
+ * keys and targets within flat arrays. Such nodes seldom have more than one or two children, so these runs are
+ * scanned linearly. The most specific value for each node is resolved at compile time.
+ *
+ * @param <T> the type of value to store for byte sequences
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class CompiledByteTrie<T>
+{
+    /** The child of the root for each first byte, or zero if there is none. */
+    @NotNull
+    private final int[] _rootTransitions;
+    /** The children of node <code>n</code> are at indices <code>_edgeStarts[n]</code> until <code>_edgeStarts[n+1]</code>. */
+    @NotNull
+    private final int[] _edgeStarts;
+    @NotNull
+    private final byte[] _edgeKeys;
+    @NotNull
+    private final int[] _edgeTargets;
+    /** The most specific value on the path to each node. */
+    @NotNull
+    private final Object[] _values;
+    private final int _maxDepth;
+
+    CompiledByteTrie(@NotNull int[] rootTransitions, @NotNull int[] edgeStarts, @NotNull byte[] edgeKeys, @NotNull int[] edgeTargets, @NotNull Object[] values, int maxDepth)
+    {
+        _rootTransitions = rootTransitions;
+        _edgeStarts = edgeStarts;
+        _edgeKeys = edgeKeys;
+        _edgeTargets = edgeTargets;
+        _values = values;
+        _maxDepth = maxDepth;
+    }
+
+    /**
+     * Return the most specific value stored for this byte sequence.
+     * If not found, returns <code>null</code> or the default value of the trie this was compiled from.
+     */
+    @Nullable
+    public T find(@NotNull byte[] bytes)
+    {
+        return find(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Return the most specific value stored for the <code>count</code> bytes of <code>bytes</code> starting at
+     * <code>offset</code>. If not found, returns <code>null</code> or the default value of the trie this was
+     * compiled from.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public T find(@NotNull byte[] bytes, int offset, int count)
+    {
+        if (count <= 0)
+            return (T)_values[0];
+
+        int node = _rootTransitions[bytes[offset] & 0xFF];
+        if (node == 0)
+            return (T)_values[0];
+
+        int end = offset + count;
+        for (int i = offset + 1; i < end; i++) {
+            int child = findChild(node, bytes[i]);
+            if (child == 0)
+                break;
+            node = child;
+        }
+        return (T)_values[node];
+    }
+
+    /** Gets the maximum depth stored in this trie. */
+    public int getMaxDepth()
+    {
+        return _maxDepth;
+    }
+
+    private int findChild(int node, byte b)
+    {
+        int end = _edgeStarts[node + 1];
+        for (int edge = _edgeStarts[node]; edge < end; edge++) {
+            if (_edgeKeys[edge] == b)
+                return _edgeTargets[edge];
+        }
+        return 0;
+    }
+}
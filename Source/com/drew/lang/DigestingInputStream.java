@@ -0,0 +1,78 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.lang;
+
+import com.drew.lang.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+
+/**
+ * A {@link DigestInputStream} that also feeds skipped bytes to its digest, so that the digest covers every byte of
+ * the stream no matter how it is consumed. Call {@link #drain()} once parsing is complete to digest the remainder.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class DigestingInputStream extends DigestInputStream
+{
+    private static final int SKIP_BUFFER_LENGTH = 64 * 1024;
+
+    public DigestingInputStream(@NotNull InputStream stream, @NotNull MessageDigest digest)
+    {
+        super(stream, digest);
+    }
+
+    /**
+     * Skips by reading, so that the skipped bytes are digested.
+     */
+    @Override
+    public long skip(long n) throws IOException
+    {
+        if (n <= 0)
+            return 0;
+
+        byte[] buffer = BufferPool.borrowArray((int)Math.min(n, SKIP_BUFFER_LENGTH));
+        try {
+            long skipped = 0;
+            while (skipped < n) {
+                int bytesRead = read(buffer, 0, (int)Math.min(n - skipped, buffer.length));
+                if (bytesRead == -1)
+                    break;
+                skipped += bytesRead;
+            }
+            return skipped;
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * Reads and digests the remainder of the stream.
+     *
+     * @return the number of bytes read
+     */
+    public long drain() throws IOException
+    {
+        return skip(Long.MAX_VALUE);
+    }
+}
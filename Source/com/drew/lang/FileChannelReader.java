@@ -0,0 +1,215 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+
+package com.drew.lang;
+
+import com.drew.lang.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Provides methods to read specific values from a {@link FileChannel}, with a consistent, checked exception
+ * structure for issues.
+ * <p>
+ * Unlike {@link RandomAccessFileReader}, this class holds no file position. Every read is a positional
+ * {@link FileChannel#read(ByteBuffer, long)} into a buffer owned by the calling thread, so a single channel may be
+ * read by several threads at once without locking. Byte order is the only mutable state, so each thread should
+ * obtain its own view of the channel via {@link #duplicate()}.
+ * <p>
+ * The channel is not closed by this class. Note that interrupting a thread while it reads causes the channel to be
+ * closed, as for any {@link java.nio.channels.InterruptibleChannel}.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class FileChannelReader extends RandomAccessReader
+{
+    @NotNull
+    private final FileChannel _channel;
+    private final long _length;
+    private final int _baseOffset;
+
+    // Shared between views of the same channel, so each thread allocates a single buffer
+    @NotNull
+    private final ThreadLocal<ByteBuffer> _scratch;
+
+    @SuppressWarnings({ "ConstantConditions" })
+    public FileChannelReader(@NotNull FileChannel channel) throws IOException
+    {
+        this(channel, 0);
+    }
+
+    @SuppressWarnings({ "ConstantConditions" })
+    public FileChannelReader(@NotNull FileChannel channel, int baseOffset) throws IOException
+    {
+        if (channel == null)
+            throw new NullPointerException();
+        if (baseOffset < 0)
+            throw new IllegalArgumentException("Must be zero or greater");
+
+        _channel = channel;
+        _length = channel.size();
+        _baseOffset = baseOffset;
+        _scratch = new ThreadLocal<ByteBuffer>()
+        {
+            @Override
+            protected ByteBuffer initialValue()
+            {
+                return ByteBuffer.allocate(8);
+            }
+        };
+    }
+
+    private FileChannelReader(@NotNull FileChannelReader source)
+    {
+        _channel = source._channel;
+        _length = source._length;
+        _baseOffset = source._baseOffset;
+        _scratch = source._scratch;
+        setMotorolaByteOrder(source.isMotorolaByteOrder());
+    }
+
+    /**
+     * Creates a reader over the same channel, initially having the same byte order as this reader, whose byte
+     * order may be changed independently. Hand one of these to each thread that reads the channel.
+     */
+    @NotNull
+    public FileChannelReader duplicate()
+    {
+        return new FileChannelReader(this);
+    }
+
+    @Override
+    public int toUnshiftedOffset(int localOffset)
+    {
+        return localOffset + _baseOffset;
+    }
+
+    @Override
+    public long getLength()
+    {
+        return _length;
+    }
+
+    @Override
+    public byte getByte(long index) throws IOException
+    {
+        return read(index, 1).get(0);
+    }
+
+    @Override
+    @NotNull
+    public byte[] getBytes(long index, int count) throws IOException
+    {
+        validateIndex(index, count);
+
+        byte[] bytes = new byte[count];
+        readFully(ByteBuffer.wrap(bytes), index);
+        return bytes;
+    }
+
+    @Override
+    public int getUInt16(long index) throws IOException
+    {
+        return read(index, 2).getShort(0) & 0xFFFF;
+    }
+
+    @Override
+    public short getInt16(long index) throws IOException
+    {
+        return read(index, 2).getShort(0);
+    }
+
+    @Override
+    public long getUInt32(long index) throws IOException
+    {
+        return read(index, 4).getInt(0) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public int getInt32(long index) throws IOException
+    {
+        return read(index, 4).getInt(0);
+    }
+
+    @Override
+    public long getInt64(long index) throws IOException
+    {
+        return read(index, 8).getLong(0);
+    }
+
+    @Override
+    public float getFloat32(long index) throws IOException
+    {
+        return read(index, 4).getFloat(0);
+    }
+
+    @Override
+    public double getDouble64(long index) throws IOException
+    {
+        return read(index, 8).getDouble(0);
+    }
+
+    /**
+     * Reads <code>count</code> bytes from <code>index</code> into the calling thread's scratch buffer, which is
+     * returned ordered according to this reader's byte order.
+     */
+    @NotNull
+    private ByteBuffer read(long index, int count) throws IOException
+    {
+        validateIndex(index, count);
+
+        ByteBuffer buffer = _scratch.get();
+        buffer.clear();
+        buffer.limit(count);
+        readFully(buffer, index);
+        buffer.order(isMotorolaByteOrder() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private void readFully(@NotNull ByteBuffer buffer, long index) throws IOException
+    {
+        long position = index;
+        while (buffer.hasRemaining()) {
+            int bytesRead = _channel.read(buffer, position);
+            if (bytesRead == -1)
+                throw new BufferBoundsException(index, buffer.limit(), position);
+            position += bytesRead;
+        }
+    }
+
+    @Override
+    protected void validateIndex(long index, int bytesRequested) throws IOException
+    {
+        if (!isValidIndex(index, bytesRequested))
+            throw new BufferBoundsException(index, bytesRequested, _length);
+    }
+
+    @Override
+    protected boolean isValidIndex(long index, int bytesRequested) throws IOException
+    {
+        return bytesRequested >= 0
+            && index >= 0
+            && index + (long)bytesRequested - 1L < _length;
+    }
+}
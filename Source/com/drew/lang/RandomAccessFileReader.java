@@ -25,22 +25,39 @@ import com.drew.lang.annotations.NotNull;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Provides methods to read specific values from a {@link RandomAccessFile}, with a consistent, checked exception structure for
  * issues.
+ * <p>
+ * Data is read from the file in fixed-size pages, aligned to multiples of the page length, and a small number of
+ * recently used pages are retained in memory. Reads of single bytes and of multi-byte primitives are served directly
+ * from a cached page, so that hopping between IFDs and tags does not issue a system call per byte.
  *
  * @author Drew Noakes https://drewnoakes.com
  * */
 public class RandomAccessFileReader extends RandomAccessReader
 {
+    public final static int DEFAULT_PAGE_LENGTH = 4 * 1024;
+    public final static int DEFAULT_PAGE_COUNT = 16;
+
     @NotNull
     private final RandomAccessFile _file;
     private final long _length;
-    private int _currentIndex;
+    private long _currentIndex;
 
     private final int _baseOffset;
 
+    private final int _pageLength;
+    @NotNull
+    private final Map<Long, byte[]> _pages;
+
+    // The most recently used page is kept aside to avoid a map lookup for consecutive reads
+    private long _lastPageIndex = -1;
+    private byte[] _lastPage;
+
     @SuppressWarnings({ "ConstantConditions" })
     @com.drew.lang.annotations.SuppressWarnings(value = "EI_EXPOSE_REP2", justification = "Design intent")
     public RandomAccessFileReader(@NotNull RandomAccessFile file) throws IOException
@@ -51,13 +68,38 @@ public class RandomAccessFileReader extends RandomAccessReader
     @SuppressWarnings({ "ConstantConditions" })
     @com.drew.lang.annotations.SuppressWarnings(value = "EI_EXPOSE_REP2", justification = "Design intent")
     public RandomAccessFileReader(@NotNull RandomAccessFile file, int baseOffset) throws IOException
+    {
+        this(file, baseOffset, DEFAULT_PAGE_LENGTH, DEFAULT_PAGE_COUNT);
+    }
+
+    /**
+     * Creates a reader over <code>file</code> which caches up to <code>pageCount</code> pages of
+     * <code>pageLength</code> bytes each, evicting the least recently used page when full.
+     */
+    @SuppressWarnings({ "ConstantConditions" })
+    @com.drew.lang.annotations.SuppressWarnings(value = "EI_EXPOSE_REP2", justification = "Design intent")
+    public RandomAccessFileReader(@NotNull RandomAccessFile file, int baseOffset, int pageLength, final int pageCount) throws IOException
     {
         if (file == null)
             throw new NullPointerException();
+        if (pageLength <= 0)
+            throw new IllegalArgumentException("pageLength must be greater than zero");
+        if (pageCount <= 0)
+            throw new IllegalArgumentException("pageCount must be greater than zero");
 
         _file = file;
         _baseOffset = baseOffset;
         _length = _file.length();
+        _pageLength = pageLength;
+        _currentIndex = _file.getFilePointer();
+        _pages = new LinkedHashMap<Long, byte[]>(pageCount + 1, 1.0f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest)
+            {
+                return size() > pageCount;
+            }
+        };
     }
 
     @Override
@@ -73,37 +115,156 @@ public class RandomAccessFileReader extends RandomAccessReader
     }
 
     @Override
-    public byte getByte(int index) throws IOException
+    public byte getByte(long index) throws IOException
     {
-        if (index != _currentIndex)
-            seek(index);
-
-        final int b = _file.read();
-        if (b < 0)
+        if (index < 0 || index >= _length)
             throw new BufferBoundsException("Unexpected end of file encountered.");
-        assert (b <= 0xff);
-        _currentIndex++;
-        return (byte)b;
+
+        return getPage(index / _pageLength)[(int)(index % _pageLength)];
     }
 
     @Override
     @NotNull
-    public byte[] getBytes(int index, int count) throws IOException
+    public byte[] getBytes(long index, int count) throws IOException
     {
         validateIndex(index, count);
 
-        if (index != _currentIndex)
+        byte[] bytes = new byte[count];
+
+        if (count >= _pageLength) {
+            // Large reads bypass the cache so that they don't evict pages holding IFD data
             seek(index);
+            _file.readFully(bytes);
+            _currentIndex += count;
+            return bytes;
+        }
+
+        int remaining = count;
+        long fromIndex = index;
+        int toIndex = 0;
+
+        while (remaining != 0) {
+            int innerIndex = (int)(fromIndex % _pageLength);
+            int length = Math.min(remaining, _pageLength - innerIndex);
+
+            System.arraycopy(getPage(fromIndex / _pageLength), innerIndex, bytes, toIndex, length);
+
+            remaining -= length;
+            fromIndex += length;
+            toIndex += length;
+        }
 
-        byte[] bytes = new byte[count];
-        final int bytesRead = _file.read(bytes);
-        _currentIndex += bytesRead;
-        if (bytesRead != count)
-            throw new BufferBoundsException("Unexpected end of file encountered.");
         return bytes;
     }
 
-    private void seek(final int index) throws IOException
+    @Override
+    public int getUInt16(long index) throws IOException
+    {
+        validateIndex(index, 2);
+
+        int innerIndex = (int)(index % _pageLength);
+        if (innerIndex + 2 > _pageLength)
+            return super.getUInt16(index);
+
+        byte[] page = getPage(index / _pageLength);
+
+        if (isMotorolaByteOrder()) {
+            // Motorola - MSB first
+            return (page[innerIndex    ] << 8 & 0xFF00) |
+                   (page[innerIndex + 1]      & 0xFF);
+        } else {
+            // Intel ordering - LSB first
+            return (page[innerIndex + 1] << 8 & 0xFF00) |
+                   (page[innerIndex    ]      & 0xFF);
+        }
+    }
+
+    @Override
+    public short getInt16(long index) throws IOException
+    {
+        return (short)getUInt16(index);
+    }
+
+    @Override
+    public int getInt32(long index) throws IOException
+    {
+        validateIndex(index, 4);
+
+        int innerIndex = (int)(index % _pageLength);
+        if (innerIndex + 4 > _pageLength)
+            return super.getInt32(index);
+
+        byte[] page = getPage(index / _pageLength);
+
+        if (isMotorolaByteOrder()) {
+            // Motorola - MSB first (big endian)
+            return (page[innerIndex    ] << 24 & 0xFF000000) |
+                   (page[innerIndex + 1] << 16 & 0xFF0000) |
+                   (page[innerIndex + 2] << 8  & 0xFF00) |
+                   (page[innerIndex + 3]       & 0xFF);
+        } else {
+            // Intel ordering - LSB first (little endian)
+            return (page[innerIndex + 3] << 24 & 0xFF000000) |
+                   (page[innerIndex + 2] << 16 & 0xFF0000) |
+                   (page[innerIndex + 1] << 8  & 0xFF00) |
+                   (page[innerIndex    ]       & 0xFF);
+        }
+    }
+
+    @Override
+    public long getUInt32(long index) throws IOException
+    {
+        return getInt32(index) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public long getInt64(long index) throws IOException
+    {
+        validateIndex(index, 8);
+
+        int innerIndex = (int)(index % _pageLength);
+        if (innerIndex + 8 > _pageLength)
+            return super.getInt64(index);
+
+        long high = getInt32(index) & 0xFFFFFFFFL;
+        long low = getInt32(index + 4) & 0xFFFFFFFFL;
+
+        return isMotorolaByteOrder()
+            ? high << 32 | low
+            : low << 32 | high;
+    }
+
+    /**
+     * Returns the cached page having the specified index, reading it from the file if required.
+     * The final page of the file may be shorter than the page length.
+     */
+    @NotNull
+    private byte[] getPage(long pageIndex) throws IOException
+    {
+        if (pageIndex == _lastPageIndex)
+            return _lastPage;
+
+        byte[] page = _pages.get(pageIndex);
+
+        if (page == null) {
+            long pageStart = pageIndex * _pageLength;
+            int pageLength = (int)Math.min(_pageLength, _length - pageStart);
+            if (pageLength <= 0)
+                throw new BufferBoundsException("Unexpected end of file encountered.");
+
+            page = new byte[pageLength];
+            seek(pageStart);
+            _file.readFully(page);
+            _currentIndex += pageLength;
+            _pages.put(pageIndex, page);
+        }
+
+        _lastPageIndex = pageIndex;
+        _lastPage = page;
+        return page;
+    }
+
+    private void seek(final long index) throws IOException
     {
         if (index == _currentIndex)
             return;
@@ -113,15 +274,15 @@ public class RandomAccessFileReader extends RandomAccessReader
     }
 
     @Override
-    protected boolean isValidIndex(int index, int bytesRequested) throws IOException
+    protected boolean isValidIndex(long index, int bytesRequested) throws IOException
     {
         return bytesRequested >= 0
                 && index >= 0
-                && (long)index + (long)bytesRequested - 1L < _length;
+                && index + (long)bytesRequested - 1L < _length;
     }
 
     @Override
-    protected void validateIndex(final int index, final int bytesRequested) throws IOException
+    protected void validateIndex(final long index, final int bytesRequested) throws IOException
     {
         if (!isValidIndex(index, bytesRequested))
             throw new BufferBoundsException(index, bytesRequested, _length);
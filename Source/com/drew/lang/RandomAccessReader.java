@@ -27,6 +27,8 @@ import com.drew.metadata.StringValue;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.Charset;
 
 /**
@@ -35,10 +37,17 @@ import java.nio.charset.Charset;
  * By default, the reader operates with Motorola byte order (big endianness).  This can be changed by calling
  * {@link com.drew.lang.RandomAccessReader#setMotorolaByteOrder(boolean)}.
  * <p>
+ * Indexes are 64-bit, so that data sources larger than 2 GB may be addressed. Implementations backed by a single
+ * array or buffer reject indexes beyond their length in the usual way.
+ * <p>
  * Concrete implementations include:
  * <ul>
  *     <li>{@link ByteArrayReader}</li>
+ *     <li>{@link ByteBufferReader}</li>
+ *     <li>{@link FileChannelReader}</li>
+ *     <li>{@link RandomAccessFileReader}</li>
  *     <li>{@link RandomAccessStreamReader}</li>
+ *     <li>{@link RangeFetchReader}</li>
  * </ul>
  *
  * @author Drew Noakes https://drewnoakes.com
@@ -61,7 +70,7 @@ public abstract class RandomAccessReader
      * @throws BufferBoundsException if the requested byte is beyond the end of the underlying data source
      * @throws IOException if the byte is unable to be read
      */
-    public abstract byte getByte(int index) throws IOException;
+    public abstract byte getByte(long index) throws IOException;
 
     /**
      * Returns the required number of bytes from the specified index from the underlying source.
@@ -74,7 +83,7 @@ public abstract class RandomAccessReader
      * @throws IOException if the byte is unable to be read
      */
     @NotNull
-    public abstract byte[] getBytes(int index, int count) throws IOException;
+    public abstract byte[] getBytes(long index, int count) throws IOException;
 
     /**
      * Ensures that the buffered bytes extend to cover the specified index. If not, an attempt is made
@@ -86,9 +95,9 @@ public abstract class RandomAccessReader
      * @param bytesRequested the number of bytes which are required
      * @throws IOException if the stream ends before the required number of bytes are acquired
      */
-    protected abstract void validateIndex(int index, int bytesRequested) throws IOException;
+    protected abstract void validateIndex(long index, int bytesRequested) throws IOException;
 
-    protected abstract boolean isValidIndex(int index, int bytesRequested) throws IOException;
+    protected abstract boolean isValidIndex(long index, int bytesRequested) throws IOException;
 
     /**
      * Returns the length of the data source in bytes.
@@ -104,6 +113,21 @@ public abstract class RandomAccessReader
      */
     public abstract long getLength() throws IOException;
 
+    /**
+     * Hints that the specified range is about to be read. Implementations over storage where each access is
+     * costly, such as {@link RangeFetchReader}, may load it ahead of time in a single request. Out of range
+     * requests are ignored.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @param index the index of the first byte of the range
+     * @param bytesRequested the length of the range
+     * @throws IOException if the range could not be loaded
+     */
+    public void prefetch(long index, int bytesRequested) throws IOException
+    {
+    }
+
     /**
      * Sets the endianness of this reader.
      * <ul>
@@ -137,10 +161,10 @@ public abstract class RandomAccessReader
      * @return true if the bit is set, otherwise false
      * @throws IOException the buffer does not contain enough bytes to service the request, or index is negative
      */
-    public boolean getBit(int index) throws IOException
+    public boolean getBit(long index) throws IOException
     {
-        int byteIndex = index / 8;
-        int bitIndex = index % 8;
+        long byteIndex = index / 8;
+        int bitIndex = (int)(index % 8);
 
         validateIndex(byteIndex, 1);
 
@@ -155,7 +179,7 @@ public abstract class RandomAccessReader
      * @return the 8 bit int value, between 0 and 255
      * @throws IOException the buffer does not contain enough bytes to service the request, or index is negative
      */
-    public short getUInt8(int index) throws IOException
+    public short getUInt8(long index) throws IOException
     {
         validateIndex(index, 1);
 
@@ -169,7 +193,7 @@ public abstract class RandomAccessReader
      * @return the 8 bit int value, between 0x00 and 0xFF
      * @throws IOException the buffer does not contain enough bytes to service the request, or index is negative
      */
-    public byte getInt8(int index) throws IOException
+    public byte getInt8(long index) throws IOException
     {
         validateIndex(index, 1);
 
@@ -183,7 +207,7 @@ public abstract class RandomAccessReader
      * @return the 16 bit int value, between 0x0000 and 0xFFFF
      * @throws IOException the buffer does not contain enough bytes to service the request, or index is negative
      */
-    public int getUInt16(int index) throws IOException
+    public int getUInt16(long index) throws IOException
     {
         validateIndex(index, 2);
 
@@ -205,7 +229,7 @@ public abstract class RandomAccessReader
      * @return the 16 bit int value, between 0x0000 and 0xFFFF
      * @throws IOException the buffer does not contain enough bytes to service the request, or index is negative
      */
-    public short getInt16(int index) throws IOException
+    public short getInt16(long index) throws IOException
     {
         validateIndex(index, 2);
 
@@ -227,7 +251,7 @@ public abstract class RandomAccessReader
      * @return the unsigned 24-bit int value as a long, between 0x00000000 and 0x00FFFFFF
      * @throws IOException the buffer does not contain enough bytes to service the request, or index is negative
      */
-    public int getInt24(int index) throws IOException
+    public int getInt24(long index) throws IOException
     {
         validateIndex(index, 3);
 
@@ -251,7 +275,7 @@ public abstract class RandomAccessReader
      * @return the unsigned 32-bit int value as a long, between 0x00000000 and 0xFFFFFFFF
      * @throws IOException the buffer does not contain enough bytes to service the request, or index is negative
      */
-    public long getUInt32(int index) throws IOException
+    public long getUInt32(long index) throws IOException
     {
         validateIndex(index, 4);
 
@@ -277,7 +301,7 @@ public abstract class RandomAccessReader
      * @return the signed 32 bit int value, between 0x00000000 and 0xFFFFFFFF
      * @throws IOException the buffer does not contain enough bytes to service the request, or index is negative
      */
-    public int getInt32(int index) throws IOException
+    public int getInt32(long index) throws IOException
     {
         validateIndex(index, 4);
 
@@ -303,7 +327,7 @@ public abstract class RandomAccessReader
      * @return the 64 bit int value, between 0x0000000000000000 and 0xFFFFFFFFFFFFFFFF
      * @throws IOException the buffer does not contain enough bytes to service the request, or index is negative
      */
-    public long getInt64(int index) throws IOException
+    public long getInt64(long index) throws IOException
     {
         validateIndex(index, 8);
 
@@ -338,7 +362,7 @@ public abstract class RandomAccessReader
      * @return the floating point value
      * @throws IOException the buffer does not contain enough bytes to service the request, or index is negative
      */
-    public float getS15Fixed16(int index) throws IOException
+    public float getS15Fixed16(long index) throws IOException
     {
         validateIndex(index, 4);
 
@@ -358,30 +382,209 @@ public abstract class RandomAccessReader
         }
     }
 
-    public float getFloat32(int index) throws IOException
+    public float getFloat32(long index) throws IOException
     {
         return Float.intBitsToFloat(getInt32(index));
     }
 
-    public double getDouble64(int index) throws IOException
+    public double getDouble64(long index) throws IOException
     {
         return Double.longBitsToDouble(getInt64(index));
     }
 
+    /**
+     * Returns a buffer over the <code>byteCount</code> bytes starting at <code>index</code>, positioned at its
+     * first byte and ordered according to {@link #isMotorolaByteOrder()}. Used by the bulk array getters, so that
+     * bounds are validated once and values decoded from a single backing array or buffer.
+     * <p>
+     * By default the bytes are copied via {@link #getBytes(long, int)}. Implementations holding data in memory
+     * may return a view instead, which must not be modified.
+     */
+    @NotNull
+    protected ByteBuffer getBuffer(long index, int byteCount) throws IOException
+    {
+        return ByteBuffer.wrap(getBytes(index, byteCount)).order(getByteOrder());
+    }
+
+    @NotNull
+    protected ByteOrder getByteOrder()
+    {
+        return _isMotorolaByteOrder ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+    }
+
+    @NotNull
+    private ByteBuffer getArrayBuffer(long index, int count, int elementLength) throws IOException
+    {
+        if (count < 0)
+            throw new BufferBoundsException("Number of requested elements must be zero or greater");
+        if ((long)count * elementLength > Integer.MAX_VALUE)
+            throw new BufferBoundsException(String.format("Number of requested elements (%d) is too large", count));
+        return getBuffer(index, count * elementLength);
+    }
+
+    /**
+     * Gets <code>count</code> consecutive unsigned 8-bit integers.
+     *
+     * @param index position within the data buffer to read the first byte
+     * @param count the number of values to read
+     * @throws IOException the buffer does not contain enough bytes to service the request, or index is negative
+     */
+    @NotNull
+    public short[] getUInt8Array(long index, int count) throws IOException
+    {
+        byte[] bytes = getBytes(index, count);
+        short[] values = new short[count];
+        for (int i = 0; i < count; i++)
+            values[i] = (short)(bytes[i] & 0xFF);
+        return values;
+    }
+
+    /**
+     * Gets <code>count</code> consecutive signed 16-bit integers.
+     *
+     * @param index position within the data buffer to read the first byte
+     * @param count the number of values to read
+     * @throws IOException the buffer does not contain enough bytes to service the request, or index is negative
+     */
+    @NotNull
+    public short[] getInt16Array(long index, int count) throws IOException
+    {
+        short[] values = new short[count];
+        getArrayBuffer(index, count, 2).asShortBuffer().get(values);
+        return values;
+    }
+
+    /**
+     * Gets <code>count</code> consecutive unsigned 16-bit integers.
+     *
+     * @param index position within the data buffer to read the first byte
+     * @param count the number of values to read
+     * @throws IOException the buffer does not contain enough bytes to service the request, or index is negative
+     */
+    @NotNull
+    public int[] getUInt16Array(long index, int count) throws IOException
+    {
+        ByteBuffer buffer = getArrayBuffer(index, count, 2);
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++)
+            values[i] = buffer.getShort() & 0xFFFF;
+        return values;
+    }
+
+    /**
+     * Gets <code>count</code> consecutive signed 32-bit integers.
+     *
+     * @param index position within the data buffer to read the first byte
+     * @param count the number of values to read
+     * @throws IOException the buffer does not contain enough bytes to service the request, or index is negative
+     */
+    @NotNull
+    public int[] getInt32Array(long index, int count) throws IOException
+    {
+        int[] values = new int[count];
+        getArrayBuffer(index, count, 4).asIntBuffer().get(values);
+        return values;
+    }
+
+    /**
+     * Gets <code>count</code> consecutive unsigned 32-bit integers.
+     *
+     * @param index position within the data buffer to read the first byte
+     * @param count the number of values to read
+     * @throws IOException the buffer does not contain enough bytes to service the request, or index is negative
+     */
+    @NotNull
+    public long[] getUInt32Array(long index, int count) throws IOException
+    {
+        ByteBuffer buffer = getArrayBuffer(index, count, 4);
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++)
+            values[i] = buffer.getInt() & 0xFFFFFFFFL;
+        return values;
+    }
+
+    /**
+     * Gets <code>count</code> consecutive signed 64-bit integers.
+     *
+     * @param index position within the data buffer to read the first byte
+     * @param count the number of values to read
+     * @throws IOException the buffer does not contain enough bytes to service the request, or index is negative
+     */
+    @NotNull
+    public long[] getInt64Array(long index, int count) throws IOException
+    {
+        long[] values = new long[count];
+        getArrayBuffer(index, count, 8).asLongBuffer().get(values);
+        return values;
+    }
+
+    /**
+     * Gets <code>count</code> consecutive 32-bit IEEE 754 floating point values.
+     *
+     * @param index position within the data buffer to read the first byte
+     * @param count the number of values to read
+     * @throws IOException the buffer does not contain enough bytes to service the request, or index is negative
+     */
+    @NotNull
+    public float[] getFloat32Array(long index, int count) throws IOException
+    {
+        float[] values = new float[count];
+        getArrayBuffer(index, count, 4).asFloatBuffer().get(values);
+        return values;
+    }
+
+    /**
+     * Gets <code>count</code> consecutive 64-bit IEEE 754 floating point values.
+     *
+     * @param index position within the data buffer to read the first byte
+     * @param count the number of values to read
+     * @throws IOException the buffer does not contain enough bytes to service the request, or index is negative
+     */
+    @NotNull
+    public double[] getDouble64Array(long index, int count) throws IOException
+    {
+        double[] values = new double[count];
+        getArrayBuffer(index, count, 8).asDoubleBuffer().get(values);
+        return values;
+    }
+
+    /**
+     * Gets <code>count</code> consecutive rational values, each stored as a 32-bit numerator followed by a 32-bit
+     * denominator.
+     *
+     * @param index position within the data buffer to read the first byte
+     * @param count the number of values to read
+     * @param isSigned <code>true</code> if the numerators and denominators are signed, otherwise <code>false</code>
+     * @throws IOException the buffer does not contain enough bytes to service the request, or index is negative
+     */
+    @NotNull
+    public Rational[] getRationalArray(long index, int count, boolean isSigned) throws IOException
+    {
+        ByteBuffer buffer = getArrayBuffer(index, count, 8);
+        Rational[] values = new Rational[count];
+        for (int i = 0; i < count; i++) {
+            if (isSigned)
+                values[i] = new Rational(buffer.getInt(), buffer.getInt());
+            else
+                values[i] = new Rational(buffer.getInt() & 0xFFFFFFFFL, buffer.getInt() & 0xFFFFFFFFL);
+        }
+        return values;
+    }
+
     @NotNull
-    public StringValue getStringValue(int index, int bytesRequested, @Nullable Charset charset) throws IOException
+    public StringValue getStringValue(long index, int bytesRequested, @Nullable Charset charset) throws IOException
     {
         return new StringValue(getBytes(index, bytesRequested), charset);
     }
 
     @NotNull
-    public String getString(int index, int bytesRequested, @NotNull Charset charset) throws IOException
+    public String getString(long index, int bytesRequested, @NotNull Charset charset) throws IOException
     {
         return new String(getBytes(index, bytesRequested), charset.name());
     }
 
     @NotNull
-    public String getString(int index, int bytesRequested, @NotNull String charset) throws IOException
+    public String getString(long index, int bytesRequested, @NotNull String charset) throws IOException
     {
         byte[] bytes = getBytes(index, bytesRequested);
         try {
@@ -402,13 +605,13 @@ public abstract class RandomAccessReader
      * @throws IOException The buffer does not contain enough bytes to satisfy this request.
      */
     @NotNull
-    public String getNullTerminatedString(int index, int maxLengthBytes, @NotNull Charset charset) throws IOException
+    public String getNullTerminatedString(long index, int maxLengthBytes, @NotNull Charset charset) throws IOException
     {
         return new String(getNullTerminatedBytes(index, maxLengthBytes), charset.name());
     }
 
     @NotNull
-    public StringValue getNullTerminatedStringValue(int index, int maxLengthBytes, @Nullable Charset charset) throws IOException
+    public StringValue getNullTerminatedStringValue(long index, int maxLengthBytes, @Nullable Charset charset) throws IOException
     {
         byte[] bytes = getNullTerminatedBytes(index, maxLengthBytes);
 
@@ -425,7 +628,7 @@ public abstract class RandomAccessReader
      * @throws IOException The buffer does not contain enough bytes to satisfy this request.
      */
     @NotNull
-    public byte[] getNullTerminatedBytes(int index, int maxLengthBytes) throws IOException
+    public byte[] getNullTerminatedBytes(long index, int maxLengthBytes) throws IOException
     {
         byte[] buffer = getBytes(index, maxLengthBytes);
 
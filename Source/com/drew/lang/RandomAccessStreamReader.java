@@ -22,27 +22,101 @@
 package com.drew.lang;
 
 import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
 
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 
 /**
+ * Provides random access to an {@link InputStream} by buffering chunks of the stream as it is read forwards.
+ * <p>
+ * By default every chunk is retained for the lifetime of the reader. When constructed with a memory ceiling,
+ * the least recently used chunks are evicted once the ceiling is exceeded. Evicted chunks are either spilled to a
+ * temporary file, or re-read from a fresh stream opened via a {@link StreamSource}, according to the
+ * {@link EvictionPolicy}. Readers that may spill, or that opened their own stream, should be closed via
+ * {@link #close()}.
+ * <p>
+ * Chunks may be of a fixed length, or may start small and double in length as the stream is read further, up to
+ * a maximum. Growing chunks keep the header of a file cheap to read while reducing the number of allocations and
+ * reads needed for large streams. See {@link #getChunkAllocationCount()}.
+ * <p>
+ * In sparse mode (see {@link #setSparse(boolean)}) chunks lying wholly between the end of the buffered data and
+ * a requested index are skipped over rather than buffered, and recorded as holes. A hole can later be read only
+ * if the stream can be reopened via {@link EvictionPolicy#REOPEN_STREAM}.
+ *
  * @author Drew Noakes https://drewnoakes.com
  */
-public class RandomAccessStreamReader extends RandomAccessReader
+public class RandomAccessStreamReader extends RandomAccessReader implements Closeable
 {
     public final static int DEFAULT_CHUNK_LENGTH = 2 * 1024;
+    public final static int DEFAULT_MAX_CHUNK_LENGTH = 1024 * 1024;
+
+    /**
+     * Determines what happens to chunks evicted from memory when a ceiling is specified.
+     */
+    public enum EvictionPolicy
+    {
+        /** Evicted chunks are written to a temporary file, and read back from there when next needed. */
+        SPILL_TO_DISK,
+        /**
+         * Evicted chunks are re-read from a new stream opened via the reader's {@link StreamSource}, which is
+         * closed again once the chunk has been read. Nothing is retained for them, either in memory or on disk.
+         */
+        REOPEN_STREAM
+    }
+
+    /**
+     * Opens streams over the same data, from its start, so that a {@link RandomAccessStreamReader} may re-read
+     * chunks it no longer holds. Used with {@link EvictionPolicy#REOPEN_STREAM}.
+     */
+    public interface StreamSource
+    {
+        @NotNull
+        InputStream open() throws IOException;
+    }
 
     @NotNull
     private final InputStream _stream;
-    private final int _chunkLength;
-
+    @Nullable
+    private final StreamSource _streamSource;
+    private final int _initialChunkLength;
+    private final int _maxChunkLength;
+    // Chunks before this index are growing in length; the rest are all _maxChunkLength long
+    private final int _growingChunkCount;
+    private final long _growingChunksLength;
+
+    // Entries are null when a chunk has been evicted from memory, or was skipped as a hole
     private final ArrayList<byte[]> _chunks = new ArrayList<byte[]>();
+    private final BitSet _holes = new BitSet();
+    private boolean _isSparse;
 
     private boolean _isStreamFinished;
     private long _streamLength;
 
+    private final long _maxBufferedBytes;
+    @Nullable
+    private final EvictionPolicy _evictionPolicy;
+    private long _bufferedBytes;
+    // Indexes of chunks held in memory, in least to most recently used order
+    private final LinkedHashMap<Integer, Boolean> _residentChunks = new LinkedHashMap<Integer, Boolean>(16, 0.75f, true);
+    private int _lastChunkIndex = -1;
+    private byte[] _lastChunk;
+    private long _chunkAllocationCount;
+
+    @Nullable
+    private File _spillFile;
+    @Nullable
+    private RandomAccessFile _spill;
+    private final BitSet _spilledChunks = new BitSet();
+
     public RandomAccessStreamReader(@NotNull InputStream stream)
     {
         this(stream, DEFAULT_CHUNK_LENGTH, -1);
@@ -54,15 +128,163 @@ public class RandomAccessStreamReader extends RandomAccessReader
     }
 
     public RandomAccessStreamReader(@NotNull InputStream stream, int chunkLength, long streamLength)
+    {
+        this(stream, chunkLength, streamLength, -1, null);
+    }
+
+    /**
+     * Creates a reader whose chunks double in length from <code>initialChunkLength</code> as the stream is read,
+     * up to <code>maxChunkLength</code>.
+     *
+     * @param stream the stream to read from
+     * @param initialChunkLength the length of the first chunk
+     * @param maxChunkLength the length beyond which chunks stop growing. Must not be less than
+     *                       <code>initialChunkLength</code>.
+     * @param streamLength the length of the stream, if known, otherwise -1
+     */
+    public RandomAccessStreamReader(@NotNull InputStream stream, int initialChunkLength, int maxChunkLength, long streamLength)
+    {
+        this(stream, initialChunkLength, maxChunkLength, streamLength, -1, null);
+    }
+
+    /**
+     * Creates a reader that holds no more than <code>maxBufferedBytes</code> of the stream in memory.
+     *
+     * @param stream the stream to read from
+     * @param chunkLength the number of bytes buffered together as a unit
+     * @param streamLength the length of the stream, if known, otherwise -1
+     * @param maxBufferedBytes the maximum number of bytes to hold in memory, or -1 for no limit. Must not be
+     *                         less than <code>chunkLength</code>.
+     * @param evictionPolicy how chunks evicted from memory are recovered, required when a limit is specified
+     */
+    public RandomAccessStreamReader(@NotNull InputStream stream, int chunkLength, long streamLength, long maxBufferedBytes, @Nullable EvictionPolicy evictionPolicy)
+    {
+        this(stream, chunkLength, chunkLength, streamLength, maxBufferedBytes, evictionPolicy);
+    }
+
+    /**
+     * Creates a reader with growing chunks that holds no more than <code>maxBufferedBytes</code> of the stream
+     * in memory.
+     *
+     * @param stream the stream to read from
+     * @param initialChunkLength the length of the first chunk
+     * @param maxChunkLength the length beyond which chunks stop growing. Must not be less than
+     *                       <code>initialChunkLength</code>.
+     * @param streamLength the length of the stream, if known, otherwise -1
+     * @param maxBufferedBytes the maximum number of bytes to hold in memory, or -1 for no limit. Must not be
+     *                         less than <code>maxChunkLength</code>.
+     * @param evictionPolicy how chunks evicted from memory are recovered, required when a limit is specified
+     */
+    public RandomAccessStreamReader(@NotNull InputStream stream, int initialChunkLength, int maxChunkLength, long streamLength, long maxBufferedBytes, @Nullable EvictionPolicy evictionPolicy)
+    {
+        this(stream, null, initialChunkLength, maxChunkLength, streamLength, maxBufferedBytes, evictionPolicy);
+    }
+
+    /**
+     * Creates a reader over a stream opened from <code>streamSource</code>, holding no more than
+     * <code>maxBufferedBytes</code> of it in memory. Chunks evicted from memory, or skipped in sparse mode, are
+     * re-read from further streams opened from the same source, as for {@link EvictionPolicy#REOPEN_STREAM}.
+     * <p>
+     * The reader owns the streams it opens, so should be closed via {@link #close()}.
+     *
+     * @param streamSource opens streams over the data to read
+     * @param initialChunkLength the length of the first chunk
+     * @param maxChunkLength the length beyond which chunks stop growing. Must not be less than
+     *                       <code>initialChunkLength</code>.
+     * @param streamLength the length of the stream, if known, otherwise -1
+     * @param maxBufferedBytes the maximum number of bytes to hold in memory, or -1 for no limit. Must not be
+     *                         less than <code>maxChunkLength</code>.
+     * @throws IOException an error occurred while opening the first stream
+     */
+    public RandomAccessStreamReader(@NotNull StreamSource streamSource, int initialChunkLength, int maxChunkLength, long streamLength, long maxBufferedBytes) throws IOException
+    {
+        this(streamSource.open(), streamSource, initialChunkLength, maxChunkLength, streamLength, maxBufferedBytes, EvictionPolicy.REOPEN_STREAM);
+    }
+
+    private RandomAccessStreamReader(@NotNull InputStream stream, @Nullable StreamSource streamSource, int initialChunkLength, int maxChunkLength, long streamLength, long maxBufferedBytes, @Nullable EvictionPolicy evictionPolicy)
     {
         if (stream == null)
             throw new NullPointerException();
-        if (chunkLength <= 0)
+        if (initialChunkLength <= 0)
             throw new IllegalArgumentException("chunkLength must be greater than zero");
+        if (maxChunkLength < initialChunkLength)
+            throw new IllegalArgumentException("maxChunkLength must not be less than initialChunkLength");
+        if (maxBufferedBytes != -1) {
+            if (maxBufferedBytes < maxChunkLength)
+                throw new IllegalArgumentException("maxBufferedBytes must not be less than chunkLength");
+            if (evictionPolicy == null)
+                throw new IllegalArgumentException("evictionPolicy must be specified when maxBufferedBytes is limited");
+        }
+        if (evictionPolicy == EvictionPolicy.REOPEN_STREAM && streamSource == null)
+            throw new IllegalArgumentException("EvictionPolicy.REOPEN_STREAM requires a reader created with a StreamSource");
 
-        _chunkLength = chunkLength;
+        int growingChunkCount = 0;
+        while (((long)initialChunkLength << growingChunkCount) < maxChunkLength)
+            growingChunkCount++;
+
+        _initialChunkLength = initialChunkLength;
+        _maxChunkLength = maxChunkLength;
+        _growingChunkCount = growingChunkCount;
+        _growingChunksLength = ((1L << growingChunkCount) - 1) * initialChunkLength;
         _stream = stream;
+        _streamSource = streamSource;
         _streamLength = streamLength;
+        _maxBufferedBytes = maxBufferedBytes;
+        _evictionPolicy = evictionPolicy;
+    }
+
+    /**
+     * Sets whether ranges of the stream that have not been requested are skipped rather than buffered.
+     * <p>
+     * When <code>true</code>, a request beyond the buffered data causes intervening chunks to be passed over
+     * via {@link InputStream#skip(long)}. This keeps memory proportional to the data actually read, rather than
+     * to the furthest index read. Reading from a skipped chunk later fails with an {@link IOException}
+     * unless the reader was created with a {@link StreamSource}.
+     */
+    public void setSparse(boolean sparse)
+    {
+        _isSparse = sparse;
+    }
+
+    public boolean isSparse()
+    {
+        return _isSparse;
+    }
+
+    /**
+     * Gets the number of bytes of the stream currently held in memory.
+     */
+    public long getBufferedByteCount()
+    {
+        return _bufferedBytes;
+    }
+
+    /**
+     * Gets the number of chunk buffers allocated by this reader, including those allocated to recover evicted
+     * chunks. Useful when tuning chunk lengths.
+     */
+    public long getChunkAllocationCount()
+    {
+        return _chunkAllocationCount;
+    }
+
+    /**
+     * Releases any temporary file used to hold evicted chunks. The underlying stream is closed only if it was opened
+     * by this reader from a {@link StreamSource}.
+     */
+    public void close() throws IOException
+    {
+        if (_streamSource != null)
+            _stream.close();
+        if (_spill != null) {
+            _spill.close();
+            _spill = null;
+        }
+        if (_spillFile != null) {
+            //noinspection ResultOfMethodCallIgnored
+            _spillFile.delete();
+            _spillFile = null;
+        }
     }
 
     /**
@@ -78,7 +300,7 @@ public class RandomAccessStreamReader extends RandomAccessReader
             return _streamLength;
         }
 
-        isValidIndex(Integer.MAX_VALUE, 1);
+        isValidIndex(Long.MAX_VALUE - 1, 1);
         assert(_isStreamFinished);
         return _streamLength;
     }
@@ -94,14 +316,12 @@ public class RandomAccessStreamReader extends RandomAccessReader
      * @throws BufferBoundsException if the stream ends before the required number of bytes are acquired
      */
     @Override
-    protected void validateIndex(int index, int bytesRequested) throws IOException
+    protected void validateIndex(long index, int bytesRequested) throws IOException
     {
         if (index < 0) {
             throw new BufferBoundsException(String.format("Attempt to read from buffer using a negative index (%d)", index));
         } else if (bytesRequested < 0) {
             throw new BufferBoundsException("Number of requested bytes must be zero or greater");
-        } else if ((long)index + bytesRequested - 1 > Integer.MAX_VALUE) {
-            throw new BufferBoundsException(String.format("Number of requested bytes summed with starting index exceed maximum range of signed 32 bit integers (requested index: %d, requested count: %d)", index, bytesRequested));
         }
 
         if (!isValidIndex(index, bytesRequested)) {
@@ -112,38 +332,38 @@ public class RandomAccessStreamReader extends RandomAccessReader
     }
 
     @Override
-    protected boolean isValidIndex(int index, int bytesRequested) throws IOException
+    protected boolean isValidIndex(long index, int bytesRequested) throws IOException
     {
         if (index < 0 || bytesRequested < 0) {
             return false;
         }
 
-        long endIndexLong = (long)index + bytesRequested - 1;
-
-        if (endIndexLong > Integer.MAX_VALUE) {
-            return false;
-        }
-
-        int endIndex = (int)endIndexLong;
+        long endIndex = index + bytesRequested - 1;
 
         if (_isStreamFinished) {
             return endIndex < _streamLength;
         }
 
-        int chunkIndex = endIndex / _chunkLength;
+        long chunkIndex = getChunkIndex(endIndex);
+
+        if (_isSparse) {
+            long firstChunkIndex = getChunkIndex(index);
+            if (firstChunkIndex > _chunks.size() && !skipChunks(firstChunkIndex))
+                return endIndex < _streamLength;
+        }
 
         // TODO test loading several chunks for a single request
         while (chunkIndex >= _chunks.size()) {
             assert (!_isStreamFinished);
 
-            byte[] chunk = new byte[_chunkLength];
+            byte[] chunk = allocateChunk(_chunks.size());
             int totalBytesRead = 0;
-            while (!_isStreamFinished && totalBytesRead != _chunkLength) {
-                int bytesRead = _stream.read(chunk, totalBytesRead, _chunkLength - totalBytesRead);
+            while (!_isStreamFinished && totalBytesRead != chunk.length) {
+                int bytesRead = _stream.read(chunk, totalBytesRead, chunk.length - totalBytesRead);
                 if (bytesRead == -1) {
                     // the stream has ended, which may be ok
                     _isStreamFinished = true;
-                    int observedStreamLength = _chunks.size() * _chunkLength + totalBytesRead;
+                    long observedStreamLength = getChunkStart(_chunks.size()) + totalBytesRead;
                     if (_streamLength == -1) {
                         _streamLength = observedStreamLength;
                     } else if (_streamLength != observedStreamLength) {
@@ -152,7 +372,7 @@ public class RandomAccessStreamReader extends RandomAccessReader
 
                     // check we have enough bytes for the requested index
                     if (endIndex >= _streamLength) {
-                        _chunks.add(chunk);
+                        addChunk(chunk);
                         return false;
                     }
                 } else {
@@ -160,12 +380,200 @@ public class RandomAccessStreamReader extends RandomAccessReader
                 }
             }
 
-            _chunks.add(chunk);
+            addChunk(chunk);
         }
 
         return true;
     }
 
+    /**
+     * Passes over the chunks of the stream preceding <code>toChunkIndex</code> without buffering them, recording
+     * them as holes.
+     *
+     * @return <code>true</code> if all chunks were skipped, or <code>false</code> if the stream ended
+     */
+    private boolean skipChunks(long toChunkIndex) throws IOException
+    {
+        long skipStart = getChunkStart(_chunks.size());
+        long bytesRequested = getChunkStart(toChunkIndex) - skipStart;
+        long bytesSkipped = skip(_stream, bytesRequested);
+
+        while (_chunks.size() < toChunkIndex && getChunkStart(_chunks.size()) < skipStart + bytesSkipped) {
+            _holes.set(_chunks.size());
+            _chunks.add(null);
+        }
+
+        if (bytesSkipped == bytesRequested)
+            return true;
+
+        _isStreamFinished = true;
+        long observedStreamLength = skipStart + bytesSkipped;
+        if (_streamLength == -1) {
+            _streamLength = observedStreamLength;
+        } else if (_streamLength != observedStreamLength) {
+            assert(false);
+        }
+        return false;
+    }
+
+    private void addChunk(@NotNull byte[] chunk) throws IOException
+    {
+        _chunks.add(chunk);
+        makeResident(_chunks.size() - 1, chunk);
+    }
+
+    /**
+     * Returns the chunk having the specified index, recovering it if it has been evicted from memory.
+     */
+    @NotNull
+    private byte[] getChunk(int chunkIndex) throws IOException
+    {
+        if (chunkIndex == _lastChunkIndex)
+            return _lastChunk;
+
+        byte[] chunk = _chunks.get(chunkIndex);
+
+        if (chunk == null) {
+            if (_holes.get(chunkIndex)) {
+                if (_evictionPolicy != EvictionPolicy.REOPEN_STREAM)
+                    throw new IOException(String.format("Data at index %d was skipped and cannot be re-read from the stream", getChunkStart(chunkIndex)));
+                _holes.clear(chunkIndex);
+            }
+            chunk = loadEvictedChunk(chunkIndex);
+            _chunks.set(chunkIndex, chunk);
+            makeResident(chunkIndex, chunk);
+        } else if (_maxBufferedBytes != -1) {
+            // touch, to mark as most recently used
+            _residentChunks.get(chunkIndex);
+        }
+
+        _lastChunkIndex = chunkIndex;
+        _lastChunk = chunk;
+        return chunk;
+    }
+
+    private void makeResident(int chunkIndex, @NotNull byte[] chunk) throws IOException
+    {
+        _bufferedBytes += chunk.length;
+
+        if (_maxBufferedBytes == -1)
+            return;
+
+        _residentChunks.put(chunkIndex, Boolean.TRUE);
+
+        Iterator<Integer> iterator = _residentChunks.keySet().iterator();
+        while (_bufferedBytes > _maxBufferedBytes && iterator.hasNext()) {
+            int evictIndex = iterator.next();
+            if (evictIndex == chunkIndex)
+                continue;
+            byte[] evicted = _chunks.get(evictIndex);
+            if (_evictionPolicy == EvictionPolicy.SPILL_TO_DISK && !_spilledChunks.get(evictIndex))
+                spill(evictIndex, evicted);
+            iterator.remove();
+            _chunks.set(evictIndex, null);
+            _bufferedBytes -= evicted.length;
+            if (evictIndex == _lastChunkIndex) {
+                _lastChunkIndex = -1;
+                _lastChunk = null;
+            }
+        }
+    }
+
+    private void spill(int chunkIndex, @NotNull byte[] chunk) throws IOException
+    {
+        if (_spill == null) {
+            _spillFile = File.createTempFile("metadata-extractor-", ".tmp");
+            _spillFile.deleteOnExit();
+            _spill = new RandomAccessFile(_spillFile, "rw");
+        }
+
+        _spill.seek(getChunkStart(chunkIndex));
+        _spill.write(chunk);
+        _spilledChunks.set(chunkIndex);
+    }
+
+    @NotNull
+    private byte[] loadEvictedChunk(int chunkIndex) throws IOException
+    {
+        byte[] chunk = allocateChunk(chunkIndex);
+        long chunkStart = getChunkStart(chunkIndex);
+
+        if (_evictionPolicy == EvictionPolicy.SPILL_TO_DISK) {
+            if (_spill == null)
+                throw new IOException("Spill file has been closed");
+            _spill.seek(chunkStart);
+            _spill.readFully(chunk);
+            return chunk;
+        }
+
+        // Re-read the chunk from a new stream, leaving the position of the main stream untouched
+        assert(_streamSource != null);
+        InputStream stream = _streamSource.open();
+        try {
+            if (skip(stream, chunkStart) != chunkStart)
+                throw new EOFException("Reopened stream ended before the evicted chunk");
+            int totalBytesRead = 0;
+            while (totalBytesRead != chunk.length) {
+                int bytesRead = stream.read(chunk, totalBytesRead, chunk.length - totalBytesRead);
+                if (bytesRead == -1)
+                    break;
+                totalBytesRead += bytesRead;
+            }
+        } finally {
+            stream.close();
+        }
+        return chunk;
+    }
+
+    @NotNull
+    private byte[] allocateChunk(int chunkIndex)
+    {
+        _chunkAllocationCount++;
+        return new byte[getChunkLength(chunkIndex)];
+    }
+
+    private int getChunkLength(int chunkIndex)
+    {
+        return chunkIndex < _growingChunkCount
+            ? _initialChunkLength << chunkIndex
+            : _maxChunkLength;
+    }
+
+    private long getChunkStart(long chunkIndex)
+    {
+        return chunkIndex < _growingChunkCount
+            ? ((1L << chunkIndex) - 1) * _initialChunkLength
+            : _growingChunksLength + (chunkIndex - _growingChunkCount) * _maxChunkLength;
+    }
+
+    private long getChunkIndex(long index)
+    {
+        if (index < _growingChunksLength) {
+            // chunk n spans [initial * (2^n - 1), initial * (2^(n+1) - 1))
+            return 63 - Long.numberOfLeadingZeros(index / _initialChunkLength + 1);
+        }
+        return _growingChunkCount + (index - _growingChunksLength) / _maxChunkLength;
+    }
+
+    /**
+     * Skips up to <code>n</code> bytes of <code>stream</code>, returning fewer only if the stream ends.
+     */
+    private static long skip(@NotNull InputStream stream, long n) throws IOException
+    {
+        long total = 0;
+        while (total < n) {
+            long skipped = stream.skip(n - total);
+            if (skipped <= 0) {
+                // skip may return zero without the stream having ended, so test with a read
+                if (stream.read() == -1)
+                    break;
+                skipped = 1;
+            }
+            total += skipped;
+        }
+        return total;
+    }
+
     @Override
     public int toUnshiftedOffset(int localOffset)
     {
@@ -173,35 +581,35 @@ public class RandomAccessStreamReader extends RandomAccessReader
     }
 
     @Override
-    public byte getByte(int index) throws IOException
+    public byte getByte(long index) throws IOException
     {
         assert(index >= 0);
 
-        final int chunkIndex = index / _chunkLength;
-        final int innerIndex = index % _chunkLength;
-        final byte[] chunk = _chunks.get(chunkIndex);
+        final int chunkIndex = (int)getChunkIndex(index);
+        final int innerIndex = (int)(index - getChunkStart(chunkIndex));
+        final byte[] chunk = getChunk(chunkIndex);
 
         return chunk[innerIndex];
     }
 
     @NotNull
     @Override
-    public byte[] getBytes(int index, int count) throws IOException
+    public byte[] getBytes(long index, int count) throws IOException
     {
         validateIndex(index, count);
 
         byte[] bytes = new byte[count];
 
         int remaining = count;
-        int fromIndex = index;
+        long fromIndex = index;
         int toIndex = 0;
 
         while (remaining != 0) {
-            int fromChunkIndex = fromIndex / _chunkLength;
-            int fromInnerIndex = fromIndex % _chunkLength;
-            int length = Math.min(remaining, _chunkLength - fromInnerIndex);
+            int fromChunkIndex = (int)getChunkIndex(fromIndex);
+            int fromInnerIndex = (int)(fromIndex - getChunkStart(fromChunkIndex));
 
-            byte[] chunk = _chunks.get(fromChunkIndex);
+            byte[] chunk = getChunk(fromChunkIndex);
+            int length = Math.min(remaining, chunk.length - fromInnerIndex);
 
             System.arraycopy(chunk, fromInnerIndex, bytes, toIndex, length);
 
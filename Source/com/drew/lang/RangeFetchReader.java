@@ -0,0 +1,271 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.lang;
+
+import com.drew.lang.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Provides methods to read specific values from a data source accessed via a {@link RangeFetcher}, with a
+ * consistent, checked exception structure for issues.
+ * <p>
+ * The data source is divided into fixed-size blocks, aligned to multiples of the block length. Reading a block
+ * that is not cached fetches every missing block between it and the last block needed by the same read as a single
+ * range, along with a number of following blocks, since metadata structures such as TIFF IFDs and their values tend
+ * to be laid out one after another. Fetched blocks are cached, up to a limit, with the least recently used evicted
+ * first. In this way the header of a JPEG or TIFF file usually costs one to three fetches rather than a download of
+ * the whole file.
+ * <p>
+ * Callers that know which ranges will be needed can request them ahead of time via {@link #prefetch(long, int)}, as
+ * {@link com.drew.imaging.tiff.TiffReader} does when constructed to prefetch ranges.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class RangeFetchReader extends RandomAccessReader
+{
+    public final static int DEFAULT_BLOCK_LENGTH = 16 * 1024;
+    public final static int DEFAULT_READ_AHEAD_BLOCKS = 3;
+    public final static int DEFAULT_MAX_CACHED_BLOCKS = 256;
+
+    @NotNull
+    private final RangeFetcher _fetcher;
+    private final long _length;
+
+    private final int _blockLength;
+    private final int _readAheadBlocks;
+    private final int _maxCachedBlocks;
+    @NotNull
+    private final Map<Long, byte[]> _blocks;
+
+    // The most recently used block is kept aside to avoid a map lookup for consecutive reads
+    private long _lastBlockIndex = -1;
+    private byte[] _lastBlock;
+
+    private int _fetchCount;
+
+    public RangeFetchReader(@NotNull RangeFetcher fetcher) throws IOException
+    {
+        this(fetcher, DEFAULT_BLOCK_LENGTH, DEFAULT_READ_AHEAD_BLOCKS, DEFAULT_MAX_CACHED_BLOCKS);
+    }
+
+    /**
+     * Creates a reader over the data source of <code>fetcher</code>.
+     *
+     * @param fetcher the source of byte ranges
+     * @param blockLength the unit in which data is fetched and cached
+     * @param readAheadBlocks the number of blocks fetched beyond those needed by a read which misses the cache
+     * @param maxCachedBlocks the number of blocks retained in memory. Must be greater than
+     *                        <code>readAheadBlocks</code>.
+     */
+    @SuppressWarnings({ "ConstantConditions" })
+    public RangeFetchReader(@NotNull RangeFetcher fetcher, int blockLength, int readAheadBlocks, final int maxCachedBlocks) throws IOException
+    {
+        if (fetcher == null)
+            throw new NullPointerException();
+        if (blockLength <= 0)
+            throw new IllegalArgumentException("blockLength must be greater than zero");
+        if (readAheadBlocks < 0)
+            throw new IllegalArgumentException("readAheadBlocks must be zero or greater");
+        if (maxCachedBlocks <= readAheadBlocks)
+            throw new IllegalArgumentException("maxCachedBlocks must be greater than readAheadBlocks");
+
+        _fetcher = fetcher;
+        _length = fetcher.getLength();
+        _blockLength = blockLength;
+        _readAheadBlocks = readAheadBlocks;
+        _maxCachedBlocks = maxCachedBlocks;
+        _blocks = new LinkedHashMap<Long, byte[]>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest)
+            {
+                return size() > maxCachedBlocks;
+            }
+        };
+    }
+
+    /**
+     * Gets the number of range requests made of the {@link RangeFetcher} so far.
+     */
+    public int getFetchCount()
+    {
+        return _fetchCount;
+    }
+
+    /**
+     * Ensures the specified range is cached, fetching any missing part of it in a single request. Ranges extending
+     * beyond the end of the data source are truncated.
+     */
+    @Override
+    public void prefetch(long index, int bytesRequested) throws IOException
+    {
+        if (index < 0 || bytesRequested <= 0 || index >= _length)
+            return;
+        // Don't evict more than the cache can hold, as the start of the range would be lost before it is read
+        long maxLength = (long)(_maxCachedBlocks - _readAheadBlocks - 1) * _blockLength;
+        long length = Math.min(Math.min(bytesRequested, _length - index), maxLength);
+        if (length > 0)
+            ensureCached(index, (int)length);
+    }
+
+    @Override
+    public int toUnshiftedOffset(int localOffset)
+    {
+        return localOffset;
+    }
+
+    @Override
+    public long getLength()
+    {
+        return _length;
+    }
+
+    @Override
+    public byte getByte(long index) throws IOException
+    {
+        validateIndex(index, 1);
+
+        long blockIndex = index / _blockLength;
+        byte[] block = getBlock(blockIndex);
+        return block[(int)(index - blockIndex * _blockLength)];
+    }
+
+    @Override
+    @NotNull
+    public byte[] getBytes(long index, int count) throws IOException
+    {
+        validateIndex(index, count);
+
+        if (count == 0)
+            return new byte[0];
+
+        // Reads too large to cache are passed straight through
+        long firstBlockIndex = index / _blockLength;
+        long lastBlockIndex = (index + count - 1) / _blockLength;
+        if (lastBlockIndex - firstBlockIndex + 1 > _maxCachedBlocks - _readAheadBlocks)
+            return fetch(index, count);
+
+        ensureCached(index, count);
+
+        byte[] bytes = new byte[count];
+        long fromIndex = index;
+        int toIndex = 0;
+        while (toIndex != count) {
+            long blockIndex = fromIndex / _blockLength;
+            int innerIndex = (int)(fromIndex - blockIndex * _blockLength);
+            byte[] block = getBlock(blockIndex);
+            int length = Math.min(count - toIndex, block.length - innerIndex);
+            System.arraycopy(block, innerIndex, bytes, toIndex, length);
+            fromIndex += length;
+            toIndex += length;
+        }
+        return bytes;
+    }
+
+    @NotNull
+    private byte[] getBlock(long blockIndex) throws IOException
+    {
+        if (blockIndex == _lastBlockIndex)
+            return _lastBlock;
+
+        byte[] block = _blocks.get(blockIndex);
+        if (block == null) {
+            ensureCached(blockIndex * _blockLength, 1);
+            block = _blocks.get(blockIndex);
+            assert(block != null);
+        }
+
+        _lastBlockIndex = blockIndex;
+        _lastBlock = block;
+        return block;
+    }
+
+    /**
+     * Fetches the blocks covering the specified range that are not already cached, along with any read-ahead, as
+     * a single range request.
+     */
+    private void ensureCached(long index, int count) throws IOException
+    {
+        long firstBlockIndex = index / _blockLength;
+        long lastBlockIndex = (index + count - 1) / _blockLength;
+        long blockCount = (_length + _blockLength - 1) / _blockLength;
+
+        // Touch cached blocks in the range so they're not evicted by the fetch, and find the span that is missing
+        long firstMissing = -1;
+        long lastMissing = -1;
+        for (long i = firstBlockIndex; i <= lastBlockIndex; i++) {
+            if (_blocks.get(i) == null) {
+                if (firstMissing == -1)
+                    firstMissing = i;
+                lastMissing = i;
+            }
+        }
+
+        if (firstMissing == -1)
+            return;
+
+        long fetchLastBlockIndex = lastMissing;
+        while (fetchLastBlockIndex - lastMissing < _readAheadBlocks
+            && fetchLastBlockIndex + 1 < blockCount
+            && !_blocks.containsKey(fetchLastBlockIndex + 1)) {
+            fetchLastBlockIndex++;
+        }
+
+        long fetchStart = firstMissing * _blockLength;
+        long fetchEnd = Math.min((fetchLastBlockIndex + 1) * _blockLength, _length);
+        byte[] bytes = fetch(fetchStart, (int)(fetchEnd - fetchStart));
+
+        for (long i = firstMissing; i <= fetchLastBlockIndex; i++) {
+            int from = (int)((i - firstMissing) * _blockLength);
+            int to = Math.min(from + _blockLength, bytes.length);
+            _blocks.put(i, Arrays.copyOfRange(bytes, from, to));
+        }
+    }
+
+    @NotNull
+    private byte[] fetch(long index, int count) throws IOException
+    {
+        _fetchCount++;
+        byte[] bytes = _fetcher.fetch(index, count);
+        if (bytes.length != count)
+            throw new IOException(String.format("Fetch of %d bytes at index %d returned %d bytes", count, index, bytes.length));
+        return bytes;
+    }
+
+    @Override
+    protected void validateIndex(long index, int bytesRequested) throws IOException
+    {
+        if (!isValidIndex(index, bytesRequested))
+            throw new BufferBoundsException(index, bytesRequested, _length);
+    }
+
+    @Override
+    protected boolean isValidIndex(long index, int bytesRequested) throws IOException
+    {
+        return bytesRequested >= 0
+            && index >= 0
+            && index + (long)bytesRequested - 1L < _length;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.lang;
+
+import com.drew.lang.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * Defines an object that fetches byte ranges of a data source which is expensive to access, such as an object in
+ * remote storage that supports HTTP range requests. Used by {@link RangeFetchReader}.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public interface RangeFetcher
+{
+    /**
+     * Gets the total length of the data source, in bytes.
+     */
+    long getLength() throws IOException;
+
+    /**
+     * Fetches <code>count</code> bytes starting at <code>offset</code>. The requested range always lies within
+     * the data source, so fewer bytes should be returned only if the source has changed since its length was
+     * obtained.
+     *
+     * @param offset the index of the first byte to fetch
+     * @param count the number of bytes to fetch
+     * @return the fetched bytes
+     * @throws IOException if the range could not be fetched
+     */
+    @NotNull
+    byte[] fetch(long offset, int count) throws IOException;
+}
@@ -25,6 +25,7 @@ import com.drew.lang.annotations.NotNull;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  *
@@ -81,6 +82,20 @@ public class SequentialByteArrayReader extends SequentialReader
         return bytes;
     }
 
+    @NotNull
+    @Override
+    public ByteBuffer getSlice(int count) throws IOException
+    {
+        if (_index + count > _bytes.length) {
+            throw new EOFException("End of data reached.");
+        }
+
+        ByteBuffer slice = ByteBuffer.wrap(_bytes, _index, count).slice();
+        _index += count;
+
+        return slice;
+    }
+
     @Override
     public void getBytes(@NotNull byte[] buffer, int offset, int count) throws IOException
     {
@@ -92,6 +107,20 @@ public class SequentialByteArrayReader extends SequentialReader
         _index += count;
     }
 
+    @Override
+    public int read(@NotNull byte[] buffer, int offset, int count) throws IOException
+    {
+        if (count == 0)
+            return 0;
+        if (_index >= _bytes.length)
+            return -1;
+
+        int bytesRead = Math.min(count, _bytes.length - _index);
+        System.arraycopy(_bytes, _index, buffer, offset, bytesRead);
+        _index += bytesRead;
+        return bytesRead;
+    }
+
     @Override
     public void skip(long n) throws IOException
     {
@@ -0,0 +1,383 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.lang;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A {@link SequentialReader} that decodes values from a {@link ByteBuffer} window, rather than reading from its
+ * source a byte at a time or allocating for each value.
+ * <p>
+ * When constructed over a buffer already in memory, such as a mapped file, the window is that buffer and
+ * {@link #getSlice(int)} returns views of it without copying. When constructed over a stream or channel, the window
+ * is borrowed from the calling thread's {@link BufferPool} and refilled as it is consumed. Such readers should be
+ * closed via {@link #close()} to return the window to the pool. Note that they read ahead of the values requested,
+ * so the source should not be read by anything else afterwards. The source is not closed.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class SequentialByteBufferReader extends SequentialReader implements Closeable
+{
+    public final static int DEFAULT_WINDOW_LENGTH = 8 * 1024;
+
+    @Nullable
+    private final InputStream _stream;
+    @Nullable
+    private final ReadableByteChannel _channel;
+
+    // Position within the window is the read position. Limit is the end of the valid data.
+    @NotNull
+    private ByteBuffer _window;
+    private boolean _isPooled;
+    // Position within the source of the window's first byte
+    private long _windowStart;
+
+    /**
+     * Creates a reader over the remaining bytes of <code>buffer</code>, without copying them. The buffer's
+     * position, limit and byte order are not modified.
+     */
+    @SuppressWarnings("ConstantConditions")
+    public SequentialByteBufferReader(@NotNull ByteBuffer buffer)
+    {
+        if (buffer == null)
+            throw new NullPointerException();
+
+        _stream = null;
+        _channel = null;
+        _window = buffer.slice();
+    }
+
+    public SequentialByteBufferReader(@NotNull InputStream stream)
+    {
+        this(stream, DEFAULT_WINDOW_LENGTH);
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    public SequentialByteBufferReader(@NotNull InputStream stream, int windowLength)
+    {
+        if (stream == null)
+            throw new NullPointerException();
+
+        _stream = stream;
+        _channel = null;
+        _window = ByteBuffer.wrap(BufferPool.borrowArray(windowLength));
+        _window.limit(0);
+        _isPooled = true;
+    }
+
+    /**
+     * Creates a reader over <code>channel</code>, whose window is a direct buffer so that reads from a
+     * {@link FileChannel} need not pass through an intermediate array.
+     */
+    @SuppressWarnings("ConstantConditions")
+    public SequentialByteBufferReader(@NotNull ReadableByteChannel channel, int windowLength)
+    {
+        if (channel == null)
+            throw new NullPointerException();
+
+        _stream = null;
+        _channel = channel;
+        _window = BufferPool.borrowDirectBuffer(windowLength);
+        _window.limit(0);
+        _isPooled = true;
+    }
+
+    /**
+     * Returns the window to the calling thread's {@link BufferPool}. The reader must not be used afterwards.
+     */
+    public void close()
+    {
+        if (!_isPooled)
+            return;
+
+        _isPooled = false;
+        if (_window.hasArray())
+            BufferPool.release(_window.array());
+        else
+            BufferPool.release(_window);
+        _window = ByteBuffer.allocate(0);
+    }
+
+    @Override
+    public long getPosition()
+    {
+        return _windowStart + _window.position();
+    }
+
+    @Override
+    public void setMotorolaByteOrder(boolean motorolaByteOrder)
+    {
+        super.setMotorolaByteOrder(motorolaByteOrder);
+        _window.order(motorolaByteOrder ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public byte getByte() throws IOException
+    {
+        require(1);
+        return _window.get();
+    }
+
+    @Override
+    public int getUInt16() throws IOException
+    {
+        require(2);
+        return _window.getShort() & 0xFFFF;
+    }
+
+    @Override
+    public short getInt16() throws IOException
+    {
+        require(2);
+        return _window.getShort();
+    }
+
+    @Override
+    public long getUInt32() throws IOException
+    {
+        require(4);
+        return _window.getInt() & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public int getInt32() throws IOException
+    {
+        require(4);
+        return _window.getInt();
+    }
+
+    @Override
+    public long getInt64() throws IOException
+    {
+        require(8);
+        return _window.getLong();
+    }
+
+    @NotNull
+    @Override
+    public byte[] getBytes(int count) throws IOException
+    {
+        byte[] bytes = new byte[count];
+        getBytes(bytes, 0, count);
+        return bytes;
+    }
+
+    @NotNull
+    @Override
+    public ByteBuffer getSlice(int count) throws IOException
+    {
+        // A window that is refilled can't be shared, so copy in that case
+        if (_stream != null || _channel != null)
+            return super.getSlice(count);
+
+        require(count);
+        ByteBuffer slice = _window.slice();
+        slice.limit(count);
+        _window.position(_window.position() + count);
+        return slice;
+    }
+
+    @Override
+    public void getBytes(@NotNull byte[] buffer, int offset, int count) throws IOException
+    {
+        int fromWindow = Math.min(count, _window.remaining());
+        _window.get(buffer, offset, fromWindow);
+
+        int remaining = count - fromWindow;
+        if (remaining == 0)
+            return;
+
+        if (remaining < _window.capacity()) {
+            require(remaining);
+            _window.get(buffer, offset + fromWindow, remaining);
+            return;
+        }
+
+        // A reader over a buffer has nothing beyond its window
+        if (_stream == null && _channel == null)
+            throw new EOFException("End of data reached.");
+
+        // Too large for the window, so read straight into the destination
+        discardWindow();
+        ByteBuffer destination = ByteBuffer.wrap(buffer, offset + fromWindow, remaining);
+        while (destination.hasRemaining()) {
+            if (read(destination) == -1)
+                throw new EOFException("End of data reached.");
+        }
+        _windowStart += remaining;
+    }
+
+    @Override
+    public int read(@NotNull byte[] buffer, int offset, int count) throws IOException
+    {
+        if (count == 0)
+            return 0;
+        if (!_window.hasRemaining() && !fill(1))
+            return -1;
+
+        int bytesRead = Math.min(count, _window.remaining());
+        _window.get(buffer, offset, bytesRead);
+        return bytesRead;
+    }
+
+    @Override
+    public void skip(long n) throws IOException
+    {
+        if (n < 0)
+            throw new IllegalArgumentException("n must be zero or greater.");
+
+        long skippedCount = skipInternal(n);
+
+        if (skippedCount != n)
+            throw new EOFException(String.format("Unable to skip. Requested %d bytes but skipped %d.", n, skippedCount));
+    }
+
+    @Override
+    public boolean trySkip(long n) throws IOException
+    {
+        if (n < 0)
+            throw new IllegalArgumentException("n must be zero or greater.");
+
+        return skipInternal(n) == n;
+    }
+
+    @Override
+    public int available()
+    {
+        int available = _window.remaining();
+        if (_stream != null) {
+            try {
+                available += _stream.available();
+            } catch (IOException ignored) {
+            }
+        }
+        return available;
+    }
+
+    private long skipInternal(long n) throws IOException
+    {
+        if (n <= _window.remaining()) {
+            _window.position(_window.position() + (int)n);
+            return n;
+        }
+
+        long skippedTotal = _window.remaining();
+        discardWindow();
+
+        if (_stream != null) {
+            while (skippedTotal != n) {
+                long skipped = _stream.skip(n - skippedTotal);
+                if (skipped <= 0) {
+                    // skip may return zero without the stream having ended, so test with a read
+                    if (_stream.read() == -1)
+                        break;
+                    skipped = 1;
+                }
+                skippedTotal += skipped;
+                _windowStart += skipped;
+            }
+        } else if (_channel instanceof FileChannel) {
+            FileChannel fileChannel = (FileChannel)_channel;
+            long position = fileChannel.position();
+            long skipped = Math.max(0, Math.min(n - skippedTotal, fileChannel.size() - position));
+            fileChannel.position(position + skipped);
+            skippedTotal += skipped;
+            _windowStart += skipped;
+        } else {
+            while (skippedTotal != n && fill(1)) {
+                int skipped = (int)Math.min(n - skippedTotal, _window.remaining());
+                _window.position(_window.position() + skipped);
+                skippedTotal += skipped;
+            }
+        }
+
+        return skippedTotal;
+    }
+
+    /**
+     * Ensures the window holds at least <code>count</code> unread bytes, refilling it from the source if required.
+     *
+     * @throws EOFException if the data ends first
+     */
+    private void require(int count) throws IOException
+    {
+        if (_window.remaining() < count && !fill(count))
+            throw new EOFException("End of data reached.");
+    }
+
+    /**
+     * Moves unread bytes to the start of the window, then reads from the source until at least <code>count</code>
+     * bytes are unread, or the source ends.
+     *
+     * @return <code>true</code> if the window holds at least <code>count</code> unread bytes
+     */
+    private boolean fill(int count) throws IOException
+    {
+        if (_window.remaining() >= count)
+            return true;
+        if ((_stream == null && _channel == null) || count > _window.capacity())
+            return false;
+
+        _windowStart += _window.position();
+        _window.compact();
+        try {
+            while (_window.position() < count) {
+                if (read(_window) == -1)
+                    break;
+            }
+        } finally {
+            _window.flip();
+        }
+        return _window.remaining() >= count;
+    }
+
+    /**
+     * Marks every byte in the window as consumed, leaving it empty.
+     */
+    private void discardWindow()
+    {
+        _windowStart += _window.limit();
+        _window.limit(0);
+    }
+
+    private int read(@NotNull ByteBuffer destination) throws IOException
+    {
+        if (_channel != null)
+            return _channel.read(destination);
+
+        assert(_stream != null);
+        assert(destination.hasArray());
+        int bytesRead = _stream.read(destination.array(), destination.arrayOffset() + destination.position(), destination.remaining());
+        if (bytesRead > 0)
+            destination.position(destination.position() + bytesRead);
+        return bytesRead;
+    }
+}
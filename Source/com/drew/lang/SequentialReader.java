@@ -28,6 +28,7 @@ import com.drew.metadata.StringValue;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 /**
@@ -66,6 +67,48 @@ public abstract class SequentialReader
      */
     public abstract void getBytes(@NotNull byte[] buffer, int offset, int count) throws IOException;
 
+    /**
+     * Returns the required number of bytes from the sequence as a buffer positioned at its first byte.
+     * <p>
+     * Implementations backed by data already in memory return a view of that data rather than a copy, so the
+     * returned buffer must be treated as read-only. By default, the bytes are copied via {@link #getBytes(int)}.
+     *
+     * @param count The number of bytes to be returned
+     * @return A buffer whose remaining bytes are those requested
+     */
+    @NotNull
+    public ByteBuffer getSlice(int count) throws IOException
+    {
+        return ByteBuffer.wrap(getBytes(count));
+    }
+
+    /**
+     * Reads up to <code>count</code> bytes into <code>buffer</code>. Unlike {@link #getBytes(byte[], int, int)},
+     * reading fewer bytes than requested is not an error, which suits scanning data of unknown length in bulk.
+     *
+     * @param buffer The array to read bytes into
+     * @param offset The starting position within buffer to write to
+     * @param count The maximum number of bytes to read
+     * @return the number of bytes read, which is at least one if <code>count</code> is positive, or -1 if the
+     *         sequence has ended
+     * @throws IOException an error occurred reading from the underlying source.
+     */
+    public int read(@NotNull byte[] buffer, int offset, int count) throws IOException
+    {
+        // Implementations read in bulk, but this is correct for any
+        int bytesRead = 0;
+        try {
+            while (bytesRead < count) {
+                buffer[offset + bytesRead] = getByte();
+                bytesRead++;
+            }
+        } catch (EOFException e) {
+            if (bytesRead == 0)
+                return -1;
+        }
+        return bytesRead;
+    }
+
     /**
      * Skips forward in the sequence. If the sequence ends, an {@link EOFException} is thrown.
      *
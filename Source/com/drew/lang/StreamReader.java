@@ -88,6 +88,18 @@ public class StreamReader extends SequentialReader
         _pos += totalBytesRead;
     }
 
+    @Override
+    public int read(@NotNull byte[] buffer, int offset, int count) throws IOException
+    {
+        if (count == 0)
+            return 0;
+
+        final int bytesRead = _stream.read(buffer, offset, count);
+        if (bytesRead > 0)
+            _pos += bytesRead;
+        return bytesRead;
+    }
+
     @Override
     public void skip(long n) throws IOException
     {
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata;
+
+import com.drew.lang.annotations.Nullable;
+
+import java.io.IOException;
+
+/**
+ * A tag value that has been located but not yet decoded, stored via {@link Directory#setDeferredValue(int, DeferredTagValue)}.
+ * <p>
+ * The directory calls {@link #decode()} the first time the tag's value is requested, then keeps the decoded value
+ * in its place. Implementations therefore retain whatever they need to decode the value, such as a reader over the
+ * original data, until then.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public interface DeferredTagValue
+{
+    /**
+     * Decodes the value, returning an object of the same type the tag would have been given had it been set directly,
+     * or <code>null</code> if there is no value.
+     *
+     * @throws IOException an error occurred while reading the value's data
+     */
+    @Nullable
+    Object decode() throws IOException;
+}
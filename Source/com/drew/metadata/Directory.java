@@ -25,6 +25,7 @@ import com.drew.lang.annotations.NotNull;
 import com.drew.lang.annotations.Nullable;
 import com.drew.lang.annotations.SuppressWarnings;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Array;
 import java.text.DateFormat;
@@ -61,6 +62,9 @@ public abstract class Directory
     @NotNull
     private final Collection<String> _errorList = new ArrayList<String>(4);
 
+    /** Whether any values were set via {@link #setDeferredValue}, in which case reading a value may decode it. */
+    private boolean _hasDeferredValues;
+
     /** The descriptor used to interpret tag values. */
     protected TagDescriptor _descriptor;
 
@@ -412,6 +416,35 @@ public abstract class Directory
         setObject(tagType, array);
     }
 
+    /**
+     * Sets a value for the specified tag that is decoded when first requested, rather than now.
+     * <p>
+     * The tag is defined immediately, but {@link DeferredTagValue#decode()} is only called by {@link #getObject(int)},
+     * and so by the typed getters, after which the decoded value replaces <code>value</code>. This saves decoding
+     * values that are never read. Only use this where {@link #isDeferredValueSupported()} returns <code>true</code>.
+     * <p>
+     * Once a directory holds deferred values, reading values synchronizes on it, so that a populated directory may
+     * still be read from several threads. If a value fails to decode, the tag remains defined with a
+     * <code>null</code> value, and an error is added to this directory.
+     *
+     * @param tagType the tag's value as an int
+     * @param value   the deferred value for the specified tag
+     */
+    public void setDeferredValue(int tagType, @NotNull DeferredTagValue value)
+    {
+        _hasDeferredValues = true;
+        setObject(tagType, value);
+    }
+
+    /**
+     * Indicates whether values may be set via {@link #setDeferredValue(int, DeferredTagValue)}. Directories whose
+     * setters do more than store the value, such as splitting an array across several tags, return <code>false</code>.
+     */
+    public boolean isDeferredValueSupported()
+    {
+        return true;
+    }
+
 // TAG GETTERS
 
     /**
@@ -1077,9 +1110,31 @@ public abstract class Directory
     @Nullable
     public Object getObject(int tagType)
     {
+        if (_hasDeferredValues)
+            return getOrDecodeObject(tagType);
         return _tagMap.get(Integer.valueOf(tagType));
     }
 
+    @Nullable
+    private synchronized Object getOrDecodeObject(int tagType)
+    {
+        Object value = _tagMap.get(Integer.valueOf(tagType));
+        if (!(value instanceof DeferredTagValue))
+            return value;
+
+        try {
+            value = ((DeferredTagValue)value).decode();
+        } catch (IOException e) {
+            addError(String.format("Unable to decode value of tag 0x%04X: %s", tagType, e.getMessage()));
+            value = null;
+        }
+
+        // Replace the deferred value so it is only decoded once. A value that couldn't be decoded becomes null, so
+        // the tag remains defined, consistent with the list of defined tags that callers may be iterating over.
+        _tagMap.put(tagType, value);
+        return value;
+    }
+
 // OTHER METHODS
 
     /**
@@ -67,6 +67,12 @@ public final class ErrorDirectory extends Directory
         return false;
     }
 
+    @Override
+    public boolean isDeferredValueSupported()
+    {
+        return false;
+    }
+
     @Override
     public void setObject(int tagType, @NotNull Object value)
     {
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata;
+
+import com.drew.lang.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Specifies the directories, and optionally the tags within them, that a caller wants extracted.
+ * <p>
+ * A spec is passed to readers via {@link Metadata#Metadata(ExtractionSpec)}, allowing them to skip work for data
+ * nobody asked for, such as JPEG segments, TIFF sub-IFDs, makernotes and tag values. It is a hint rather than a
+ * filter: directories and tags outside the spec may still be present, but those within it are extracted as usual.
+ * <p>
+ * Some descriptions combine several tags, such as a GPS coordinate and its reference, in which case all of them
+ * should be requested.
+ * <p>
+ * A directory type in the spec also covers its subclasses, so {@link com.drew.metadata.exif.ExifDirectoryBase} may
+ * be used to request all Exif IFDs.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class ExtractionSpec
+{
+    /** The requested tag types of each directory type, sorted, or <code>null</code> if all are requested. */
+    @NotNull
+    private final Map<Class<? extends Directory>, int[]> _tagTypesByDirectoryType = new LinkedHashMap<Class<? extends Directory>, int[]>();
+
+    /**
+     * Requests all tags of directories of <code>directoryType</code>.
+     *
+     * @return this spec
+     */
+    @NotNull
+    public ExtractionSpec addDirectory(@NotNull Class<? extends Directory> directoryType)
+    {
+        _tagTypesByDirectoryType.put(directoryType, null);
+        return this;
+    }
+
+    /**
+     * Requests the specified tags of directories of <code>directoryType</code>, in addition to any already requested.
+     *
+     * @return this spec
+     */
+    @NotNull
+    public ExtractionSpec addTags(@NotNull Class<? extends Directory> directoryType, @NotNull int... tagTypes)
+    {
+        if (_tagTypesByDirectoryType.containsKey(directoryType)) {
+            int[] existing = _tagTypesByDirectoryType.get(directoryType);
+            if (existing == null)
+                return this;
+            int[] merged = Arrays.copyOf(existing, existing.length + tagTypes.length);
+            System.arraycopy(tagTypes, 0, merged, existing.length, tagTypes.length);
+            tagTypes = merged;
+        } else {
+            tagTypes = tagTypes.clone();
+        }
+
+        Arrays.sort(tagTypes);
+        _tagTypesByDirectoryType.put(directoryType, tagTypes);
+        return this;
+    }
+
+    /**
+     * Indicates whether any tags of directories of <code>directoryType</code> are requested, either directly or
+     * via a type related to it by inheritance.
+     */
+    public boolean includesDirectory(@NotNull Class<? extends Directory> directoryType)
+    {
+        for (Class<? extends Directory> type : _tagTypesByDirectoryType.keySet()) {
+            if (isRelated(type, directoryType))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Indicates whether any of <code>directoryTypes</code> are requested, as for {@link #includesDirectory(Class)}.
+     */
+    public boolean includesAnyDirectory(@NotNull Iterable<Class<? extends Directory>> directoryTypes)
+    {
+        for (Class<? extends Directory> directoryType : directoryTypes) {
+            if (includesDirectory(directoryType))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Indicates whether the specified tag of directories of <code>directoryType</code> is requested.
+     */
+    public boolean includesTag(@NotNull Class<? extends Directory> directoryType, int tagType)
+    {
+        for (Map.Entry<Class<? extends Directory>, int[]> entry : _tagTypesByDirectoryType.entrySet()) {
+            if (!isRelated(entry.getKey(), directoryType))
+                continue;
+            int[] tagTypes = entry.getValue();
+            if (tagTypes == null || Arrays.binarySearch(tagTypes, tagType) >= 0)
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isRelated(@NotNull Class<?> a, @NotNull Class<?> b)
+    {
+        return a.isAssignableFrom(b) || b.isAssignableFrom(a);
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder("{");
+        for (Map.Entry<Class<? extends Directory>, int[]> entry : _tagTypesByDirectoryType.entrySet()) {
+            if (builder.length() != 1)
+                builder.append(", ");
+            builder.append(entry.getKey().getSimpleName()).append(": ");
+            if (entry.getValue() == null) {
+                builder.append('*');
+            } else {
+                builder.append('[');
+                for (int i = 0; i < entry.getValue().length; i++) {
+                    if (i != 0)
+                        builder.append(", ");
+                    builder.append(String.format("0x%04X", entry.getValue()[i]));
+                }
+                builder.append(']');
+            }
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -30,6 +30,15 @@ import java.util.*;
  * <p>
  * Metadata objects may contain zero or more {@link Directory} objects.  Each directory may contain zero or more tags
  * with corresponding values.
+ * <p>
+ * Reading some directories may be deferred via {@link #addDeferredRead}, until a directory of a type they may produce
+ * is requested. Methods that consider all directories, such as {@link #getDirectories()}, first perform any deferred
+ * reads. Directories are ordered by when they were added, so deferred directories follow those already present.
+ * <p>
+ * This class is not thread-safe. As requesting directories may perform deferred reads, even methods that only get
+ * directories can modify the collection, so an instance shared between threads must be synchronized externally.
+ * Once {@link #getDirectories()} has been called and no more directories are added, no deferred reads remain and
+ * the collection may be read from several threads.
  *
  * @author Drew Noakes https://drewnoakes.com
  */
@@ -41,6 +50,41 @@ public final class Metadata
     @NotNull
     private final List<Directory> _directories = new ArrayList<Directory>();
 
+    /**
+     * Reads not yet performed, in the order they were deferred, or <code>null</code> if there are none.
+     */
+    @Nullable
+    private List<DeferredRead> _deferredReads;
+
+    @Nullable
+    private final ExtractionSpec _extractionSpec;
+
+    public Metadata()
+    {
+        this(null);
+    }
+
+    /**
+     * Creates a metadata collection into which readers need only extract the directories and tags of
+     * <code>extractionSpec</code>.
+     *
+     * @param extractionSpec the directories and tags required, or <code>null</code> if all are required
+     */
+    public Metadata(@Nullable ExtractionSpec extractionSpec)
+    {
+        _extractionSpec = extractionSpec;
+    }
+
+    /**
+     * Gets the directories and tags that readers need extract into this collection, or <code>null</code> if all
+     * are required.
+     */
+    @Nullable
+    public ExtractionSpec getExtractionSpec()
+    {
+        return _extractionSpec;
+    }
+
     /**
      * Returns an iterable set of the {@link Directory} instances contained in this metadata collection.
      *
@@ -49,6 +93,7 @@ public final class Metadata
     @NotNull
     public Iterable<Directory> getDirectories()
     {
+        performDeferredReads(null);
         return _directories;
     }
 
@@ -56,6 +101,7 @@ public final class Metadata
     @SuppressWarnings("unchecked")
     public <T extends Directory> Collection<T> getDirectoriesOfType(Class<T> type)
     {
+        performDeferredReads(type);
         List<T> directories = new ArrayList<T>();
         for (Directory dir : _directories) {
             if (type.isAssignableFrom(dir.getClass())) {
@@ -72,6 +118,7 @@ public final class Metadata
      */
     public int getDirectoryCount()
     {
+        performDeferredReads(null);
         return _directories.size();
     }
 
@@ -85,6 +132,46 @@ public final class Metadata
         _directories.add(directory);
     }
 
+    /**
+     * Defers a read that adds directories to this metadata collection until a directory of one of
+     * <code>directoryTypes</code>, or of a type related to one of them by inheritance, is requested.
+     * <p>
+     * Deferred reads are performed at most once, in the order they were deferred, and may themselves request
+     * directories. Any that remain are performed when all directories are requested.
+     *
+     * @param directoryTypes the types of {@link Directory} that <code>read</code> may add
+     * @param read adds directories to this metadata collection when run
+     */
+    public void addDeferredRead(@NotNull Iterable<Class<? extends Directory>> directoryTypes, @NotNull Runnable read)
+    {
+        if (_deferredReads == null)
+            _deferredReads = new ArrayList<DeferredRead>();
+        _deferredReads.add(new DeferredRead(directoryTypes, read));
+    }
+
+    /**
+     * Performs deferred reads that may add directories of <code>type</code>, or all of them if <code>type</code>
+     * is <code>null</code>.
+     */
+    private void performDeferredReads(@Nullable Class<? extends Directory> type)
+    {
+        if (_deferredReads == null)
+            return;
+
+        // A read may request directories itself, performing other reads, so rescan after each one
+        int i = 0;
+        while (i < _deferredReads.size()) {
+            DeferredRead deferredRead = _deferredReads.get(i);
+            if (type == null || deferredRead.mayAdd(type)) {
+                _deferredReads.remove(i);
+                deferredRead._read.run();
+                i = 0;
+            } else {
+                i++;
+            }
+        }
+    }
+
     /**
      * Gets the first {@link Directory} of the specified type contained within this metadata collection.
      * If no instances of this type are present, <code>null</code> is returned.
@@ -97,6 +184,7 @@ public final class Metadata
     @SuppressWarnings("unchecked")
     public <T extends Directory> T getFirstDirectoryOfType(@NotNull Class<T> type)
     {
+        performDeferredReads(type);
         for (Directory dir : _directories) {
             if (type.isAssignableFrom(dir.getClass()))
                 return (T)dir;
@@ -112,6 +200,7 @@ public final class Metadata
      */
     public boolean containsDirectoryOfType(Class<? extends Directory> type)
     {
+        performDeferredReads(type);
         for (Directory dir : _directories) {
             if (type.isAssignableFrom(dir.getClass()))
                 return true;
@@ -144,4 +233,27 @@ public final class Metadata
                 ? "directory"
                 : "directories");
     }
+
+    private static class DeferredRead
+    {
+        @NotNull
+        private final Iterable<Class<? extends Directory>> _directoryTypes;
+        @NotNull
+        private final Runnable _read;
+
+        DeferredRead(@NotNull Iterable<Class<? extends Directory>> directoryTypes, @NotNull Runnable read)
+        {
+            _directoryTypes = directoryTypes;
+            _read = read;
+        }
+
+        boolean mayAdd(@NotNull Class<? extends Directory> type)
+        {
+            for (Class<? extends Directory> directoryType : _directoryTypes) {
+                if (type.isAssignableFrom(directoryType) || directoryType.isAssignableFrom(type))
+                    return true;
+            }
+            return false;
+        }
+    }
 }
@@ -21,7 +21,7 @@
 
 package com.drew.metadata.adobe;
 
-import com.drew.imaging.jpeg.JpegSegmentMetadataReader;
+import com.drew.imaging.jpeg.JpegSegmentDirectoryReader;
 import com.drew.imaging.jpeg.JpegSegmentType;
 import com.drew.lang.SequentialByteArrayReader;
 import com.drew.lang.SequentialReader;
@@ -39,7 +39,7 @@ import java.util.Collections;
  * @author Drew Noakes https://drewnoakes.com
  */
 @SuppressWarnings("WeakerAccess")
-public class AdobeJpegReader implements JpegSegmentMetadataReader
+public class AdobeJpegReader implements JpegSegmentDirectoryReader
 {
     public static final String PREAMBLE = "Adobe";
 
@@ -49,6 +49,12 @@ public class AdobeJpegReader implements JpegSegmentMetadataReader
         return Collections.singletonList(JpegSegmentType.APPE);
     }
 
+    @NotNull
+    public Iterable<Class<? extends Directory>> getDirectoryTypes()
+    {
+        return Collections.<Class<? extends Directory>>singletonList(AdobeJpegDirectory.class);
+    }
+
     public void readJpegSegments(@NotNull Iterable<byte[]> segments, @NotNull Metadata metadata, @NotNull JpegSegmentType segmentType)
     {
         for (byte[] bytes : segments) {
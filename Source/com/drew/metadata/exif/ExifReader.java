@@ -20,19 +20,30 @@
  */
 package com.drew.metadata.exif;
 
-import com.drew.imaging.jpeg.JpegSegmentMetadataReader;
+import com.drew.imaging.jpeg.JpegSegmentData;
+import com.drew.imaging.jpeg.JpegSegmentDirectoryReader;
+import com.drew.imaging.jpeg.JpegSegmentSliceMetadataReader;
 import com.drew.imaging.jpeg.JpegSegmentType;
 import com.drew.imaging.tiff.TiffProcessingException;
 import com.drew.imaging.tiff.TiffReader;
 import com.drew.lang.ByteArrayReader;
+import com.drew.lang.ByteBufferReader;
 import com.drew.lang.RandomAccessReader;
 import com.drew.lang.annotations.NotNull;
 import com.drew.lang.annotations.Nullable;
 import com.drew.metadata.Directory;
+import com.drew.metadata.ErrorDirectory;
 import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.makernotes.*;
+import com.drew.metadata.iptc.IptcDirectory;
+import com.drew.metadata.xmp.XmpDirectory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 /**
  * Decodes Exif binary data, populating a {@link Metadata} object with tag values in {@link ExifSubIFDDirectory},
@@ -42,17 +53,77 @@ import java.util.Collections;
  * @author Drew Noakes https://drewnoakes.com
  */
 @SuppressWarnings("WeakerAccess")
-public class ExifReader implements JpegSegmentMetadataReader
+public class ExifReader implements JpegSegmentSliceMetadataReader, JpegSegmentDirectoryReader
 {
     /** Exif data stored in JPEG files' APP1 segment are preceded by this six character preamble. */
     public static final String JPEG_SEGMENT_PREAMBLE = "Exif\0\0";
 
+    /**
+     * The types of makernote {@link Directory} that may be added while reading Exif data. This must be kept in step
+     * with {@link ExifTiffHandler}.
+     */
+    @SuppressWarnings("unchecked")
+    public static final List<Class<? extends Directory>> MAKERNOTE_DIRECTORY_TYPES = Collections.unmodifiableList(Arrays.<Class<? extends Directory>>asList(
+        AppleMakernoteDirectory.class, CanonMakernoteDirectory.class, CasioType1MakernoteDirectory.class,
+        CasioType2MakernoteDirectory.class, FujifilmMakernoteDirectory.class, KodakMakernoteDirectory.class,
+        KyoceraMakernoteDirectory.class, LeicaMakernoteDirectory.class, LeicaType5MakernoteDirectory.class,
+        NikonType1MakernoteDirectory.class, NikonType2MakernoteDirectory.class, OlympusMakernoteDirectory.class,
+        OlympusCameraSettingsMakernoteDirectory.class, OlympusEquipmentMakernoteDirectory.class,
+        OlympusFocusInfoMakernoteDirectory.class, OlympusImageProcessingMakernoteDirectory.class,
+        OlympusRawDevelopmentMakernoteDirectory.class, OlympusRawDevelopment2MakernoteDirectory.class,
+        OlympusRawInfoMakernoteDirectory.class, PanasonicMakernoteDirectory.class, PentaxMakernoteDirectory.class,
+        ReconyxHyperFireMakernoteDirectory.class, ReconyxUltraFireMakernoteDirectory.class,
+        RicohMakernoteDirectory.class, SamsungType2MakernoteDirectory.class, SanyoMakernoteDirectory.class,
+        SigmaMakernoteDirectory.class, SonyType1MakernoteDirectory.class, SonyType6MakernoteDirectory.class
+    ));
+
+    /**
+     * The types of {@link Directory} that may be added while reading Exif data, including makernotes and any IPTC or
+     * XMP data embedded within it. This must be kept in step with {@link ExifTiffHandler}.
+     */
+    public static final List<Class<? extends Directory>> DIRECTORY_TYPES;
+
+    static {
+        List<Class<? extends Directory>> types = new ArrayList<Class<? extends Directory>>(Arrays.<Class<? extends Directory>>asList(
+            ExifIFD0Directory.class, ExifSubIFDDirectory.class, ExifInteropDirectory.class, ExifImageDirectory.class,
+            ExifThumbnailDirectory.class, GpsDirectory.class, PrintIMDirectory.class, PanasonicRawIFD0Directory.class,
+            PanasonicRawWbInfoDirectory.class, PanasonicRawWbInfo2Directory.class, PanasonicRawDistortionDirectory.class,
+            IptcDirectory.class, XmpDirectory.class, ErrorDirectory.class
+        ));
+        types.addAll(MAKERNOTE_DIRECTORY_TYPES);
+        DIRECTORY_TYPES = Collections.unmodifiableList(types);
+    }
+
+    private final boolean _deferTagValues;
+
+    public ExifReader()
+    {
+        this(false);
+    }
+
+    /**
+     * Creates a reader, optionally in a mode where each tag value is decoded when first requested rather than when
+     * read. The data of each deferred value is retained until then. See {@link ExifTiffHandler#setDeferTagValues(boolean)}.
+     *
+     * @param deferTagValues <code>true</code> to defer decoding tag values until they're requested
+     */
+    public ExifReader(boolean deferTagValues)
+    {
+        _deferTagValues = deferTagValues;
+    }
+
     @NotNull
     public Iterable<JpegSegmentType> getSegmentTypes()
     {
         return Collections.singletonList(JpegSegmentType.APP1);
     }
 
+    @NotNull
+    public Iterable<Class<? extends Directory>> getDirectoryTypes()
+    {
+        return DIRECTORY_TYPES;
+    }
+
     public void readJpegSegments(@NotNull final Iterable<byte[]> segments, @NotNull final Metadata metadata, @NotNull final JpegSegmentType segmentType)
     {
         assert(segmentType == JpegSegmentType.APP1);
@@ -65,6 +136,18 @@ public class ExifReader implements JpegSegmentMetadataReader
         }
     }
 
+    public void readJpegSegmentSlices(@NotNull final Iterable<ByteBuffer> segments, @NotNull final Metadata metadata, @NotNull final JpegSegmentType segmentType)
+    {
+        assert(segmentType == JpegSegmentType.APP1);
+
+        for (ByteBuffer segment : segments) {
+            // Filter any segments containing unexpected preambles
+            if (!JPEG_SEGMENT_PREAMBLE.equals(JpegSegmentData.getPreamble(segment, JPEG_SEGMENT_PREAMBLE.length())))
+                continue;
+            extract(new ByteBufferReader(segment), metadata, JPEG_SEGMENT_PREAMBLE.length());
+        }
+    }
+
     /** Reads TIFF formatted Exif data from start of the specified {@link RandomAccessReader}. */
     public void extract(@NotNull final RandomAccessReader reader, @NotNull final Metadata metadata)
     {
@@ -81,6 +164,7 @@ public class ExifReader implements JpegSegmentMetadataReader
     public void extract(@NotNull final RandomAccessReader reader, @NotNull final Metadata metadata, int readerOffset, @Nullable Directory parentDirectory)
     {
         ExifTiffHandler exifTiffHandler = new ExifTiffHandler(metadata, parentDirectory);
+        exifTiffHandler.setDeferTagValues(_deferTagValues);
 
         try {
             // Read the TIFF-formatted Exif data
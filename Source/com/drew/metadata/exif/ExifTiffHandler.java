@@ -25,7 +25,9 @@ import com.drew.imaging.tiff.TiffReader;
 import com.drew.imaging.jpeg.JpegMetadataReader;
 import com.drew.imaging.jpeg.JpegProcessingException;
 
+import com.drew.lang.ByteTrie;
 import com.drew.lang.Charsets;
+import com.drew.lang.CompiledByteTrie;
 import com.drew.lang.RandomAccessReader;
 import com.drew.lang.SequentialByteArrayReader;
 import com.drew.lang.annotations.NotNull;
@@ -34,13 +36,14 @@ import com.drew.metadata.Directory;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.StringValue;
 import com.drew.metadata.exif.makernotes.*;
+import com.drew.metadata.iptc.IptcDirectory;
 import com.drew.metadata.iptc.IptcReader;
 import com.drew.metadata.tiff.DirectoryTiffHandler;
+import com.drew.metadata.xmp.XmpDirectory;
 import com.drew.metadata.xmp.XmpReader;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.Set;
 
 /**
@@ -53,6 +56,46 @@ import java.util.Set;
  */
 public class ExifTiffHandler extends DirectoryTiffHandler
 {
+    /**
+     * The makernote formats recognised by {@link #processMakernote}. These are declared in the order in which they're
+     * tested for, so that where data matches several, the earliest applies.
+     */
+    private enum MakernoteType
+    {
+        OLYMPUS, OLYMPUS_II, OLYMPUS_HEADERLESS, NIKON, SONY_TYPE1, SONY_TYPE1_HEADERLESS, SONY_TYPE6, SIGMA, KODAK,
+        CANON, CASIO, FUJIFILM, KYOCERA, LEICA, PANASONIC, CASIO_TYPE2_AOC, PENTAX, SANYO, RICOH, APPLE,
+        RECONYX_HYPERFIRE, RECONYX_ULTRAFIRE, SAMSUNG
+    }
+
+    /** Identifies makernotes by the signature at their start. Makernotes identified by camera make are not included. */
+    private static final CompiledByteTrie<MakernoteType> MAKERNOTE_SIGNATURES;
+
+    static
+    {
+        ByteTrie<MakernoteType> signatures = new ByteTrie<MakernoteType>();
+
+        // Epson and Agfa use Olympus makernote standard: http://www.ozhiker.com/electronics/pjmt/jpeg_info/
+        signatures.addPath(MakernoteType.OLYMPUS, "OLYMP\0".getBytes());
+        signatures.addPath(MakernoteType.OLYMPUS, "EPSON".getBytes());
+        signatures.addPath(MakernoteType.OLYMPUS, "AGFA".getBytes());
+        signatures.addPath(MakernoteType.OLYMPUS_II, "OLYMPUS\0II".getBytes());
+        signatures.addPath(MakernoteType.SONY_TYPE1, "SONY CAM".getBytes());
+        signatures.addPath(MakernoteType.SONY_TYPE1, "SONY DSC".getBytes());
+        signatures.addPath(MakernoteType.SONY_TYPE6, "SEMC MS\0\0\0\0\0".getBytes());
+        signatures.addPath(MakernoteType.SIGMA, "SIGMA\0\0\0".getBytes());
+        signatures.addPath(MakernoteType.SIGMA, "FOVEON\0\0".getBytes());
+        signatures.addPath(MakernoteType.KODAK, "KDK".getBytes());
+        signatures.addPath(MakernoteType.FUJIFILM, "FUJIFILM".getBytes());
+        signatures.addPath(MakernoteType.KYOCERA, "KYOCERA".getBytes());
+        signatures.addPath(MakernoteType.LEICA, "LEICA".getBytes());
+        signatures.addPath(MakernoteType.PANASONIC, "Panasonic\0\0\0".getBytes());
+        signatures.addPath(MakernoteType.CASIO_TYPE2_AOC, "AOC\0".getBytes());
+        signatures.addPath(MakernoteType.SANYO, "SANYO\0\1\0".getBytes());
+        signatures.addPath(MakernoteType.APPLE, "Apple iOS\0".getBytes());
+
+        MAKERNOTE_SIGNATURES = signatures.compile();
+    }
+
     public ExifTiffHandler(@NotNull Metadata metadata, @Nullable Directory parentDirectory)
     {
         super(metadata);
@@ -63,7 +106,7 @@ public class ExifTiffHandler extends DirectoryTiffHandler
 
     public void setTiffMarker(int marker) throws TiffProcessingException
     {
-        final int standardTiffMarker = 0x002A;
+        final int standardTiffMarker = TiffReader.STANDARD_TIFF_MARKER;
         final int olympusRawTiffMarker = 0x4F52; // for ORF files
         final int olympusRawTiffMarker2 = 0x5352; // for ORF files
         final int panasonicRawTiffMarker = 0x0055; // for RW2 files
@@ -71,6 +114,7 @@ public class ExifTiffHandler extends DirectoryTiffHandler
         switch (marker)
         {
             case standardTiffMarker:
+            case TiffReader.BIG_TIFF_MARKER:
             case olympusRawTiffMarker:      // Todo: implement an IFD0, if there is one
             case olympusRawTiffMarker2:     // Todo: implement an IFD0, if there is one
                 pushDirectory(ExifIFD0Directory.class);
@@ -85,25 +129,25 @@ public class ExifTiffHandler extends DirectoryTiffHandler
 
     public boolean tryEnterSubIfd(int tagId)
     {
-        if (tagId == ExifDirectoryBase.TAG_SUB_IFD_OFFSET) {
+        if (tagId == ExifDirectoryBase.TAG_SUB_IFD_OFFSET && isSubIfdRequired()) {
             pushDirectory(ExifSubIFDDirectory.class);
             return true;
         }
 
         if (_currentDirectory instanceof ExifIFD0Directory || _currentDirectory instanceof PanasonicRawIFD0Directory) {
-            if (tagId == ExifIFD0Directory.TAG_EXIF_SUB_IFD_OFFSET) {
+            if (tagId == ExifIFD0Directory.TAG_EXIF_SUB_IFD_OFFSET && isSubIfdRequired()) {
                 pushDirectory(ExifSubIFDDirectory.class);
                 return true;
             }
 
-            if (tagId == ExifIFD0Directory.TAG_GPS_INFO_OFFSET) {
+            if (tagId == ExifIFD0Directory.TAG_GPS_INFO_OFFSET && isRequired(GpsDirectory.class)) {
                 pushDirectory(GpsDirectory.class);
                 return true;
             }
         }
 
         if (_currentDirectory instanceof ExifSubIFDDirectory) {
-            if (tagId == ExifSubIFDDirectory.TAG_INTEROP_OFFSET) {
+            if (tagId == ExifSubIFDDirectory.TAG_INTEROP_OFFSET && isRequired(ExifInteropDirectory.class)) {
                 pushDirectory(ExifInteropDirectory.class);
                 return true;
             }
@@ -143,8 +187,32 @@ public class ExifTiffHandler extends DirectoryTiffHandler
         return false;
     }
 
+    private boolean isSubIfdRequired()
+    {
+        return isRequired(ExifSubIFDDirectory.class)
+            || isRequired(ExifInteropDirectory.class)
+            || isAnyRequired(ExifReader.MAKERNOTE_DIRECTORY_TYPES);
+    }
+
+    public boolean shouldReadTag(int tagId)
+    {
+        if (super.shouldReadTag(tagId))
+            return true;
+
+        // The camera make is needed to identify the makernote format
+        if (tagId == ExifIFD0Directory.TAG_MAKE && _currentDirectory instanceof ExifIFD0Directory)
+            return isAnyRequired(ExifReader.MAKERNOTE_DIRECTORY_TYPES);
+
+        // The page number is needed to identify the type of any follower IFD
+        return tagId == ExifDirectoryBase.TAG_PAGE_NUMBER
+            && (_currentDirectory instanceof ExifIFD0Directory || _currentDirectory instanceof ExifImageDirectory);
+    }
+
     public boolean hasFollowerIfd()
     {
+        if (!isRequired(ExifImageDirectory.class) && !isRequired(ExifThumbnailDirectory.class))
+            return false;
+
         // In Exif, the only known 'follower' IFD is the thumbnail one, however this may not be the case.
         // UPDATE: In multipage TIFFs, the 'follower' IFD points to the next image in the set
         if (_currentDirectory instanceof ExifIFD0Directory || _currentDirectory instanceof ExifImageDirectory) {
@@ -179,9 +247,9 @@ public class ExifTiffHandler extends DirectoryTiffHandler
         return null;
     }
 
-    public boolean customProcessTag(final int tagOffset,
-                                    final @NotNull Set<Integer> processedIfdOffsets,
-                                    final int tiffHeaderOffset,
+    public boolean customProcessTag(final long tagOffset,
+                                    final @NotNull Set<Long> processedIfdOffsets,
+                                    final long tiffHeaderOffset,
                                     final @NotNull RandomAccessReader reader,
                                     final int tagId,
                                     final int byteCount) throws IOException
@@ -202,6 +270,8 @@ public class ExifTiffHandler extends DirectoryTiffHandler
 
         // Custom processing for the Makernote tag
         if (tagId == ExifSubIFDDirectory.TAG_MAKERNOTE && _currentDirectory instanceof ExifSubIFDDirectory) {
+            if (!isAnyRequired(ExifReader.MAKERNOTE_DIRECTORY_TYPES))
+                return true;
             return processMakernote(tagOffset, processedIfdOffsets, tiffHeaderOffset, reader);
         }
 
@@ -209,6 +279,8 @@ public class ExifTiffHandler extends DirectoryTiffHandler
         if (tagId == ExifSubIFDDirectory.TAG_IPTC_NAA && _currentDirectory instanceof ExifIFD0Directory) {
             // NOTE Adobe sets type 4 for IPTC instead of 7
             if (reader.getInt8(tagOffset) == 0x1c) {
+                if (!isRequired(IptcDirectory.class))
+                    return true;
                 final byte[] iptcBytes = reader.getBytes(tagOffset, byteCount);
                 new IptcReader().extract(new SequentialByteArrayReader(iptcBytes), _metadata, iptcBytes.length, _currentDirectory);
                 return true;
@@ -218,12 +290,16 @@ public class ExifTiffHandler extends DirectoryTiffHandler
 
         // Custom processing for embedded XMP data
         if (tagId == ExifSubIFDDirectory.TAG_APPLICATION_NOTES && _currentDirectory instanceof ExifIFD0Directory) {
+            if (!isRequired(XmpDirectory.class))
+                return true;
             new XmpReader().extract(reader.getNullTerminatedBytes(tagOffset, byteCount), _metadata, _currentDirectory);
             return true;
         }
 
         if (HandlePrintIM(_currentDirectory, tagId))
         {
+            if (!isRequired(PrintIMDirectory.class))
+                return true;
             PrintIMDirectory printIMDirectory = new PrintIMDirectory();
             printIMDirectory.setParent(_currentDirectory);
             _metadata.addDirectory(printIMDirectory);
@@ -323,7 +399,7 @@ public class ExifTiffHandler extends DirectoryTiffHandler
         return false;
     }
 
-    private static void ProcessBinary(@NotNull final Directory directory, final int tagValueOffset, @NotNull final RandomAccessReader reader, final int byteCount, final Boolean issigned, final int arrayLength) throws IOException
+    private static void ProcessBinary(@NotNull final Directory directory, final long tagValueOffset, @NotNull final RandomAccessReader reader, final int byteCount, final Boolean issigned, final int arrayLength) throws IOException
     {
         // expects signed/unsigned int16 (for now)
         //int byteSize = issigned ? sizeof(short) : sizeof(ushort);
@@ -366,9 +442,9 @@ public class ExifTiffHandler extends DirectoryTiffHandler
         }
     }
 
-    private boolean processMakernote(final int makernoteOffset,
-                                     final @NotNull Set<Integer> processedIfdOffsets,
-                                     final int tiffHeaderOffset,
+    private boolean processMakernote(final long makernoteOffset,
+                                     final @NotNull Set<Long> processedIfdOffsets,
+                                     final long tiffHeaderOffset,
                                      final @NotNull RandomAccessReader reader) throws IOException
     {
         // Determine the camera model and makernote format.
@@ -376,212 +452,290 @@ public class ExifTiffHandler extends DirectoryTiffHandler
 
         String cameraMake = ifd0Directory == null ? null : ifd0Directory.getString(ExifIFD0Directory.TAG_MAKE);
 
-        final String firstTwoChars    = reader.getString(makernoteOffset, 2, Charsets.UTF_8);
-        final String firstThreeChars  = reader.getString(makernoteOffset, 3, Charsets.UTF_8);
-        final String firstFourChars   = reader.getString(makernoteOffset, 4, Charsets.UTF_8);
-        final String firstFiveChars   = reader.getString(makernoteOffset, 5, Charsets.UTF_8);
-        final String firstSixChars    = reader.getString(makernoteOffset, 6, Charsets.UTF_8);
-        final String firstSevenChars  = reader.getString(makernoteOffset, 7, Charsets.UTF_8);
-        final String firstEightChars  = reader.getString(makernoteOffset, 8, Charsets.UTF_8);
-        final String firstNineChars   = reader.getString(makernoteOffset, 9, Charsets.UTF_8);
-        final String firstTenChars    = reader.getString(makernoteOffset, 10, Charsets.UTF_8);
-        final String firstTwelveChars = reader.getString(makernoteOffset, 12, Charsets.UTF_8);
+        final byte[] prefix = reader.getBytes(makernoteOffset, MAKERNOTE_SIGNATURES.getMaxDepth());
+
+        MakernoteType makernoteType = MAKERNOTE_SIGNATURES.find(prefix);
+        MakernoteType makernoteTypeByMake = getMakernoteTypeByMake(cameraMake, prefix);
+        if (makernoteTypeByMake != null && (makernoteType == null || makernoteTypeByMake.compareTo(makernoteType) < 0))
+            makernoteType = makernoteTypeByMake;
+
+        // Reconyx makernotes are tested for late, and can't be identified by a case-sensitive signature
+        if (makernoteType == null || makernoteType.compareTo(MakernoteType.RECONYX_HYPERFIRE) > 0) {
+            if (reader.getUInt16(makernoteOffset) == ReconyxHyperFireMakernoteDirectory.MAKERNOTE_VERSION)
+                makernoteType = MakernoteType.RECONYX_HYPERFIRE;
+            else if (startsWith(prefix, "RECONYXUF", true))
+                makernoteType = MakernoteType.RECONYX_ULTRAFIRE;
+        }
+
+        if (makernoteType == null) {
+            // The makernote is not comprehended by this library.
+            // If you are reading this and believe a particular camera's image should be processed, get in touch.
+            return false;
+        }
 
         boolean byteOrderBefore = reader.isMotorolaByteOrder();
 
-        if ("OLYMP\0".equals(firstSixChars) || "EPSON".equals(firstFiveChars) || "AGFA".equals(firstFourChars)) {
-            // Olympus Makernote
-            // Epson and Agfa use Olympus makernote standard: http://www.ozhiker.com/electronics/pjmt/jpeg_info/
-            pushDirectory(OlympusMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, tiffHeaderOffset);
-        } else if ("OLYMPUS\0II".equals(firstTenChars)) {
-            // Olympus Makernote (alternate)
-            // Note that data is relative to the beginning of the makernote
-            // http://exiv2.org/makernote.html
-            pushDirectory(OlympusMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 12, makernoteOffset);
-        } else if (cameraMake != null && cameraMake.toUpperCase().startsWith("MINOLTA")) {
-            // Cases seen with the model starting with MINOLTA in capitals seem to have a valid Olympus makernote
-            // area that commences immediately.
-            pushDirectory(OlympusMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
-        } else if (cameraMake != null && cameraMake.trim().toUpperCase().startsWith("NIKON")) {
-            if ("Nikon".equals(firstFiveChars)) {
-                /* There are two scenarios here:
-                 * Type 1:                  **
-                 * :0000: 4E 69 6B 6F 6E 00 01 00-05 00 02 00 02 00 06 00 Nikon...........
-                 * :0010: 00 00 EC 02 00 00 03 00-03 00 01 00 00 00 06 00 ................
-                 * Type 3:                  **
-                 * :0000: 4E 69 6B 6F 6E 00 02 00-00 00 4D 4D 00 2A 00 00 Nikon....MM.*...
-                 * :0010: 00 08 00 1E 00 01 00 07-00 00 00 04 30 32 30 30 ............0200
-                 */
-                switch (reader.getUInt8(makernoteOffset + 6)) {
-                    case 1:
-                        pushDirectory(NikonType1MakernoteDirectory.class);
-                        TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, tiffHeaderOffset);
-                        break;
-                    case 2:
-                        pushDirectory(NikonType2MakernoteDirectory.class);
-                        TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 18, makernoteOffset + 10);
-                        break;
-                    default:
-                        _currentDirectory.addError("Unsupported Nikon makernote data ignored.");
-                        break;
+        switch (makernoteType) {
+            case OLYMPUS:
+                pushDirectory(OlympusMakernoteDirectory.class);
+                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, tiffHeaderOffset);
+                break;
+            case OLYMPUS_II:
+                // Note that data is relative to the beginning of the makernote
+                // http://exiv2.org/makernote.html
+                pushDirectory(OlympusMakernoteDirectory.class);
+                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 12, makernoteOffset);
+                break;
+            case OLYMPUS_HEADERLESS:
+                // Cases seen with the model starting with MINOLTA in capitals seem to have a valid Olympus makernote
+                // area that commences immediately.
+                pushDirectory(OlympusMakernoteDirectory.class);
+                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
+                break;
+            case NIKON:
+                if (startsWith(prefix, "Nikon", false)) {
+                    /* There are two scenarios here:
+                     * Type 1:                  **
+                     * :0000: 4E 69 6B 6F 6E 00 01 00-05 00 02 00 02 00 06 00 Nikon...........
+                     * :0010: 00 00 EC 02 00 00 03 00-03 00 01 00 00 00 06 00 ................
+                     * Type 3:                  **
+                     * :0000: 4E 69 6B 6F 6E 00 02 00-00 00 4D 4D 00 2A 00 00 Nikon....MM.*...
+                     * :0010: 00 08 00 1E 00 01 00 07-00 00 00 04 30 32 30 30 ............0200
+                     */
+                    switch (reader.getUInt8(makernoteOffset + 6)) {
+                        case 1:
+                            pushDirectory(NikonType1MakernoteDirectory.class);
+                            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, tiffHeaderOffset);
+                            break;
+                        case 2:
+                            pushDirectory(NikonType2MakernoteDirectory.class);
+                            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 18, makernoteOffset + 10);
+                            break;
+                        default:
+                            _currentDirectory.addError("Unsupported Nikon makernote data ignored.");
+                            break;
+                    }
+                } else {
+                    // The IFD begins with the first Makernote byte (no ASCII name).  This occurs with CoolPix 775, E990 and D1 models.
+                    pushDirectory(NikonType2MakernoteDirectory.class);
+                    TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
                 }
-            } else {
-                // The IFD begins with the first Makernote byte (no ASCII name).  This occurs with CoolPix 775, E990 and D1 models.
-                pushDirectory(NikonType2MakernoteDirectory.class);
+                break;
+            case SONY_TYPE1:
+                pushDirectory(SonyType1MakernoteDirectory.class);
+                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 12, tiffHeaderOffset);
+                break;
+            case SONY_TYPE1_HEADERLESS:
+                // The IFD begins with the first Makernote byte (no ASCII name). Used in SR2 and ARW images
+                pushDirectory(SonyType1MakernoteDirectory.class);
                 TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
+                break;
+            case SONY_TYPE6:
+                // force MM for this directory
+                reader.setMotorolaByteOrder(true);
+                // skip 12 byte header + 2 for "MM" + 6
+                pushDirectory(SonyType6MakernoteDirectory.class);
+                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 20, tiffHeaderOffset);
+                break;
+            case SIGMA:
+                pushDirectory(SigmaMakernoteDirectory.class);
+                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 10, tiffHeaderOffset);
+                break;
+            case KODAK: {
+                // Makernotes beginning "KDK INFO" are in Motorola byte order, and others in Intel
+                reader.setMotorolaByteOrder(startsWith(prefix, "KDK INFO", false));
+                KodakMakernoteDirectory directory = new KodakMakernoteDirectory();
+                _metadata.addDirectory(directory);
+                processKodakMakernote(directory, makernoteOffset, reader);
+                break;
             }
-        } else if ("SONY CAM".equals(firstEightChars) || "SONY DSC".equals(firstEightChars)) {
-            pushDirectory(SonyType1MakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 12, tiffHeaderOffset);
-        // Do this check LAST after most other Sony checks
-        } else if (cameraMake != null && cameraMake.startsWith("SONY") &&
-                !Arrays.equals(reader.getBytes(makernoteOffset, 2), new byte[]{ 0x01, 0x00 }) ) {
-            // The IFD begins with the first Makernote byte (no ASCII name). Used in SR2 and ARW images
-            pushDirectory(SonyType1MakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
-        } else if ("SEMC MS\u0000\u0000\u0000\u0000\u0000".equals(firstTwelveChars)) {
-            // force MM for this directory
-            reader.setMotorolaByteOrder(true);
-            // skip 12 byte header + 2 for "MM" + 6
-            pushDirectory(SonyType6MakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 20, tiffHeaderOffset);
-        } else if ("SIGMA\u0000\u0000\u0000".equals(firstEightChars) || "FOVEON\u0000\u0000".equals(firstEightChars)) {
-            pushDirectory(SigmaMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 10, tiffHeaderOffset);
-        } else if ("KDK".equals(firstThreeChars)) {
-            reader.setMotorolaByteOrder(firstSevenChars.equals("KDK INFO"));
-            KodakMakernoteDirectory directory = new KodakMakernoteDirectory();
-            _metadata.addDirectory(directory);
-            processKodakMakernote(directory, makernoteOffset, reader);
-        } else if ("Canon".equalsIgnoreCase(cameraMake)) {
-            pushDirectory(CanonMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
-        } else if (cameraMake != null && cameraMake.toUpperCase().startsWith("CASIO")) {
-            if ("QVC\u0000\u0000\u0000".equals(firstSixChars)) {
-                pushDirectory(CasioType2MakernoteDirectory.class);
-                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 6, tiffHeaderOffset);
-            } else {
-                pushDirectory(CasioType1MakernoteDirectory.class);
+            case CANON:
+                pushDirectory(CanonMakernoteDirectory.class);
                 TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
+                break;
+            case CASIO:
+                if (startsWith(prefix, "QVC\u0000\u0000\u0000", false)) {
+                    pushDirectory(CasioType2MakernoteDirectory.class);
+                    TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 6, tiffHeaderOffset);
+                } else {
+                    pushDirectory(CasioType1MakernoteDirectory.class);
+                    TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
+                }
+                break;
+            case FUJIFILM: {
+                // Note that this also applies to certain Leica cameras, such as the Digilux-4.3
+                reader.setMotorolaByteOrder(false);
+                // the 4 bytes after "FUJIFILM" in the makernote point to the start of the makernote
+                // IFD, though the offset is relative to the start of the makernote, not the TIFF
+                // header (like everywhere else)
+                long ifdStart = makernoteOffset + reader.getInt32(makernoteOffset + 8);
+                pushDirectory(FujifilmMakernoteDirectory.class);
+                TiffReader.processIfd(this, reader, processedIfdOffsets, ifdStart, makernoteOffset);
+                break;
             }
-        } else if ("FUJIFILM".equals(firstEightChars) || "Fujifilm".equalsIgnoreCase(cameraMake)) {
-            // Note that this also applies to certain Leica cameras, such as the Digilux-4.3
-            reader.setMotorolaByteOrder(false);
-            // the 4 bytes after "FUJIFILM" in the makernote point to the start of the makernote
-            // IFD, though the offset is relative to the start of the makernote, not the TIFF
-            // header (like everywhere else)
-            int ifdStart = makernoteOffset + reader.getInt32(makernoteOffset + 8);
-            pushDirectory(FujifilmMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, ifdStart, makernoteOffset);
-        } else if ("KYOCERA".equals(firstSevenChars)) {
-            // http://www.ozhiker.com/electronics/pjmt/jpeg_info/kyocera_mn.html
-            pushDirectory(KyoceraMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 22, tiffHeaderOffset);
-        } else if ("LEICA".equals(firstFiveChars)) {
-            reader.setMotorolaByteOrder(false);
-
-            // used by the X1/X2/X VARIO/T
-            // (X1 starts with "LEICA\0\x01\0", Make is "LEICA CAMERA AG")
-            // (X2 starts with "LEICA\0\x05\0", Make is "LEICA CAMERA AG")
-            // (X VARIO starts with "LEICA\0\x04\0", Make is "LEICA CAMERA AG")
-            // (T (Typ 701) starts with "LEICA\0\0x6", Make is "LEICA CAMERA AG")
-            // (X (Typ 113) starts with "LEICA\0\0x7", Make is "LEICA CAMERA AG")
-
-            if ("LEICA\0\u0001\0".equals(firstEightChars) ||
-                "LEICA\0\u0004\0".equals(firstEightChars) ||
-                "LEICA\0\u0005\0".equals(firstEightChars) ||
-                "LEICA\0\u0006\0".equals(firstEightChars) ||
-                "LEICA\0\u0007\0".equals(firstEightChars))
-            {
-                pushDirectory(LeicaType5MakernoteDirectory.class);
-                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, makernoteOffset);
-            } else if ("Leica Camera AG".equals(cameraMake)) {
-                pushDirectory(LeicaMakernoteDirectory.class);
-                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, tiffHeaderOffset);
-            } else if ("LEICA".equals(cameraMake)) {
-                // Some Leica cameras use Panasonic makernote tags
+            case KYOCERA:
+                // http://www.ozhiker.com/electronics/pjmt/jpeg_info/kyocera_mn.html
+                pushDirectory(KyoceraMakernoteDirectory.class);
+                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 22, tiffHeaderOffset);
+                break;
+            case LEICA:
+                reader.setMotorolaByteOrder(false);
+
+                // used by the X1/X2/X VARIO/T
+                // (X1 starts with "LEICA\0\x01\0", Make is "LEICA CAMERA AG")
+                // (X2 starts with "LEICA\0\x05\0", Make is "LEICA CAMERA AG")
+                // (X VARIO starts with "LEICA\0\x04\0", Make is "LEICA CAMERA AG")
+                // (T (Typ 701) starts with "LEICA\0\0x6", Make is "LEICA CAMERA AG")
+                // (X (Typ 113) starts with "LEICA\0\0x7", Make is "LEICA CAMERA AG")
+
+                if (startsWith(prefix, "LEICA\0\u0001\0", false) ||
+                    startsWith(prefix, "LEICA\0\u0004\0", false) ||
+                    startsWith(prefix, "LEICA\0\u0005\0", false) ||
+                    startsWith(prefix, "LEICA\0\u0006\0", false) ||
+                    startsWith(prefix, "LEICA\0\u0007\0", false))
+                {
+                    pushDirectory(LeicaType5MakernoteDirectory.class);
+                    TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, makernoteOffset);
+                } else if ("Leica Camera AG".equals(cameraMake)) {
+                    pushDirectory(LeicaMakernoteDirectory.class);
+                    TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, tiffHeaderOffset);
+                } else if ("LEICA".equals(cameraMake)) {
+                    // Some Leica cameras use Panasonic makernote tags
+                    pushDirectory(PanasonicMakernoteDirectory.class);
+                    TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, tiffHeaderOffset);
+                } else {
+                    return false;
+                }
+                break;
+            case PANASONIC:
+                // NON-Standard TIFF IFD Data using Panasonic Tags. There is no Next-IFD pointer after the IFD
+                // Offsets are relative to the start of the TIFF header at the beginning of the EXIF segment
+                // more information here: http://www.ozhiker.com/electronics/pjmt/jpeg_info/panasonic_mn.html
                 pushDirectory(PanasonicMakernoteDirectory.class);
-                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, tiffHeaderOffset);
-            } else {
-                return false;
-            }
-        } else if ("Panasonic\u0000\u0000\u0000".equals(reader.getString(makernoteOffset, 12, Charsets.UTF_8))) {
-            // NON-Standard TIFF IFD Data using Panasonic Tags. There is no Next-IFD pointer after the IFD
-            // Offsets are relative to the start of the TIFF header at the beginning of the EXIF segment
-            // more information here: http://www.ozhiker.com/electronics/pjmt/jpeg_info/panasonic_mn.html
-            pushDirectory(PanasonicMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 12, tiffHeaderOffset);
-        } else if ("AOC\u0000".equals(firstFourChars)) {
-            // NON-Standard TIFF IFD Data using Casio Type 2 Tags
-            // IFD has no Next-IFD pointer at end of IFD, and
-            // Offsets are relative to the start of the current IFD tag, not the TIFF header
-            // Observed for:
-            // - Pentax ist D
-            pushDirectory(CasioType2MakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 6, makernoteOffset);
-        } else if (cameraMake != null && (cameraMake.toUpperCase().startsWith("PENTAX") || cameraMake.toUpperCase().startsWith("ASAHI"))) {
-            // NON-Standard TIFF IFD Data using Pentax Tags
-            // IFD has no Next-IFD pointer at end of IFD, and
-            // Offsets are relative to the start of the current IFD tag, not the TIFF header
-            // Observed for:
-            // - PENTAX Optio 330
-            // - PENTAX Optio 430
-            pushDirectory(PentaxMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset, makernoteOffset);
-//        } else if ("KC".equals(firstTwoChars) || "MINOL".equals(firstFiveChars) || "MLY".equals(firstThreeChars) || "+M+M+M+M".equals(firstEightChars)) {
-//            // This Konica data is not understood.  Header identified in accordance with information at this site:
-//            // http://www.ozhiker.com/electronics/pjmt/jpeg_info/minolta_mn.html
-//            // TODO add support for minolta/konica cameras
-//            exifDirectory.addError("Unsupported Konica/Minolta data ignored.");
-        } else if ("SANYO\0\1\0".equals(firstEightChars)) {
-            pushDirectory(SanyoMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, makernoteOffset);
-        } else if (cameraMake != null && cameraMake.toLowerCase().startsWith("ricoh")) {
-            if (firstTwoChars.equals("Rv") || firstThreeChars.equals("Rev")) {
-                // This is a textual format, where the makernote bytes look like:
-                //   Rv0103;Rg1C;Bg18;Ll0;Ld0;Aj0000;Bn0473800;Fp2E00:������������������������������
-                //   Rv0103;Rg1C;Bg18;Ll0;Ld0;Aj0000;Bn0473800;Fp2D05:������������������������������
-                //   Rv0207;Sf6C84;Rg76;Bg60;Gg42;Ll0;Ld0;Aj0004;Bn0B02900;Fp10B8;Md6700;Ln116900086D27;Sv263:0000000000000000000000��
-                // This format is currently unsupported
-                return false;
-            } else if (firstFiveChars.equalsIgnoreCase("Ricoh")) {
+                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 12, tiffHeaderOffset);
+                break;
+            case CASIO_TYPE2_AOC:
+                // NON-Standard TIFF IFD Data using Casio Type 2 Tags
+                // IFD has no Next-IFD pointer at end of IFD, and
+                // Offsets are relative to the start of the current IFD tag, not the TIFF header
+                // Observed for:
+                // - Pentax ist D
+                pushDirectory(CasioType2MakernoteDirectory.class);
+                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 6, makernoteOffset);
+                break;
+            case PENTAX:
+                // NON-Standard TIFF IFD Data using Pentax Tags
+                // IFD has no Next-IFD pointer at end of IFD, and
+                // Offsets are relative to the start of the current IFD tag, not the TIFF header
+                // Observed for:
+                // - PENTAX Optio 330
+                // - PENTAX Optio 430
+                pushDirectory(PentaxMakernoteDirectory.class);
+                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset, makernoteOffset);
+                break;
+//            case KONICA_MINOLTA:
+//                // This Konica data is not understood.  Header identified in accordance with information at this site:
+//                // http://www.ozhiker.com/electronics/pjmt/jpeg_info/minolta_mn.html
+//                // TODO add support for minolta/konica cameras, with signatures "KC", "MINOL", "MLY" and "+M+M+M+M"
+//                exifDirectory.addError("Unsupported Konica/Minolta data ignored.");
+            case SANYO:
+                pushDirectory(SanyoMakernoteDirectory.class);
+                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, makernoteOffset);
+                break;
+            case RICOH:
+                if (startsWith(prefix, "Rv", false) || startsWith(prefix, "Rev", false)) {
+                    // This is a textual format, where the makernote bytes look like:
+                    //   Rv0103;Rg1C;Bg18;Ll0;Ld0;Aj0000;Bn0473800;Fp2E00:������������������������������
+                    //   Rv0103;Rg1C;Bg18;Ll0;Ld0;Aj0000;Bn0473800;Fp2D05:������������������������������
+                    //   Rv0207;Sf6C84;Rg76;Bg60;Gg42;Ll0;Ld0;Aj0004;Bn0B02900;Fp10B8;Md6700;Ln116900086D27;Sv263:0000000000000000000000��
+                    // This format is currently unsupported
+                    return false;
+                } else if (startsWith(prefix, "Ricoh", true)) {
+                    // Always in Motorola byte order
+                    reader.setMotorolaByteOrder(true);
+                    pushDirectory(RicohMakernoteDirectory.class);
+                    TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, makernoteOffset);
+                }
+                break;
+            case APPLE:
                 // Always in Motorola byte order
                 reader.setMotorolaByteOrder(true);
-                pushDirectory(RicohMakernoteDirectory.class);
-                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 8, makernoteOffset);
+                pushDirectory(AppleMakernoteDirectory.class);
+                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 14, makernoteOffset);
+                break;
+            case RECONYX_HYPERFIRE: {
+                ReconyxHyperFireMakernoteDirectory directory = new ReconyxHyperFireMakernoteDirectory();
+                _metadata.addDirectory(directory);
+                processReconyxHyperFireMakernote(directory, makernoteOffset, reader);
+                break;
             }
-        } else if (firstTenChars.equals("Apple iOS\0")) {
-            // Always in Motorola byte order
-            boolean orderBefore = reader.isMotorolaByteOrder();
-            reader.setMotorolaByteOrder(true);
-            pushDirectory(AppleMakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset + 14, makernoteOffset);
-            reader.setMotorolaByteOrder(orderBefore);
-        } else if (reader.getUInt16(makernoteOffset) == ReconyxHyperFireMakernoteDirectory.MAKERNOTE_VERSION) {
-            ReconyxHyperFireMakernoteDirectory directory = new ReconyxHyperFireMakernoteDirectory();
-            _metadata.addDirectory(directory);
-            processReconyxHyperFireMakernote(directory, makernoteOffset, reader);
-        } else if (firstNineChars.equalsIgnoreCase("RECONYXUF")) {
-            ReconyxUltraFireMakernoteDirectory directory = new ReconyxUltraFireMakernoteDirectory();
-            _metadata.addDirectory(directory);
-            processReconyxUltraFireMakernote(directory, makernoteOffset, reader);
-        } else if ("SAMSUNG".equals(cameraMake)) {
-            // Only handles Type2 notes correctly. Others aren't implemented, and it's complex to determine which ones to use
-            pushDirectory(SamsungType2MakernoteDirectory.class);
-            TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
-        } else {
-            // The makernote is not comprehended by this library.
-            // If you are reading this and believe a particular camera's image should be processed, get in touch.
-            return false;
+            case RECONYX_ULTRAFIRE: {
+                ReconyxUltraFireMakernoteDirectory directory = new ReconyxUltraFireMakernoteDirectory();
+                _metadata.addDirectory(directory);
+                processReconyxUltraFireMakernote(directory, makernoteOffset, reader);
+                break;
+            }
+            case SAMSUNG:
+                // Only handles Type2 notes correctly. Others aren't implemented, and it's complex to determine which ones to use
+                pushDirectory(SamsungType2MakernoteDirectory.class);
+                TiffReader.processIfd(this, reader, processedIfdOffsets, makernoteOffset, tiffHeaderOffset);
+                break;
         }
 
         reader.setMotorolaByteOrder(byteOrderBefore);
         return true;
     }
 
+    /**
+     * Identifies makernotes by camera make, for formats that either lack a signature or are identified by make first.
+     * <code>prefix</code> holds the first bytes of the makernote.
+     */
+    @Nullable
+    private static MakernoteType getMakernoteTypeByMake(@Nullable final String cameraMake, @NotNull final byte[] prefix)
+    {
+        if (cameraMake == null)
+            return null;
+
+        if (startsWithIgnoreCase(cameraMake, "MINOLTA"))
+            return MakernoteType.OLYMPUS_HEADERLESS;
+        if (startsWithIgnoreCase(cameraMake.trim(), "NIKON"))
+            return MakernoteType.NIKON;
+        if (cameraMake.startsWith("SONY") && !startsWith(prefix, "\u0001\u0000", false))
+            return MakernoteType.SONY_TYPE1_HEADERLESS;
+        if (cameraMake.equalsIgnoreCase("Canon"))
+            return MakernoteType.CANON;
+        if (startsWithIgnoreCase(cameraMake, "CASIO"))
+            return MakernoteType.CASIO;
+        if (cameraMake.equalsIgnoreCase("Fujifilm"))
+            return MakernoteType.FUJIFILM;
+        if (startsWithIgnoreCase(cameraMake, "PENTAX") || startsWithIgnoreCase(cameraMake, "ASAHI"))
+            return MakernoteType.PENTAX;
+        if (startsWithIgnoreCase(cameraMake, "RICOH"))
+            return MakernoteType.RICOH;
+        if (cameraMake.equals("SAMSUNG"))
+            return MakernoteType.SAMSUNG;
+        return null;
+    }
+
+    private static boolean startsWithIgnoreCase(@NotNull final String s, @NotNull final String prefix)
+    {
+        return s.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    /** Indicates whether <code>bytes</code> starts with the ASCII characters of <code>prefix</code>. */
+    private static boolean startsWith(@NotNull final byte[] bytes, @NotNull final String prefix, final boolean ignoreCase)
+    {
+        if (bytes.length < prefix.length())
+            return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = (char)(bytes[i] & 0xFF);
+            char p = prefix.charAt(i);
+            if (c != p && !(ignoreCase && Character.toUpperCase(c) == Character.toUpperCase(p)))
+                return false;
+        }
+        return true;
+    }
+
     private static Boolean HandlePrintIM(@NotNull final Directory directory, final int tagId)
     {
         if (tagId == ExifDirectoryBase.TAG_PRINT_IMAGE_MATCHING_INFO)
@@ -613,7 +767,7 @@ public class ExifTiffHandler extends DirectoryTiffHandler
     /// http://www.sno.phy.queensu.ca/~phil/exiftool/
     /// lib\Image\ExifTool\PrintIM.pm
     /// </remarks>
-    private static void ProcessPrintIM(@NotNull final PrintIMDirectory directory, final int tagValueOffset, @NotNull final RandomAccessReader reader, final int byteCount) throws IOException
+    private static void ProcessPrintIM(@NotNull final PrintIMDirectory directory, final long tagValueOffset, @NotNull final RandomAccessReader reader, final int byteCount) throws IOException
     {
         Boolean resetByteOrder = null;
 
@@ -656,7 +810,7 @@ public class ExifTiffHandler extends DirectoryTiffHandler
 
         for (int n = 0; n < num; n++)
         {
-            int pos = tagValueOffset + 16 + n * 6;
+            long pos = tagValueOffset + 16 + n * 6;
             int tag = reader.getUInt16(pos);
             long val = reader.getUInt32(pos + 2);
 
@@ -667,10 +821,10 @@ public class ExifTiffHandler extends DirectoryTiffHandler
             reader.setMotorolaByteOrder(resetByteOrder);
     }
 
-    private static void processKodakMakernote(@NotNull final KodakMakernoteDirectory directory, final int tagValueOffset, @NotNull final RandomAccessReader reader)
+    private static void processKodakMakernote(@NotNull final KodakMakernoteDirectory directory, final long tagValueOffset, @NotNull final RandomAccessReader reader)
     {
         // Kodak's makernote is not in IFD format. It has values at fixed offsets.
-        int dataOffset = tagValueOffset + 8;
+        long dataOffset = tagValueOffset + 8;
         try {
             directory.setStringValue(KodakMakernoteDirectory.TAG_KODAK_MODEL, reader.getStringValue(dataOffset, 8, Charsets.UTF_8));
             directory.setInt(KodakMakernoteDirectory.TAG_QUALITY, reader.getUInt8(dataOffset + 9));
@@ -703,7 +857,7 @@ public class ExifTiffHandler extends DirectoryTiffHandler
         }
     }
 
-    private static void processReconyxHyperFireMakernote(@NotNull final ReconyxHyperFireMakernoteDirectory directory, final int makernoteOffset, @NotNull final RandomAccessReader reader) throws IOException
+    private static void processReconyxHyperFireMakernote(@NotNull final ReconyxHyperFireMakernoteDirectory directory, final long makernoteOffset, @NotNull final RandomAccessReader reader) throws IOException
     {
         directory.setObject(ReconyxHyperFireMakernoteDirectory.TAG_MAKERNOTE_VERSION, reader.getUInt16(makernoteOffset));
 
@@ -780,7 +934,7 @@ public class ExifTiffHandler extends DirectoryTiffHandler
         directory.setString(ReconyxHyperFireMakernoteDirectory.TAG_USER_LABEL, reader.getNullTerminatedString(makernoteOffset + ReconyxHyperFireMakernoteDirectory.TAG_USER_LABEL, 44, Charsets.UTF_8));
     }
 
-    private static void processReconyxUltraFireMakernote(@NotNull final ReconyxUltraFireMakernoteDirectory directory, final int makernoteOffset, @NotNull final RandomAccessReader reader) throws IOException
+    private static void processReconyxUltraFireMakernote(@NotNull final ReconyxUltraFireMakernoteDirectory directory, final long makernoteOffset, @NotNull final RandomAccessReader reader) throws IOException
     {
         directory.setString(ReconyxUltraFireMakernoteDirectory.TAG_LABEL, reader.getString(makernoteOffset, 9, Charsets.UTF_8));
         /*uint makernoteID = ByteConvert.FromBigEndianToNative(reader.GetUInt32(makernoteOffset + ReconyxUltraFireMakernoteDirectory.TagMakernoteID));
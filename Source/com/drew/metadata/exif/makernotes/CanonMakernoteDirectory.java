@@ -686,6 +686,13 @@ public class CanonMakernoteDirectory extends Directory
         return _tagNameMap;
     }
 
+    @Override
+    public boolean isDeferredValueSupported()
+    {
+        // setObjectArray splits some arrays into several tags
+        return false;
+    }
+
     @Override
     public void setObjectArray(int tagType, @NotNull Object array)
     {
@@ -464,6 +464,13 @@ public class OlympusMakernoteDirectory extends Directory
         return "Olympus Makernote";
     }
 
+    @Override
+    public boolean isDeferredValueSupported()
+    {
+        // setByteArray splits camera settings into several tags
+        return false;
+    }
+
     @Override
     public void setByteArray(int tagType, @NotNull byte[] bytes)
     {
@@ -44,6 +44,8 @@ public class FileMetadataDescriptor extends TagDescriptor<FileMetadataDirectory>
         switch (tagType) {
             case TAG_FILE_SIZE:
                 return getFileSizeDescription();
+            case TAG_CONTENT_DIGEST:
+                return getContentDigestDescription();
             default:
                 return super.getDescription(tagType);
         }
@@ -59,5 +61,19 @@ public class FileMetadataDescriptor extends TagDescriptor<FileMetadataDirectory>
 
         return Long.toString(size) + " bytes";
     }
+
+    @Nullable
+    private String getContentDigestDescription()
+    {
+        byte[] digest = _directory.getByteArray(TAG_CONTENT_DIGEST);
+
+        if (digest == null)
+            return null;
+
+        StringBuilder description = new StringBuilder(digest.length * 2);
+        for (byte b : digest)
+            description.append(String.format("%02x", b & 0xFF));
+        return description.toString();
+    }
 }
 
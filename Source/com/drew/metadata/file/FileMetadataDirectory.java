@@ -34,6 +34,10 @@ public class FileMetadataDirectory extends Directory
     public static final int TAG_FILE_NAME = 1;
     public static final int TAG_FILE_SIZE = 2;
     public static final int TAG_FILE_MODIFIED_DATE = 3;
+    /** A digest of the file's entire content, if requested when reading. */
+    public static final int TAG_CONTENT_DIGEST = 4;
+    /** The name of the algorithm of {@link #TAG_CONTENT_DIGEST}, such as <code>SHA-256</code>. */
+    public static final int TAG_CONTENT_DIGEST_ALGORITHM = 5;
 
     @NotNull
     protected static final HashMap<Integer, String> _tagNameMap = new HashMap<Integer, String>();
@@ -42,6 +46,8 @@ public class FileMetadataDirectory extends Directory
         _tagNameMap.put(TAG_FILE_NAME, "File Name");
         _tagNameMap.put(TAG_FILE_SIZE, "File Size");
         _tagNameMap.put(TAG_FILE_MODIFIED_DATE, "File Modified Date");
+        _tagNameMap.put(TAG_CONTENT_DIGEST, "Content Digest");
+        _tagNameMap.put(TAG_CONTENT_DIGEST_ALGORITHM, "Content Digest Algorithm");
     }
 
     public FileMetadataDirectory()
@@ -374,12 +374,14 @@ public class GifReader
     private static byte[] gatherBytes(SequentialReader reader, int firstLength) throws IOException
     {
         ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] block = new byte[Math.max(firstLength, 255)];
 
         int length = firstLength;
 
         while (length > 0)
         {
-            buffer.write(reader.getBytes(length), 0, length);
+            reader.getBytes(block, 0, length);
+            buffer.write(block, 0, length);
 
             length = reader.getByte() & 0xff;
         }
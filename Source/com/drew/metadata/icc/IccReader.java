@@ -20,9 +20,12 @@
  */
 package com.drew.metadata.icc;
 
-import com.drew.imaging.jpeg.JpegSegmentMetadataReader;
+import com.drew.imaging.jpeg.JpegSegmentData;
+import com.drew.imaging.jpeg.JpegSegmentDirectoryReader;
+import com.drew.imaging.jpeg.JpegSegmentSliceMetadataReader;
 import com.drew.imaging.jpeg.JpegSegmentType;
 import com.drew.lang.ByteArrayReader;
+import com.drew.lang.ByteBufferReader;
 import com.drew.lang.DateUtil;
 import com.drew.lang.RandomAccessReader;
 import com.drew.lang.annotations.NotNull;
@@ -32,7 +35,10 @@ import com.drew.metadata.Metadata;
 import com.drew.metadata.MetadataReader;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 /**
  * Reads an ICC profile.
@@ -47,7 +53,7 @@ import java.util.Collections;
  * @author Yuri Binev
  * @author Drew Noakes https://drewnoakes.com
  */
-public class IccReader implements JpegSegmentMetadataReader, MetadataReader
+public class IccReader implements JpegSegmentSliceMetadataReader, JpegSegmentDirectoryReader, MetadataReader
 {
     public static final String JPEG_SEGMENT_PREAMBLE = "ICC_PROFILE";
 
@@ -57,36 +63,58 @@ public class IccReader implements JpegSegmentMetadataReader, MetadataReader
         return Collections.singletonList(JpegSegmentType.APP2);
     }
 
+    @NotNull
+    public Iterable<Class<? extends Directory>> getDirectoryTypes()
+    {
+        return Collections.<Class<? extends Directory>>singletonList(IccDirectory.class);
+    }
+
     public void readJpegSegments(@NotNull Iterable<byte[]> segments, @NotNull Metadata metadata, @NotNull JpegSegmentType segmentType)
+    {
+        List<ByteBuffer> slices = new ArrayList<ByteBuffer>();
+        for (byte[] segmentBytes : segments)
+            slices.add(ByteBuffer.wrap(segmentBytes));
+        readJpegSegmentSlices(slices, metadata, segmentType);
+    }
+
+    public void readJpegSegmentSlices(@NotNull Iterable<ByteBuffer> segments, @NotNull Metadata metadata, @NotNull JpegSegmentType segmentType)
     {
         final int preambleLength = JPEG_SEGMENT_PREAMBLE.length();
 
-        // ICC data can be spread across multiple JPEG segments.
-        // We concat them together in this buffer for later processing.
-        byte[] buffer = null;
+        // ICC data can be spread across multiple JPEG segments, each of which has 14 bytes of header.
+        List<ByteBuffer> profileSlices = new ArrayList<ByteBuffer>();
+        int profileLength = 0;
 
-        for (byte[] segmentBytes : segments) {
+        for (ByteBuffer segment : segments) {
             // Skip any segments that do not contain the required preamble
-            if (segmentBytes.length < preambleLength || !JPEG_SEGMENT_PREAMBLE.equalsIgnoreCase(new String(segmentBytes, 0, preambleLength)))
+            if (!JPEG_SEGMENT_PREAMBLE.equalsIgnoreCase(JpegSegmentData.getPreamble(segment, preambleLength)) || segment.remaining() < 14)
                 continue;
 
             // NOTE we ignore three bytes here -- are they useful for anything?
 
-            // Grow the buffer
-            if (buffer == null) {
-                buffer = new byte[segmentBytes.length - 14];
-                // skip the first 14 bytes
-                System.arraycopy(segmentBytes, 14, buffer, 0, segmentBytes.length - 14);
-            } else {
-                byte[] newBuffer = new byte[buffer.length + segmentBytes.length - 14];
-                System.arraycopy(buffer, 0, newBuffer, 0, buffer.length);
-                System.arraycopy(segmentBytes, 14, newBuffer, buffer.length, segmentBytes.length - 14);
-                buffer = newBuffer;
-            }
+            // skip the first 14 bytes
+            ByteBuffer profileSlice = segment.duplicate();
+            profileSlice.position(profileSlice.position() + 14);
+            profileSlices.add(profileSlice);
+            profileLength += profileSlice.remaining();
         }
 
-        if (buffer != null)
+        if (profileSlices.isEmpty())
+            return;
+
+        // A profile in a single segment is read in place. Otherwise, we concat the segments together.
+        if (profileSlices.size() == 1) {
+            extract(new ByteBufferReader(profileSlices.get(0)), metadata);
+        } else {
+            byte[] buffer = new byte[profileLength];
+            int offset = 0;
+            for (ByteBuffer profileSlice : profileSlices) {
+                int length = profileSlice.remaining();
+                profileSlice.get(buffer, offset, length);
+                offset += length;
+            }
             extract(new ByteArrayReader(buffer), metadata);
+        }
     }
 
     public void extract(@NotNull final RandomAccessReader reader, @NotNull final Metadata metadata)
@@ -20,7 +20,7 @@
  */
 package com.drew.metadata.iptc;
 
-import com.drew.imaging.jpeg.JpegSegmentMetadataReader;
+import com.drew.imaging.jpeg.JpegSegmentDirectoryReader;
 import com.drew.imaging.jpeg.JpegSegmentType;
 import com.drew.lang.SequentialByteArrayReader;
 import com.drew.lang.SequentialReader;
@@ -41,7 +41,7 @@ import java.util.Collections;
  *
  * @author Drew Noakes https://drewnoakes.com
  */
-public class IptcReader implements JpegSegmentMetadataReader
+public class IptcReader implements JpegSegmentDirectoryReader
 {
     // TODO consider breaking the IPTC section up into multiple directories and providing segregation of each IPTC directory
 /*
@@ -65,6 +65,12 @@ public class IptcReader implements JpegSegmentMetadataReader
         return Collections.singletonList(JpegSegmentType.APPD);
     }
 
+    @NotNull
+    public Iterable<Class<? extends Directory>> getDirectoryTypes()
+    {
+        return Collections.<Class<? extends Directory>>singletonList(IptcDirectory.class);
+    }
+
     public void readJpegSegments(@NotNull Iterable<byte[]> segments, @NotNull Metadata metadata, @NotNull JpegSegmentType segmentType)
     {
         for (byte[] segmentBytes : segments) {
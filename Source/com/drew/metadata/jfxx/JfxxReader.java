@@ -20,11 +20,12 @@
  */
 package com.drew.metadata.jfxx;
 
-import com.drew.imaging.jpeg.JpegSegmentMetadataReader;
+import com.drew.imaging.jpeg.JpegSegmentDirectoryReader;
 import com.drew.imaging.jpeg.JpegSegmentType;
 import com.drew.lang.ByteArrayReader;
 import com.drew.lang.RandomAccessReader;
 import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Directory;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.MetadataReader;
 
@@ -41,7 +42,7 @@ import java.util.Collections;
  *
  * @author Drew Noakes
  */
-public class JfxxReader implements JpegSegmentMetadataReader, MetadataReader
+public class JfxxReader implements JpegSegmentDirectoryReader, MetadataReader
 {
     public static final String PREAMBLE = "JFXX";
 
@@ -51,6 +52,12 @@ public class JfxxReader implements JpegSegmentMetadataReader, MetadataReader
         return Collections.singletonList(JpegSegmentType.APP0);
     }
 
+    @NotNull
+    public Iterable<Class<? extends Directory>> getDirectoryTypes()
+    {
+        return Collections.<Class<? extends Directory>>singletonList(JfxxDirectory.class);
+    }
+
     public void readJpegSegments(@NotNull Iterable<byte[]> segments, @NotNull Metadata metadata, @NotNull JpegSegmentType segmentType)
     {
         for (byte[] segmentBytes : segments) {
@@ -20,9 +20,10 @@
  */
 package com.drew.metadata.jpeg;
 
-import com.drew.imaging.jpeg.JpegSegmentMetadataReader;
+import com.drew.imaging.jpeg.JpegSegmentDirectoryReader;
 import com.drew.imaging.jpeg.JpegSegmentType;
 import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Directory;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.StringValue;
 
@@ -34,7 +35,7 @@ import java.util.Collections;
  *
  * @author Drew Noakes https://drewnoakes.com
  */
-public class JpegCommentReader implements JpegSegmentMetadataReader
+public class JpegCommentReader implements JpegSegmentDirectoryReader
 {
     @NotNull
     public Iterable<JpegSegmentType> getSegmentTypes()
@@ -42,6 +43,12 @@ public class JpegCommentReader implements JpegSegmentMetadataReader
         return Collections.singletonList(JpegSegmentType.COM);
     }
 
+    @NotNull
+    public Iterable<Class<? extends Directory>> getDirectoryTypes()
+    {
+        return Collections.<Class<? extends Directory>>singletonList(JpegCommentDirectory.class);
+    }
+
     public void readJpegSegments(@NotNull Iterable<byte[]> segments, @NotNull Metadata metadata, @NotNull JpegSegmentType segmentType)
     {
         for (byte[] segmentBytes : segments) {
@@ -20,11 +20,12 @@
  */
 package com.drew.metadata.jpeg;
 
-import com.drew.imaging.jpeg.JpegSegmentMetadataReader;
+import com.drew.imaging.jpeg.JpegSegmentDirectoryReader;
 import com.drew.imaging.jpeg.JpegSegmentType;
 import com.drew.lang.SequentialByteArrayReader;
 import com.drew.lang.SequentialReader;
 import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Directory;
 import com.drew.metadata.ErrorDirectory;
 import com.drew.metadata.Metadata;
 
@@ -37,7 +38,7 @@ import java.util.Collections;
  *
  * @author Nadahar
  */
-public class JpegDnlReader implements JpegSegmentMetadataReader
+public class JpegDnlReader implements JpegSegmentDirectoryReader
 {
     @NotNull
     public Iterable<JpegSegmentType> getSegmentTypes()
@@ -45,6 +46,12 @@ public class JpegDnlReader implements JpegSegmentMetadataReader
         return Collections.singletonList(JpegSegmentType.DNL);
     }
 
+    @NotNull
+    public Iterable<Class<? extends Directory>> getDirectoryTypes()
+    {
+        return Arrays.<Class<? extends Directory>>asList(JpegDirectory.class, ErrorDirectory.class);
+    }
+
     public void readJpegSegments(@NotNull Iterable<byte[]> segments, @NotNull Metadata metadata, @NotNull JpegSegmentType segmentType)
     {
         for (byte[] segmentBytes : segments) {
@@ -20,15 +20,17 @@
  */
 package com.drew.metadata.jpeg;
 
-import com.drew.imaging.jpeg.JpegSegmentMetadataReader;
+import com.drew.imaging.jpeg.JpegSegmentDirectoryReader;
 import com.drew.imaging.jpeg.JpegSegmentType;
 import com.drew.lang.SequentialByteArrayReader;
 import com.drew.lang.SequentialReader;
 import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Directory;
 import com.drew.metadata.Metadata;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
 
 /**
  * Decodes JPEG SOFn data, populating a {@link Metadata} object with tag values in a {@link JpegDirectory}.
@@ -36,7 +38,7 @@ import java.util.Arrays;
  * @author Drew Noakes https://drewnoakes.com
  * @author Darrell Silver http://www.darrellsilver.com
  */
-public class JpegReader implements JpegSegmentMetadataReader
+public class JpegReader implements JpegSegmentDirectoryReader
 {
     @NotNull
     public Iterable<JpegSegmentType> getSegmentTypes()
@@ -62,6 +64,12 @@ public class JpegReader implements JpegSegmentMetadataReader
         );
     }
 
+    @NotNull
+    public Iterable<Class<? extends Directory>> getDirectoryTypes()
+    {
+        return Collections.<Class<? extends Directory>>singletonList(JpegDirectory.class);
+    }
+
     public void readJpegSegments(@NotNull Iterable<byte[]> segments, @NotNull Metadata metadata, @NotNull JpegSegmentType segmentType)
     {
         for (byte[] segmentBytes : segments) {
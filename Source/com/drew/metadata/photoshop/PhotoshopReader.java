@@ -21,19 +21,25 @@
 package com.drew.metadata.photoshop;
 
 import com.drew.imaging.ImageProcessingException;
-import com.drew.imaging.jpeg.JpegSegmentMetadataReader;
+import com.drew.imaging.jpeg.JpegSegmentDirectoryReader;
 import com.drew.imaging.jpeg.JpegSegmentType;
 import com.drew.lang.ByteArrayReader;
 import com.drew.lang.SequentialByteArrayReader;
 import com.drew.lang.SequentialReader;
 import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Directory;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.exif.ExifReader;
+import com.drew.metadata.icc.IccDirectory;
 import com.drew.metadata.icc.IccReader;
+import com.drew.metadata.iptc.IptcDirectory;
 import com.drew.metadata.iptc.IptcReader;
+import com.drew.metadata.xmp.XmpDirectory;
 import com.drew.metadata.xmp.XmpReader;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 /**
  * Reads metadata created by Photoshop and stored in the APPD segment of JPEG files.
@@ -43,17 +49,38 @@ import java.util.Collections;
  * @author Yuri Binev
  * @author Drew Noakes https://drewnoakes.com
  */
-public class PhotoshopReader implements JpegSegmentMetadataReader
+public class PhotoshopReader implements JpegSegmentDirectoryReader
 {
     @NotNull
     private static final String JPEG_SEGMENT_PREAMBLE = "Photoshop 3.0";
 
+    /** Photoshop data may embed IPTC, ICC, Exif and XMP data, which are read into their own directories. */
+    @NotNull
+    private static final List<Class<? extends Directory>> DIRECTORY_TYPES;
+
+    static
+    {
+        List<Class<? extends Directory>> directoryTypes = new ArrayList<Class<? extends Directory>>();
+        directoryTypes.add(PhotoshopDirectory.class);
+        directoryTypes.add(IptcDirectory.class);
+        directoryTypes.add(IccDirectory.class);
+        directoryTypes.add(XmpDirectory.class);
+        directoryTypes.addAll(ExifReader.DIRECTORY_TYPES);
+        DIRECTORY_TYPES = Collections.unmodifiableList(directoryTypes);
+    }
+
     @NotNull
     public Iterable<JpegSegmentType> getSegmentTypes()
     {
         return Collections.singletonList(JpegSegmentType.APPD);
     }
 
+    @NotNull
+    public Iterable<Class<? extends Directory>> getDirectoryTypes()
+    {
+        return DIRECTORY_TYPES;
+    }
+
     public void readJpegSegments(@NotNull Iterable<byte[]> segments, @NotNull Metadata metadata, @NotNull JpegSegmentType segmentType)
     {
         final int preambleLength = JPEG_SEGMENT_PREAMBLE.length();
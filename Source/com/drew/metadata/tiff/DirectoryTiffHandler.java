@@ -21,10 +21,12 @@
 package com.drew.metadata.tiff;
 
 import com.drew.imaging.tiff.TiffHandler;
+import com.drew.lang.RandomAccessReader;
 import com.drew.lang.Rational;
 import com.drew.lang.annotations.NotNull;
 import com.drew.metadata.Directory;
 import com.drew.metadata.ErrorDirectory;
+import com.drew.metadata.ExtractionSpec;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.StringValue;
 
@@ -42,11 +44,24 @@ public abstract class DirectoryTiffHandler implements TiffHandler
     protected Directory _currentDirectory;
     protected final Metadata _metadata;
 
+    private boolean _deferTagValues;
+
     protected DirectoryTiffHandler(Metadata metadata)
     {
         _metadata = metadata;
     }
 
+    /**
+     * Sets whether tag values are stored as {@link TiffTagValue} references to be decoded when first requested,
+     * rather than being decoded as they're read. This avoids decoding values that are never used, but retains the
+     * reader passed to {@link com.drew.imaging.tiff.TiffReader}, which must therefore remain readable for as long
+     * as the populated directories are in use. Directories that don't support deferred values are populated as usual.
+     */
+    public void setDeferTagValues(boolean deferTagValues)
+    {
+        _deferTagValues = deferTagValues;
+    }
+
     public void endingIFD()
     {
         _currentDirectory = _directoryStack.empty() ? null : _directoryStack.pop();
@@ -77,6 +92,40 @@ public abstract class DirectoryTiffHandler implements TiffHandler
         }
     }
 
+    public boolean shouldReadTag(int tagId)
+    {
+        ExtractionSpec spec = _metadata.getExtractionSpec();
+        return spec == null || _currentDirectory == null || spec.includesTag(_currentDirectory.getClass(), tagId);
+    }
+
+    public boolean trySetDeferred(int tagId, int formatCode, int componentCount, long tagValueOffset, @NotNull RandomAccessReader reader)
+    {
+        if (!_deferTagValues || _currentDirectory == null || !_currentDirectory.isDeferredValueSupported() || !TiffTagValue.canDecode(formatCode, componentCount))
+            return false;
+        _currentDirectory.setDeferredValue(tagId, new TiffTagValue(reader, tagValueOffset, componentCount, formatCode));
+        return true;
+    }
+
+    /**
+     * Indicates whether any tags of directories of <code>directoryType</code> are required by the
+     * {@link ExtractionSpec} of the metadata being populated.
+     */
+    protected boolean isRequired(@NotNull Class<? extends Directory> directoryType)
+    {
+        ExtractionSpec spec = _metadata.getExtractionSpec();
+        return spec == null || spec.includesDirectory(directoryType);
+    }
+
+    /**
+     * Indicates whether any of <code>directoryTypes</code> are required by the {@link ExtractionSpec} of the
+     * metadata being populated.
+     */
+    protected boolean isAnyRequired(@NotNull Iterable<Class<? extends Directory>> directoryTypes)
+    {
+        ExtractionSpec spec = _metadata.getExtractionSpec();
+        return spec == null || spec.includesAnyDirectory(directoryTypes);
+    }
+
     public void warn(@NotNull String message)
     {
         getCurrentOrErrorDirectory().addError(message);
@@ -207,4 +256,24 @@ public abstract class DirectoryTiffHandler implements TiffHandler
         // TODO create and use a proper setter for short[]
         _currentDirectory.setObjectArray(tagId, array);
     }
+
+    public void setInt64s(int tagId, long int64s)
+    {
+        _currentDirectory.setLong(tagId, int64s);
+    }
+
+    public void setInt64sArray(int tagId, @NotNull long[] array)
+    {
+        _currentDirectory.setObjectArray(tagId, array);
+    }
+
+    public void setInt64u(int tagId, long int64u)
+    {
+        _currentDirectory.setLong(tagId, int64u);
+    }
+
+    public void setInt64uArray(int tagId, @NotNull long[] array)
+    {
+        _currentDirectory.setObjectArray(tagId, array);
+    }
 }
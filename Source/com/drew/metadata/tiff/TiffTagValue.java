@@ -0,0 +1,144 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.tiff;
+
+import com.drew.imaging.tiff.TiffDataFormat;
+import com.drew.lang.RandomAccessReader;
+import com.drew.lang.Rational;
+import com.drew.lang.annotations.NotNull;
+import com.drew.lang.annotations.Nullable;
+import com.drew.metadata.DeferredTagValue;
+
+import java.io.IOException;
+
+/**
+ * The location of a TIFF tag's value, decoded on demand into the same object {@link DirectoryTiffHandler} would
+ * have stored had the value been read eagerly.
+ * <p>
+ * The reader is retained until the value is decoded, so must remain readable for as long as the directory holding
+ * this value is in use. As the reader's byte order may have changed since, it is set to that captured at construction
+ * while decoding, under a lock on the reader.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public final class TiffTagValue implements DeferredTagValue
+{
+    @NotNull
+    private final RandomAccessReader _reader;
+    private final boolean _isMotorolaByteOrder;
+    private final long _valueOffset;
+    private final int _componentCount;
+    private final int _formatCode;
+
+    public TiffTagValue(@NotNull RandomAccessReader reader, long valueOffset, int componentCount, int formatCode)
+    {
+        _reader = reader;
+        _isMotorolaByteOrder = reader.isMotorolaByteOrder();
+        _valueOffset = valueOffset;
+        _componentCount = componentCount;
+        _formatCode = formatCode;
+    }
+
+    /**
+     * Indicates whether a value of this format and component count can be deferred, which is when reading it eagerly
+     * would always set a value.
+     */
+    public static boolean canDecode(int formatCode, int componentCount)
+    {
+        switch (formatCode) {
+            case TiffDataFormat.CODE_RATIONAL_S:
+            case TiffDataFormat.CODE_RATIONAL_U:
+                return componentCount > 0;
+            case TiffDataFormat.CODE_UNDEFINED:
+            case TiffDataFormat.CODE_STRING:
+            case TiffDataFormat.CODE_SINGLE:
+            case TiffDataFormat.CODE_DOUBLE:
+            case TiffDataFormat.CODE_INT8_S:
+            case TiffDataFormat.CODE_INT8_U:
+            case TiffDataFormat.CODE_INT16_S:
+            case TiffDataFormat.CODE_INT16_U:
+            case TiffDataFormat.CODE_INT32_S:
+            case TiffDataFormat.CODE_INT32_U:
+            case TiffDataFormat.CODE_INT64_S:
+            case TiffDataFormat.CODE_INT64_U:
+            case TiffDataFormat.CODE_IFD8:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Nullable
+    public Object decode() throws IOException
+    {
+        synchronized (_reader) {
+            boolean wasMotorolaByteOrder = _reader.isMotorolaByteOrder();
+            _reader.setMotorolaByteOrder(_isMotorolaByteOrder);
+            try {
+                return decode(_reader, _valueOffset, _componentCount, _formatCode);
+            } finally {
+                _reader.setMotorolaByteOrder(wasMotorolaByteOrder);
+            }
+        }
+    }
+
+    // This must be kept in step with TiffReader.processTag and the setters of DirectoryTiffHandler
+    @Nullable
+    private static Object decode(@NotNull RandomAccessReader reader, long offset, int count, int formatCode) throws IOException
+    {
+        switch (formatCode) {
+            case TiffDataFormat.CODE_UNDEFINED:
+                return reader.getBytes(offset, count);
+            case TiffDataFormat.CODE_STRING:
+                return reader.getNullTerminatedStringValue(offset, count, null);
+            case TiffDataFormat.CODE_RATIONAL_S:
+                if (count == 1)
+                    return new Rational(reader.getInt32(offset), reader.getInt32(offset + 4));
+                return count > 1 ? reader.getRationalArray(offset, count, true) : null;
+            case TiffDataFormat.CODE_RATIONAL_U:
+                if (count == 1)
+                    return new Rational(reader.getUInt32(offset), reader.getUInt32(offset + 4));
+                return count > 1 ? reader.getRationalArray(offset, count, false) : null;
+            case TiffDataFormat.CODE_SINGLE:
+                return count == 1 ? (Object)reader.getFloat32(offset) : reader.getFloat32Array(offset, count);
+            case TiffDataFormat.CODE_DOUBLE:
+                return count == 1 ? (Object)reader.getDouble64(offset) : reader.getDouble64Array(offset, count);
+            case TiffDataFormat.CODE_INT8_S:
+                return count == 1 ? (Object)(int)reader.getInt8(offset) : reader.getBytes(offset, count);
+            case TiffDataFormat.CODE_INT8_U:
+                return count == 1 ? (Object)(int)reader.getUInt8(offset) : reader.getUInt8Array(offset, count);
+            case TiffDataFormat.CODE_INT16_S:
+                return count == 1 ? (Object)(int)reader.getInt16(offset) : reader.getInt16Array(offset, count);
+            case TiffDataFormat.CODE_INT16_U:
+                return count == 1 ? (Object)reader.getUInt16(offset) : reader.getUInt16Array(offset, count);
+            case TiffDataFormat.CODE_INT32_S:
+                return count == 1 ? (Object)reader.getInt32(offset) : reader.getInt32Array(offset, count);
+            case TiffDataFormat.CODE_INT32_U:
+                return count == 1 ? (Object)reader.getUInt32(offset) : reader.getUInt32Array(offset, count);
+            case TiffDataFormat.CODE_INT64_S:
+            case TiffDataFormat.CODE_INT64_U:
+            case TiffDataFormat.CODE_IFD8:
+                return count == 1 ? (Object)reader.getInt64(offset) : reader.getInt64Array(offset, count);
+            default:
+                return null;
+        }
+    }
+}
@@ -24,21 +24,23 @@ import com.adobe.xmp.XMPException;
 import com.adobe.xmp.XMPIterator;
 import com.adobe.xmp.XMPMeta;
 import com.adobe.xmp.XMPMetaFactory;
-import com.adobe.xmp.impl.ByteBuffer;
 import com.adobe.xmp.properties.XMPPropertyInfo;
-import com.drew.imaging.jpeg.JpegSegmentMetadataReader;
+import com.drew.imaging.jpeg.JpegSegmentData;
+import com.drew.imaging.jpeg.JpegSegmentDirectoryReader;
+import com.drew.imaging.jpeg.JpegSegmentSliceMetadataReader;
 import com.drew.imaging.jpeg.JpegSegmentType;
-import com.drew.lang.SequentialByteArrayReader;
-import com.drew.lang.SequentialReader;
 import com.drew.metadata.Directory;
 import com.drew.lang.annotations.NotNull;
 import com.drew.lang.annotations.Nullable;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.StringValue;
 
-import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 
 /**
  * Extracts XMP data from JPEG APP1 segments.
@@ -54,7 +56,7 @@ import java.util.Collections;
  * @author Drew Noakes https://drewnoakes.com
  * @author https://github.com/bezineb5
  */
-public class XmpReader implements JpegSegmentMetadataReader
+public class XmpReader implements JpegSegmentSliceMetadataReader, JpegSegmentDirectoryReader
 {
     @NotNull
     private static final String XMP_JPEG_PREAMBLE = "http://ns.adobe.com/xap/1.0/\0";
@@ -77,6 +79,12 @@ public class XmpReader implements JpegSegmentMetadataReader
         return Collections.singletonList(JpegSegmentType.APP1);
     }
 
+    @NotNull
+    public Iterable<Class<? extends Directory>> getDirectoryTypes()
+    {
+        return Collections.<Class<? extends Directory>>singletonList(XmpDirectory.class);
+    }
+
     /**
      * Version specifically for dealing with XMP found in JPEG segments. This form of XMP has a peculiar preamble, which
      * must be removed before parsing the XML.
@@ -86,23 +94,35 @@ public class XmpReader implements JpegSegmentMetadataReader
      * @param segmentType The {@link JpegSegmentType} being read.
      */
     public void readJpegSegments(@NotNull Iterable<byte[]> segments, @NotNull Metadata metadata, @NotNull JpegSegmentType segmentType)
+    {
+        List<ByteBuffer> slices = new ArrayList<ByteBuffer>();
+        for (byte[] segmentBytes : segments)
+            slices.add(ByteBuffer.wrap(segmentBytes));
+        readJpegSegmentSlices(slices, metadata, segmentType);
+    }
+
+    public void readJpegSegmentSlices(@NotNull Iterable<ByteBuffer> segments, @NotNull Metadata metadata, @NotNull JpegSegmentType segmentType)
     {
         final int preambleLength = XMP_JPEG_PREAMBLE.length();
         final int extensionPreambleLength = XMP_EXTENSION_JPEG_PREAMBLE.length();
         String extendedXMPGUID = null;
         byte[] extendedXMPBuffer = null;
 
-        for (byte[] segmentBytes : segments) {
+        for (ByteBuffer segment : segments) {
             // XMP in a JPEG file has an identifying preamble which is not valid XML
-            if (segmentBytes.length >= preambleLength) {
+            String preamble = JpegSegmentData.getPreamble(segment, preambleLength);
+            if (preamble != null) {
                 // NOTE we expect the full preamble here, but some images (such as that reported on GitHub #102)
                 // start with "XMP\0://ns.adobe.com/xap/1.0/" which appears to be an error but is easily recovered
                 // from. In such cases, the actual XMP data begins at the same offset.
-                if (XMP_JPEG_PREAMBLE.equalsIgnoreCase(new String(segmentBytes, 0, preambleLength)) ||
-                    "XMP".equalsIgnoreCase(new String(segmentBytes, 0, 3))) {
-
-                    byte[] xmlBytes = new byte[segmentBytes.length - preambleLength];
-                    System.arraycopy(segmentBytes, preambleLength, xmlBytes, 0, xmlBytes.length);
+                if (XMP_JPEG_PREAMBLE.equalsIgnoreCase(preamble) ||
+                    "XMP".equalsIgnoreCase(preamble.substring(0, 3))) {
+
+                    // XMPCore requires the XML in an array of its own, so this is the only copy made
+                    byte[] xmlBytes = new byte[segment.remaining() - preambleLength];
+                    ByteBuffer xml = segment.duplicate();
+                    xml.position(xml.position() + preambleLength);
+                    xml.get(xmlBytes);
                     extract(xmlBytes, metadata);
                     // Check in the Standard XMP if there should be a Extended XMP part in other chunks.
                     extendedXMPGUID = getExtendedXMPGUID(metadata);
@@ -112,10 +132,9 @@ public class XmpReader implements JpegSegmentMetadataReader
 
             // If we know that there's Extended XMP chunks, look for them.
             if (extendedXMPGUID != null &&
-                segmentBytes.length >= extensionPreambleLength &&
-                XMP_EXTENSION_JPEG_PREAMBLE.equalsIgnoreCase(new String(segmentBytes, 0, extensionPreambleLength))) {
+                XMP_EXTENSION_JPEG_PREAMBLE.equalsIgnoreCase(JpegSegmentData.getPreamble(segment, extensionPreambleLength))) {
 
-                extendedXMPBuffer = processExtendedXMPChunk(metadata, segmentBytes, extendedXMPGUID, extendedXMPBuffer);
+                extendedXMPBuffer = processExtendedXMPChunk(metadata, segment, extendedXMPGUID, extendedXMPBuffer);
             }
         }
 
@@ -160,12 +179,11 @@ public class XmpReader implements JpegSegmentMetadataReader
         try {
             XMPMeta xmpMeta;
 
-            // If all xmpBytes are requested, no need to make a new ByteBuffer
+            // If all xmpBytes are requested, no need to copy them. XMPCore only parses whole arrays.
             if (offset == 0 && length == xmpBytes.length) {
                 xmpMeta = XMPMetaFactory.parseFromBuffer(xmpBytes);
             } else {
-                ByteBuffer buffer = new ByteBuffer(xmpBytes, offset, length);
-                xmpMeta = XMPMetaFactory.parse(buffer.getByteStream());
+                xmpMeta = XMPMetaFactory.parseFromBuffer(Arrays.copyOfRange(xmpBytes, offset, offset + length));
             }
 
             directory.setXMPMeta(xmpMeta);
@@ -252,53 +270,50 @@ public class XmpReader implements JpegSegmentMetadataReader
     }
 
     /**
-     * Process an Extended XMP chunk. It will read the bytes from segmentBytes and validates that the GUID the requested one.
+     * Process an Extended XMP chunk. It will read the bytes from segment and validates that the GUID the requested one.
      * It will progressively fill the buffer with each chunk.
      * The format is specified in this document:
      * http://www.adobe.com/content/dam/Adobe/en/devnet/xmp/pdfs/XMPSpecificationPart3.pdf
      * at page 19
      */
     @Nullable
-    private static byte[] processExtendedXMPChunk(@NotNull Metadata metadata, @NotNull byte[] segmentBytes, @NotNull String extendedXMPGUID, @Nullable byte[] extendedXMPBuffer)
+    private static byte[] processExtendedXMPChunk(@NotNull Metadata metadata, @NotNull ByteBuffer segment, @NotNull String extendedXMPGUID, @Nullable byte[] extendedXMPBuffer)
     {
         final int extensionPreambleLength = XMP_EXTENSION_JPEG_PREAMBLE.length();
-        final int segmentLength = segmentBytes.length;
+        final int segmentLength = segment.remaining();
         final int totalOffset = extensionPreambleLength + EXTENDED_XMP_GUID_LENGTH + EXTENDED_XMP_INT_LENGTH + EXTENDED_XMP_INT_LENGTH;
 
         if (segmentLength >= totalOffset) {
-            try {
-                /*
-                 * The chunk contains:
-                 * - A null-terminated signature string of "http://ns.adobe.com/xmp/extension/".
-                 * - A 128-bit GUID stored as a 32-byte ASCII hex string, capital A-F, no null termination.
-                 *   The GUID is a 128-bit MD5 digest of the full ExtendedXMP serialization.
-                 * - The full length of the ExtendedXMP serialization as a 32-bit unsigned integer
-                 * - The offset of this portion as a 32-bit unsigned integer
-                 * - The portion of the ExtendedXMP
-                 */
-                final SequentialReader reader = new SequentialByteArrayReader(segmentBytes);
-                reader.skip(extensionPreambleLength);
-                final String segmentGUID = reader.getString(EXTENDED_XMP_GUID_LENGTH);
-
-                if (extendedXMPGUID.equals(segmentGUID)) {
-                    final int fullLength = (int)reader.getUInt32();
-                    final int chunkOffset = (int)reader.getUInt32();
-
-                    if (extendedXMPBuffer == null)
-                        extendedXMPBuffer = new byte[fullLength];
-
-                    if (extendedXMPBuffer.length == fullLength) {
-                        System.arraycopy(segmentBytes, totalOffset, extendedXMPBuffer, chunkOffset, segmentLength - totalOffset);
-                    } else {
-                        XmpDirectory directory = new XmpDirectory();
-                        directory.addError(String.format("Inconsistent length for the Extended XMP buffer: %d instead of %d", fullLength, extendedXMPBuffer.length));
-                        metadata.addDirectory(directory);
-                    }
+            /*
+             * The chunk contains:
+             * - A null-terminated signature string of "http://ns.adobe.com/xmp/extension/".
+             * - A 128-bit GUID stored as a 32-byte ASCII hex string, capital A-F, no null termination.
+             *   The GUID is a 128-bit MD5 digest of the full ExtendedXMP serialization.
+             * - The full length of the ExtendedXMP serialization as a 32-bit unsigned integer
+             * - The offset of this portion as a 32-bit unsigned integer
+             * - The portion of the ExtendedXMP
+             */
+            final ByteBuffer reader = segment.duplicate();
+            reader.position(reader.position() + extensionPreambleLength);
+            final byte[] guidBytes = new byte[EXTENDED_XMP_GUID_LENGTH];
+            reader.get(guidBytes);
+            final String segmentGUID = new String(guidBytes);
+
+            if (extendedXMPGUID.equals(segmentGUID)) {
+                // ByteBuffer is big-endian by default, as is this data
+                final int fullLength = (int)(reader.getInt() & 0xFFFFFFFFL);
+                final int chunkOffset = (int)(reader.getInt() & 0xFFFFFFFFL);
+
+                if (extendedXMPBuffer == null)
+                    extendedXMPBuffer = new byte[fullLength];
+
+                if (extendedXMPBuffer.length == fullLength) {
+                    reader.get(extendedXMPBuffer, chunkOffset, segmentLength - totalOffset);
+                } else {
+                    XmpDirectory directory = new XmpDirectory();
+                    directory.addError(String.format("Inconsistent length for the Extended XMP buffer: %d instead of %d", fullLength, extendedXMPBuffer.length));
+                    metadata.addDirectory(directory);
                 }
-            } catch (IOException ex) {
-                XmpDirectory directory = new XmpDirectory();
-                directory.addError(ex.getMessage());
-                metadata.addDirectory(directory);
             }
         }
 
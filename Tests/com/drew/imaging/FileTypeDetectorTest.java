@@ -0,0 +1,119 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class FileTypeDetectorTest
+{
+    @Test
+    public void testDetectFromPrefix()
+    {
+        assertEquals(FileType.Jpeg, FileTypeDetector.detectFileType(new byte[]{(byte)0xff, (byte)0xd8, (byte)0xff, (byte)0xe0}));
+        assertEquals(FileType.Tiff, FileTypeDetector.detectFileType("MM\0*".getBytes()));
+        assertEquals(FileType.Gif, FileTypeDetector.detectFileType("GIF89a".getBytes()));
+        assertEquals(FileType.Unknown, FileTypeDetector.detectFileType("GIF8".getBytes()));
+        assertEquals(FileType.Unknown, FileTypeDetector.detectFileType(new byte[0]));
+    }
+
+    @Test
+    public void testDetectFromBufferDoesNotModifyIt()
+    {
+        byte[] bytes = "xxGIF87a".getBytes();
+
+        ByteBuffer heap = ByteBuffer.wrap(bytes);
+        heap.position(2);
+        assertEquals(FileType.Gif, FileTypeDetector.detectFileType(heap));
+        assertEquals(2, heap.position());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).position(2);
+        assertEquals(FileType.Gif, FileTypeDetector.detectFileType(direct));
+        assertEquals(2, direct.position());
+    }
+
+    @Test
+    public void testDetectFromFilesMatchesStreamDetection() throws IOException
+    {
+        List<File> files = Arrays.asList(
+            new File("Tests/Data/withExif.jpg"),
+            new File("Tests/Data/mspaint-10x10.gif"),
+            new File("Tests/Data/photoshop-8x12-rgb24.png"),
+            new File("Tests/Data/24bpp-10x10.bmp"),
+            new File("Tests/Data/8x4x8bit-Grayscale.psd"));
+
+        Map<File, FileType> fileTypes = FileTypeDetector.detectFileTypes(files);
+
+        Iterator<File> keys = fileTypes.keySet().iterator();
+        for (File file : files) {
+            assertEquals(file, keys.next());
+
+            FileType expected;
+            BufferedInputStream stream = new BufferedInputStream(new FileInputStream(file));
+            try {
+                expected = FileTypeDetector.detectFileType(stream);
+            } finally {
+                stream.close();
+            }
+
+            assertNotEquals(FileType.Unknown, expected);
+            assertEquals(expected, fileTypes.get(file));
+            assertEquals(expected, FileTypeDetector.detectFileType(file));
+        }
+    }
+
+    @Test
+    public void testDetectFromFilesContinuesPastUnreadableFiles()
+    {
+        File missing = new File("Tests/Data/doesNotExist.jpg");
+        List<File> files = Arrays.asList(new File("Tests/Data/withExif.jpg"), missing, new File("Tests/Data/mspaint-10x10.gif"));
+
+        Map<File, IOException> errors = new HashMap<File, IOException>();
+        Map<File, FileType> fileTypes = FileTypeDetector.detectFileTypes(files, errors);
+
+        assertEquals(3, fileTypes.size());
+        assertEquals(FileType.Jpeg, fileTypes.get(files.get(0)));
+        assertEquals(FileType.Unknown, fileTypes.get(missing));
+        assertEquals(FileType.Gif, fileTypes.get(files.get(2)));
+
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(missing) instanceof FileNotFoundException);
+
+        assertEquals(fileTypes, FileTypeDetector.detectFileTypes(files));
+    }
+}
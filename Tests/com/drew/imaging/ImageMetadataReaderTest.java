@@ -0,0 +1,150 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging;
+
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Directory;
+import com.drew.metadata.ExtractionSpec;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.Tag;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.file.FileMetadataDirectory;
+import com.drew.tools.FileUtil;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class ImageMetadataReaderTest
+{
+    /** Writes the TIFF data of a JPEG's Exif segment to a temporary file. */
+    @NotNull
+    private static File createTiffFile() throws IOException
+    {
+        byte[] app1 = FileUtil.readBytes("Tests/Data/withExif.jpg.app1");
+        File file = File.createTempFile("metadata-extractor-", ".tif");
+        file.deleteOnExit();
+        FileOutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write(app1, 6, app1.length - 6);
+        } finally {
+            stream.close();
+        }
+        return file;
+    }
+
+    @NotNull
+    private static List<String> describe(@NotNull Metadata metadata)
+    {
+        List<String> lines = new ArrayList<String>();
+        for (Directory directory : metadata.getDirectories()) {
+            if (directory instanceof FileMetadataDirectory)
+                continue;
+            for (Tag tag : directory.getTags())
+                lines.add(tag.toString());
+        }
+        return lines;
+    }
+
+    @Test
+    public void testReadTiffMetadataWithMemoryMapping() throws Exception
+    {
+        File file = createTiffFile();
+        Metadata metadata = ImageMetadataReader.readMetadata(file);
+
+        // By default the file is not mapped, so can be deleted straight away, even on Windows
+        assertTrue(file.delete());
+
+        Metadata mappedMetadata = ImageMetadataReader.readMetadata(createTiffFile(), null, new ReadOptions().setMemoryMapFiles(true));
+
+        assertNotNull(metadata.getFirstDirectoryOfType(ExifIFD0Directory.class));
+        assertEquals(describe(metadata), describe(mappedMetadata));
+    }
+
+    @Test
+    public void testReadTiffMetadataWithCombinedReadOptions() throws Exception
+    {
+        File file = createTiffFile();
+        try {
+            ExtractionSpec extractionSpec = new ExtractionSpec().addDirectory(ExifIFD0Directory.class);
+            Metadata expected = ImageMetadataReader.readMetadata(file, extractionSpec);
+            assertNotNull(expected.getFirstDirectoryOfType(ExifIFD0Directory.class));
+
+            // Tag values are only deferred when mapped, as the file is otherwise closed once read
+            for (boolean memoryMapFiles : new boolean[] { false, true }) {
+                ReadOptions readOptions = new ReadOptions().setMemoryMapFiles(memoryMapFiles).setPrefetchRanges(true).setDeferTagValues(true);
+                Metadata metadata = ImageMetadataReader.readMetadata(file, extractionSpec, readOptions);
+                assertEquals(describe(expected), describe(metadata));
+            }
+        } finally {
+            // May fail on Windows while the file is mapped
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testReadMetadataWithContentDigest() throws Exception
+    {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        for (String fileName : new String[] { "withExif.jpg", "nikonMakernoteType1.jpg", "photoshop-8x12-rgb24.png", "mspaint-10x10.gif", "24bpp-10x10.bmp", "8x4x8bit-Grayscale.psd" }) {
+            File file = new File("Tests/Data/" + fileName);
+            Metadata metadata = ImageMetadataReader.readMetadata(file, null, digest);
+
+            byte[] expected = MessageDigest.getInstance("SHA-256").digest(FileUtil.readBytes(file));
+            FileMetadataDirectory directory = metadata.getFirstDirectoryOfType(FileMetadataDirectory.class);
+            assertNotNull(directory);
+            assertArrayEquals(fileName, expected, directory.getByteArray(FileMetadataDirectory.TAG_CONTENT_DIGEST));
+            assertEquals("SHA-256", directory.getString(FileMetadataDirectory.TAG_CONTENT_DIGEST_ALGORITHM));
+            assertEquals(64, directory.getDescription(FileMetadataDirectory.TAG_CONTENT_DIGEST).length());
+
+            // Extraction is otherwise unaffected
+            assertEquals(ImageMetadataReader.readMetadata(file).getDirectoryCount(), metadata.getDirectoryCount());
+        }
+    }
+
+    @Test
+    public void testReadTiffMetadataWithContentDigest() throws Exception
+    {
+        File file = createTiffFile();
+        try {
+            // The spec doesn't include the file directory, but the digest is still stored
+            ExtractionSpec extractionSpec = new ExtractionSpec().addDirectory(ExifIFD0Directory.class);
+            Metadata metadata = ImageMetadataReader.readMetadata(file, extractionSpec, MessageDigest.getInstance("SHA-256"));
+
+            byte[] expected = MessageDigest.getInstance("SHA-256").digest(FileUtil.readBytes(file));
+            FileMetadataDirectory directory = metadata.getFirstDirectoryOfType(FileMetadataDirectory.class);
+            assertNotNull(directory);
+            assertArrayEquals(expected, directory.getByteArray(FileMetadataDirectory.TAG_CONTENT_DIGEST));
+            assertNotNull(metadata.getFirstDirectoryOfType(ExifIFD0Directory.class));
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+}
@@ -20,20 +20,40 @@
  */
 package com.drew.imaging.jpeg;
 
+import com.drew.lang.SequentialByteArrayReader;
+import com.drew.lang.annotations.NotNull;
 import com.drew.metadata.Directory;
+import com.drew.metadata.ErrorDirectory;
+import com.drew.metadata.ExtractionSpec;
 import com.drew.metadata.Metadata;
+import com.drew.metadata.Tag;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifReader;
 import com.drew.metadata.exif.ExifSubIFDDirectory;
+import com.drew.metadata.exif.ExifThumbnailDirectory;
+import com.drew.metadata.exif.makernotes.NikonType1MakernoteDirectory;
+import com.drew.metadata.jfif.JfifDirectory;
 import com.drew.metadata.jpeg.HuffmanTablesDirectory;
 import com.drew.metadata.jpeg.HuffmanTablesDirectory.HuffmanTable;
+import com.drew.metadata.jpeg.JpegDirectory;
 import com.drew.metadata.xmp.XmpDirectory;
+import com.drew.metadata.xmp.XmpReader;
+import com.drew.tools.FileUtil;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -53,6 +73,161 @@ public class JpegMetadataReaderTest
         validate(JpegMetadataReader.readMetadata(new FileInputStream((new File("Tests/Data/withExif.jpg")))));
     }
 
+    @Test
+    public void testExtractMetadataFromSegmentSlices() throws Exception
+    {
+        byte[] bytes = FileUtil.readBytes("Tests/Data/withExif.jpg");
+        JpegSegmentData segmentData = JpegSegmentReader.readSegments(new SequentialByteArrayReader(bytes), null);
+
+        Metadata metadata = new Metadata();
+        JpegMetadataReader.processJpegSegmentData(metadata, JpegMetadataReader.ALL_READERS, segmentData);
+        validate(metadata);
+    }
+
+    @Test
+    public void testExtractMetadataLazily() throws Exception
+    {
+        validate(JpegMetadataReader.readMetadata(new File("Tests/Data/withExif.jpg"), null, true));
+
+        for (String fileName : new String[]{"withExifAndIptc.jpg", "withXmp.jpg", "withIptcPhotoshop6.jpg", "adobeJpeg1.jpg"}) {
+            File file = new File("Tests/Data/" + fileName);
+            List<String> eager = describe(JpegMetadataReader.readMetadata(file));
+            List<String> lazy = describe(JpegMetadataReader.readMetadata(file, null, true));
+            // Directories read lazily are added in the order they were first needed
+            Collections.sort(eager);
+            Collections.sort(lazy);
+            assertEquals(fileName, eager, lazy);
+        }
+    }
+
+    @Test
+    public void testLazyReadersRunOnlyWhenTheirDirectoriesAreRequested() throws Exception
+    {
+        final int[] runCount = new int[1];
+        JpegSegmentDirectoryReader xmpReader = new JpegSegmentDirectoryReader()
+        {
+            @NotNull
+            public Iterable<Class<? extends Directory>> getDirectoryTypes()
+            {
+                return Collections.<Class<? extends Directory>>singletonList(XmpDirectory.class);
+            }
+
+            @NotNull
+            public Iterable<JpegSegmentType> getSegmentTypes()
+            {
+                return Collections.singletonList(JpegSegmentType.APP1);
+            }
+
+            public void readJpegSegments(@NotNull Iterable<byte[]> segments, @NotNull Metadata metadata, @NotNull JpegSegmentType segmentType)
+            {
+                runCount[0]++;
+                new XmpReader().readJpegSegments(segments, metadata, segmentType);
+            }
+        };
+
+        Metadata metadata = JpegMetadataReader.readMetadata(new File("Tests/Data/withXmp.jpg"),
+            Arrays.<JpegSegmentMetadataReader>asList(new ExifReader(), xmpReader), true);
+
+        metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
+        assertEquals(0, runCount[0]);
+
+        assertNotNull(metadata.getFirstDirectoryOfType(XmpDirectory.class));
+        assertEquals(1, runCount[0]);
+
+        metadata.getDirectories();
+        assertEquals(1, runCount[0]);
+    }
+
+    @Test
+    public void testExtractionSpecSkipsUnrequestedData() throws Exception
+    {
+        Metadata metadata = new Metadata(new ExtractionSpec().addTags(ExifIFD0Directory.class, ExifIFD0Directory.TAG_ORIENTATION));
+        JpegMetadataReader.process(metadata, new FileInputStream(new File("Tests/Data/nikonMakernoteType1.jpg")));
+
+        ExifIFD0Directory directory = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+        assertNotNull(directory);
+        assertEquals(1, directory.getTagCount());
+        assertEquals(1, directory.getInt(ExifIFD0Directory.TAG_ORIENTATION));
+
+        assertNull(metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class));
+        assertNull(metadata.getFirstDirectoryOfType(NikonType1MakernoteDirectory.class));
+        assertNull(metadata.getFirstDirectoryOfType(ExifThumbnailDirectory.class));
+        assertNull(metadata.getFirstDirectoryOfType(JfifDirectory.class));
+        assertNull(metadata.getFirstDirectoryOfType(HuffmanTablesDirectory.class));
+    }
+
+    @Test
+    public void testExtractionSpecReadsMakernoteWhenRequested() throws Exception
+    {
+        Metadata metadata = new Metadata(new ExtractionSpec().addDirectory(NikonType1MakernoteDirectory.class));
+        JpegMetadataReader.process(metadata, new FileInputStream(new File("Tests/Data/nikonMakernoteType1.jpg")));
+
+        Directory makernote = metadata.getFirstDirectoryOfType(NikonType1MakernoteDirectory.class);
+        assertNotNull(makernote);
+        assertEquals(JpegMetadataReader.readMetadata(new File("Tests/Data/nikonMakernoteType1.jpg"))
+            .getFirstDirectoryOfType(NikonType1MakernoteDirectory.class).getTagCount(), makernote.getTagCount());
+    }
+
+    @Test
+    public void testConcurrentReadersMatchSequentialRead() throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (String fileName : new String[] { "withIptcExifGps.jpg", "withXmp.jpg", "nikonMakernoteType1.jpg", "simple.jpg" }) {
+                File file = new File("Tests/Data/" + fileName);
+                Metadata expected = new Metadata();
+                JpegMetadataReader.process(expected, new FileInputStream(file));
+
+                Metadata metadata = new Metadata();
+                JpegMetadataReader.process(metadata, new FileInputStream(file), JpegMetadataReader.ALL_READERS_TABLE, executor);
+
+                assertEquals(describeTags(expected), describeTags(metadata));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentReadersReadDnlAfterFrameHeader() throws Exception
+    {
+        // A baseline frame header with a height of zero, which the DNL segment then defines
+        JpegSegmentData segmentData = new JpegSegmentData();
+        segmentData.addSegment(JpegSegmentType.SOF0.byteValue, new byte[] { 8, 0, 0, 0x01, 0x00, 1, 1, 0x11, 0 });
+        segmentData.addSegment(JpegSegmentType.DNL.byteValue, new byte[] { 0x01, 0x10 });
+        segmentData.addSegment(JpegSegmentType.APP1.byteValue, FileUtil.readBytes("Tests/Data/withExif.jpg.app1"));
+
+        Metadata expected = new Metadata();
+        JpegMetadataReader.processJpegSegmentData(expected, JpegMetadataReader.ALL_READERS_TABLE, segmentData, false);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Metadata metadata = new Metadata();
+            JpegMetadataReader.processJpegSegmentData(metadata, JpegMetadataReader.ALL_READERS_TABLE, segmentData, executor);
+
+            JpegDirectory directory = metadata.getFirstDirectoryOfType(JpegDirectory.class);
+            assertNotNull(directory);
+            assertEquals(272, directory.getInt(JpegDirectory.TAG_IMAGE_HEIGHT));
+            assertFalse(metadata.containsDirectoryOfType(ErrorDirectory.class));
+            assertEquals(describeTags(expected), describeTags(metadata));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @NotNull
+    private static List<String> describeTags(@NotNull Metadata metadata)
+    {
+        List<String> lines = new ArrayList<String>();
+        for (Directory directory : metadata.getDirectories()) {
+            for (Tag tag : directory.getTags())
+                lines.add(tag.toString());
+            for (String error : directory.getErrors())
+                lines.add(error);
+        }
+        return lines;
+    }
+
     @Test
     public void testExtractXmpMetadata() throws Exception
     {
@@ -79,6 +254,14 @@ public class JpegMetadataReaderTest
         }
     }
 
+    private static List<String> describe(Metadata metadata)
+    {
+        List<String> descriptions = new ArrayList<String>();
+        for (Directory directory : metadata.getDirectories())
+            descriptions.add(directory.getName() + " " + directory.getTagCount() + " " + directory.getErrorCount());
+        return descriptions;
+    }
+
     private void validate(Metadata metadata)
     {
         Directory directory = metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
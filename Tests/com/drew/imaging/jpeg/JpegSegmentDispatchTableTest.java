@@ -0,0 +1,120 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging.jpeg;
+
+import com.drew.metadata.ExtractionSpec;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifReader;
+import com.drew.metadata.icc.IccReader;
+import com.drew.metadata.jpeg.JpegCommentDirectory;
+import com.drew.metadata.jpeg.JpegCommentReader;
+import com.drew.metadata.xmp.XmpReader;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class JpegSegmentDispatchTableTest
+{
+    @Test
+    public void testReadersIndexedByMarker()
+    {
+        ExifReader exifReader = new ExifReader();
+        XmpReader xmpReader = new XmpReader();
+        IccReader iccReader = new IccReader();
+        JpegSegmentDispatchTable table = new JpegSegmentDispatchTable(Arrays.asList(exifReader, xmpReader, iccReader));
+
+        assertEquals(3, table.getReaderCount());
+        assertSame(xmpReader, table.getReader(1));
+
+        assertTrue(table.isMarkerRead(JpegSegmentType.APP1.byteValue));
+        assertTrue(table.isMarkerRead(JpegSegmentType.APP2.byteValue));
+        assertFalse(table.isMarkerRead(JpegSegmentType.APP0.byteValue));
+        assertFalse(table.isMarkerRead(JpegSegmentType.COM.byteValue));
+
+        assertArrayEquals(new JpegSegmentMetadataReader[] { exifReader, xmpReader }, table.getReaders(JpegSegmentType.APP1.byteValue));
+        assertArrayEquals(new JpegSegmentMetadataReader[] { iccReader }, table.getReaders(JpegSegmentType.APP2.byteValue));
+        assertEquals(0, table.getReaders(JpegSegmentType.COM.byteValue).length);
+    }
+
+    @Test
+    public void testForExtractionSpec()
+    {
+        JpegSegmentDispatchTable table = JpegMetadataReader.ALL_READERS_TABLE;
+        assertSame(table, table.forExtractionSpec(null));
+
+        JpegSegmentDispatchTable filtered = table.forExtractionSpec(new ExtractionSpec().addDirectory(ExifIFD0Directory.class));
+        assertTrue(filtered.isMarkerRead(JpegSegmentType.APP1.byteValue));
+        assertFalse(filtered.isMarkerRead(JpegSegmentType.COM.byteValue));
+        assertFalse(filtered.isMarkerRead(JpegSegmentType.APP2.byteValue));
+    }
+
+    @Test
+    public void testForExtractionSpecCachesDerivedTables()
+    {
+        JpegSegmentDispatchTable table = JpegMetadataReader.ALL_READERS_TABLE;
+
+        ExtractionSpec spec = new ExtractionSpec().addDirectory(ExifIFD0Directory.class);
+        JpegSegmentDispatchTable filtered = table.forExtractionSpec(spec);
+        assertSame(filtered, table.forExtractionSpec(spec));
+        assertSame(filtered, table.forExtractionSpec(new ExtractionSpec().addDirectory(ExifIFD0Directory.class)));
+
+        // Modifying a spec after use is reflected in the table returned for it
+        spec.addDirectory(JpegCommentDirectory.class);
+        JpegSegmentDispatchTable modified = table.forExtractionSpec(spec);
+        assertNotSame(filtered, modified);
+        assertTrue(modified.isMarkerRead(JpegSegmentType.COM.byteValue));
+    }
+
+    @Test
+    public void testReuseAcrossFiles() throws Exception
+    {
+        JpegSegmentDispatchTable table = new JpegSegmentDispatchTable(Arrays.asList(new ExifReader(), new JpegCommentReader()));
+
+        for (String fileName : new String[] { "simple.jpg", "withExif.jpg", "simple.jpg" }) {
+            Metadata expected = JpegMetadataReader.readMetadata(new File("Tests/Data/" + fileName),
+                Arrays.<JpegSegmentMetadataReader>asList(new ExifReader(), new JpegCommentReader()));
+
+            Metadata metadata = new Metadata();
+            FileInputStream stream = new FileInputStream(new File("Tests/Data/" + fileName));
+            try {
+                JpegMetadataReader.process(metadata, stream, table, false);
+            } finally {
+                stream.close();
+            }
+
+            // The file reader also adds a File directory
+            assertEquals(expected.getDirectoryCount() - 1, metadata.getDirectoryCount());
+        }
+    }
+}
@@ -20,10 +20,18 @@
  */
 package com.drew.imaging.jpeg;
 
+import com.drew.lang.SequentialByteArrayReader;
+import com.drew.lang.StreamReader;
+import com.drew.metadata.ExtractionSpec;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.jpeg.JpegDirectory;
 import com.drew.tools.FileUtil;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collections;
 
@@ -157,6 +165,158 @@ public class JpegSegmentReaderTest
         assertEquals(0, segmentData.getSegmentCount(JpegSegmentType.SOF0));
     }
 
+    @Test
+    public void testSegmentsReadFromByteArrayShareIt() throws Exception
+    {
+        byte[] bytes = FileUtil.readBytes("Tests/Data/withExifAndIptc.jpg");
+        JpegSegmentData segmentData = JpegSegmentReader.readSegments(new SequentialByteArrayReader(bytes), null);
+
+        ByteBuffer slice = segmentData.getSegmentSlices(JpegSegmentType.APP1).iterator().next();
+        assertSame(bytes, slice.array());
+
+        byte[] expected = FileUtil.readBytes("Tests/Data/withExifAndIptc.jpg.app1.0");
+        assertArrayEquals(expected, JpegSegmentData.toArray(slice));
+        assertArrayEquals(expected, segmentData.getSegment(JpegSegmentType.APP1));
+    }
+
+    @Test
+    public void testHeaderByteBudget() throws Exception
+    {
+        byte[] bytes = FileUtil.readBytes("Tests/Data/withExifAndIptc.jpg");
+        int app0Length = FileUtil.readBytes("Tests/Data/withExifAndIptc.jpg.app0").length;
+
+        // SOI, then the APP0 marker, length and data
+        JpegSegmentScanPolicy policy = new JpegSegmentScanPolicy(2 + 4 + app0Length, false);
+        JpegSegmentData segmentData = JpegSegmentReader.readSegments(new SequentialByteArrayReader(bytes), null, policy);
+
+        assertEquals(1, segmentData.getSegmentCount(JpegSegmentType.APP0));
+        assertEquals(0, segmentData.getSegmentCount(JpegSegmentType.APP1));
+        assertTrue(segmentData.isScanCutShort());
+        assertTrue(segmentData.isHeaderBudgetExceeded());
+
+        segmentData = JpegSegmentReader.readSegments(new SequentialByteArrayReader(bytes), null, new JpegSegmentScanPolicy(bytes.length, false));
+
+        assertEquals(2, segmentData.getSegmentCount(JpegSegmentType.APP1));
+        assertFalse(segmentData.isScanCutShort());
+        assertFalse(segmentData.isHeaderBudgetExceeded());
+    }
+
+    @Test
+    public void testStopWhenAllSeen() throws Exception
+    {
+        byte[] bytes = FileUtil.readBytes("Tests/Data/withExifAndIptc.jpg");
+        SequentialByteArrayReader reader = new SequentialByteArrayReader(bytes);
+        JpegSegmentScanPolicy policy = new JpegSegmentScanPolicy(Long.MAX_VALUE, true);
+
+        JpegSegmentData segmentData = JpegSegmentReader.readSegments(reader, Collections.singletonList(JpegSegmentType.APPE), policy);
+
+        assertEquals(1, segmentData.getSegmentCount(JpegSegmentType.APPE));
+        assertTrue(segmentData.isScanCutShort());
+        assertFalse(segmentData.isHeaderBudgetExceeded());
+
+        // Stopped before the remaining segments
+        SequentialByteArrayReader unboundedReader = new SequentialByteArrayReader(bytes);
+        JpegSegmentReader.readSegments(unboundedReader, Collections.singletonList(JpegSegmentType.APPE));
+        assertTrue(reader.getPosition() < unboundedReader.getPosition());
+    }
+
+    @Test
+    public void testStopWhenAllSeenWithDefaultReaders() throws Exception
+    {
+        // All readers, restricted to those of the frame header, which request each SOFn type and DNL
+        byte[] bytes = FileUtil.readBytes("Tests/Data/withExifAndIptc.jpg");
+        JpegSegmentDispatchTable table = JpegMetadataReader.ALL_READERS_TABLE.forExtractionSpec(new ExtractionSpec().addDirectory(JpegDirectory.class));
+        JpegSegmentScanPolicy policy = new JpegSegmentScanPolicy(Long.MAX_VALUE, true);
+
+        SequentialByteArrayReader reader = new SequentialByteArrayReader(bytes);
+        JpegSegmentData segmentData = JpegSegmentReader.readSegmentsFor(reader, table, policy);
+
+        // Stopped at the first frame header, before the tables and image data that follow it
+        assertEquals(1, segmentData.getSegmentCount(JpegSegmentType.SOF0));
+        assertTrue(segmentData.isScanCutShort());
+        SequentialByteArrayReader unboundedReader = new SequentialByteArrayReader(bytes);
+        JpegSegmentReader.readSegmentsFor(unboundedReader, table);
+        assertTrue(reader.getPosition() < unboundedReader.getPosition());
+
+        Metadata metadata = new Metadata(new ExtractionSpec().addDirectory(JpegDirectory.class));
+        JpegMetadataReader.process(metadata, new ByteArrayInputStream(bytes), JpegMetadataReader.ALL_READERS_TABLE, policy, false);
+        JpegDirectory directory = metadata.getFirstDirectoryOfType(JpegDirectory.class);
+        assertNotNull(directory);
+        assertEquals(JpegMetadataReader.readMetadata(new ByteArrayInputStream(bytes)).getFirstDirectoryOfType(JpegDirectory.class).getImageHeight(), directory.getImageHeight());
+    }
+
+    @Test
+    public void testStopWhenAllSeenWaitsForDnlWhenScanningImageData() throws Exception
+    {
+        byte[] bytes = FileUtil.readBytes("Tests/Data/withExifAndIptc.jpg");
+        JpegSegmentScanPolicy policy = new JpegSegmentScanPolicy(Long.MAX_VALUE, true, true);
+
+        JpegSegmentData segmentData = JpegSegmentReader.readSegments(new SequentialByteArrayReader(bytes), Arrays.asList(JpegSegmentType.SOF0, JpegSegmentType.DNL), policy);
+
+        assertEquals(1, segmentData.getSegmentCount(JpegSegmentType.SOF0));
+        assertFalse(segmentData.isScanCutShort());
+        assertTrue(segmentData.getEndOfImageOffset() > 0);
+    }
+
+    @Test
+    public void testStopWhenAllSeenDoesNotApplyToRepeatableTypes() throws Exception
+    {
+        byte[] bytes = FileUtil.readBytes("Tests/Data/withExifAndIptc.jpg");
+        JpegSegmentScanPolicy policy = new JpegSegmentScanPolicy(Long.MAX_VALUE, true);
+
+        JpegSegmentData segmentData = JpegSegmentReader.readSegments(new SequentialByteArrayReader(bytes), Arrays.asList(JpegSegmentType.APP1, JpegSegmentType.APPE), policy);
+
+        assertEquals(2, segmentData.getSegmentCount(JpegSegmentType.APP1));
+        assertFalse(segmentData.isScanCutShort());
+    }
+
+    @Test
+    public void testScanImageData() throws Exception
+    {
+        byte[] bytes = FileUtil.readBytes("Tests/Data/withExifAndIptc.jpg");
+        JpegSegmentScanPolicy policy = new JpegSegmentScanPolicy(Long.MAX_VALUE, false, true);
+
+        JpegSegmentData segmentData = JpegSegmentReader.readSegments(new SequentialByteArrayReader(bytes), null, policy);
+        assertEquals(bytes.length - 2 - segmentData.getTrailingDataLength(), segmentData.getEndOfImageOffset());
+        assertEquals((byte)0xFF, bytes[(int)segmentData.getEndOfImageOffset()]);
+        assertEquals((byte)0xD9, bytes[(int)segmentData.getEndOfImageOffset() + 1]);
+
+        segmentData = JpegSegmentReader.readSegments(new SequentialByteArrayReader(bytes), null);
+        assertEquals(-1, segmentData.getEndOfImageOffset());
+    }
+
+    @Test
+    public void testScanImageDataFindsDnlAndTrailingData() throws Exception
+    {
+        // Place the DNL segment either side of the scanner's buffer boundary
+        for (int entropyLength = 65520; entropyLength < 65550; entropyLength++) {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            stream.write(new byte[] { (byte)0xFF, (byte)0xD8 });
+            stream.write(new byte[] { (byte)0xFF, (byte)0xDA, 0x00, 0x08, 1, 2, 3, 4, 5, 6 });
+            for (int i = 0; i < entropyLength; i++) {
+                // Include stuffed zeros and restart markers, which don't end the entropy-coded data
+                if (i % 1000 == 0)
+                    stream.write(new byte[] { (byte)0xFF, 0x00 });
+                else if (i % 1000 == 500)
+                    stream.write(new byte[] { (byte)0xFF, (byte)0xD3 });
+                else
+                    stream.write(0x42);
+            }
+            stream.write(new byte[] { (byte)0xFF, (byte)0xDC, 0x00, 0x04, 0x01, 0x10 });
+            int endOfImageOffset = stream.size();
+            stream.write(new byte[] { (byte)0xFF, (byte)0xD9 });
+            stream.write("TRAILER".getBytes());
+            byte[] bytes = stream.toByteArray();
+
+            JpegSegmentScanPolicy policy = new JpegSegmentScanPolicy(Long.MAX_VALUE, false, true);
+            JpegSegmentData segmentData = JpegSegmentReader.readSegments(new StreamReader(new ByteArrayInputStream(bytes)), Collections.singletonList(JpegSegmentType.DNL), policy);
+
+            assertArrayEquals(new byte[] { 0x01, 0x10 }, segmentData.getSegment(JpegSegmentType.DNL));
+            assertEquals(endOfImageOffset, segmentData.getEndOfImageOffset());
+            assertEquals(7, segmentData.getTrailingDataLength());
+        }
+    }
+
     @Test
     public void testLoadJpegWithoutExifDataReturnsNull() throws Exception
     {
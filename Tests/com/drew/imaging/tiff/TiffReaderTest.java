@@ -0,0 +1,155 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.imaging.tiff;
+
+import com.drew.lang.ByteArrayReader;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifSubIFDDirectory;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+@SuppressWarnings({ "ConstantConditions" })
+public class TiffReaderTest
+{
+    /**
+     * Builds a BigTIFF with an IFD0 holding image width (LONG8), make (inline ASCII), an Exif sub-IFD
+     * pointer (IFD8) and strip offsets (LONG8 array, stored out of line), plus an Exif sub-IFD holding ISO.
+     */
+    private static byte[] createBigTiff(ByteOrder order)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(200).order(order);
+        buffer.put(order == ByteOrder.BIG_ENDIAN ? (byte)'M' : (byte)'I');
+        buffer.put(order == ByteOrder.BIG_ENDIAN ? (byte)'M' : (byte)'I');
+        buffer.putShort((short)0x2B);
+        buffer.putShort((short)8);
+        buffer.putShort((short)0);
+        buffer.putLong(16);
+
+        // IFD0 at 16: 8 + 4 * 20 + 8 = 96 bytes
+        buffer.putLong(4);
+        putEntry(buffer, ExifIFD0Directory.TAG_IMAGE_WIDTH, TiffDataFormat.CODE_INT64_U, 1, 4000L);
+        buffer.putShort((short)ExifIFD0Directory.TAG_MAKE).putShort((short)TiffDataFormat.CODE_STRING).putLong(5);
+        buffer.put(new byte[]{'C', 'a', 'n', 'o', 'n', 0, 0, 0});
+        putEntry(buffer, ExifIFD0Directory.TAG_EXIF_SUB_IFD_OFFSET, TiffDataFormat.CODE_IFD8, 1, 112L);
+        putEntry(buffer, ExifIFD0Directory.TAG_STRIP_OFFSETS, TiffDataFormat.CODE_INT64_U, 2, 150L);
+        buffer.putLong(0);
+
+        // Exif sub-IFD at 112: 8 + 20 + 8 = 36 bytes
+        assertEquals(112, buffer.position());
+        buffer.putLong(1);
+        buffer.putShort((short)ExifSubIFDDirectory.TAG_ISO_EQUIVALENT).putShort((short)TiffDataFormat.CODE_INT16_U).putLong(1);
+        buffer.putShort((short)200).putShort((short)0).putInt(0);
+        buffer.putLong(0);
+
+        // Strip offsets at 150
+        buffer.position(150);
+        buffer.putLong(0x123456789AL);
+        buffer.putLong(0x23456789ABL);
+
+        return buffer.array();
+    }
+
+    private static void putEntry(ByteBuffer buffer, int tagId, int formatCode, long componentCount, long value)
+    {
+        buffer.putShort((short)tagId);
+        buffer.putShort((short)formatCode);
+        buffer.putLong(componentCount);
+        buffer.putLong(value);
+    }
+
+    @Test
+    public void testBigTiff() throws Exception
+    {
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            Metadata metadata = TiffMetadataReader.readMetadata(new ByteArrayReader(createBigTiff(order)));
+
+            ExifIFD0Directory ifd0 = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+            assertNotNull(ifd0);
+            assertFalse(ifd0.getErrors().toString(), ifd0.hasErrors());
+            assertEquals(4000L, ifd0.getLong(ExifIFD0Directory.TAG_IMAGE_WIDTH));
+            assertEquals("Canon", ifd0.getString(ExifIFD0Directory.TAG_MAKE));
+            assertArrayEquals(new long[]{0x123456789AL, 0x23456789ABL}, (long[])ifd0.getObject(ExifIFD0Directory.TAG_STRIP_OFFSETS));
+
+            ExifSubIFDDirectory subIfd = metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
+            assertNotNull(subIfd);
+            assertEquals(200, subIfd.getInt(ExifSubIFDDirectory.TAG_ISO_EQUIVALENT));
+        }
+    }
+
+    @Test
+    public void testBigTiffWithUnsupportedOffsetSize() throws Exception
+    {
+        byte[] bytes = createBigTiff(ByteOrder.BIG_ENDIAN);
+        bytes[5] = 4;
+
+        try {
+            TiffMetadataReader.readMetadata(new ByteArrayReader(bytes));
+            fail("Expecting exception");
+        } catch (TiffProcessingException e) {
+            assertEquals("Unsupported BigTIFF offset size 4 (reserved value 0)", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testClassicTiffWithCountsBeyondIntRange() throws Exception
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(64).order(ByteOrder.BIG_ENDIAN);
+        buffer.put((byte)'M').put((byte)'M').putShort((short)0x2A).putInt(8);
+
+        // IFD0 at 8: a component count beyond Integer.MAX_VALUE, a byte count beyond it, then a valid tag
+        buffer.putShort((short)3);
+        buffer.putShort((short)ExifIFD0Directory.TAG_MAKE).putShort((short)TiffDataFormat.CODE_INT8_U).putInt(0x90000000).putInt(0x30);
+        buffer.putShort((short)ExifIFD0Directory.TAG_MODEL).putShort((short)TiffDataFormat.CODE_INT16_U).putInt(0x50000000).putInt(0x30);
+        buffer.putShort((short)ExifIFD0Directory.TAG_IMAGE_WIDTH).putShort((short)TiffDataFormat.CODE_INT16_U).putInt(1);
+        buffer.putShort((short)640).putShort((short)0);
+        buffer.putInt(0);
+
+        // Claim more than 2 GB of data, so that both counts fit within the reported length
+        ByteArrayReader reader = new ByteArrayReader(buffer.array())
+        {
+            @Override
+            public long getLength()
+            {
+                return 3L * 1024 * 1024 * 1024;
+            }
+        };
+
+        Metadata metadata = TiffMetadataReader.readMetadata(reader);
+
+        ExifIFD0Directory ifd0 = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+        assertNotNull(ifd0);
+        assertEquals(640, ifd0.getInt(ExifIFD0Directory.TAG_IMAGE_WIDTH));
+        assertFalse(ifd0.containsTag(ExifIFD0Directory.TAG_MAKE));
+        assertFalse(ifd0.containsTag(ExifIFD0Directory.TAG_MODEL));
+
+        String errors = ifd0.getErrors().toString();
+        assertTrue(errors, errors.contains("Illegal component count 2415919104 for tag 0x010F"));
+        assertTrue(errors, errors.contains("Illegal number of bytes for TIFF tag data: 2684354560"));
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+
+package com.drew.lang;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class ByteBufferReaderTest extends RandomAccessTestBase
+{
+    @Override
+    protected RandomAccessReader createReader(byte[] bytes)
+    {
+        return new ByteBufferReader(ByteBuffer.wrap(bytes));
+    }
+
+    @SuppressWarnings({ "ConstantConditions" })
+    @Test(expected = NullPointerException.class)
+    public void testConstructWithNullBufferThrows()
+    {
+        new ByteBufferReader(null);
+    }
+
+    @Test
+    public void testIndexZeroIsBufferPosition() throws Exception
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{0x00, 0x01, 0x02, 0x03});
+        buffer.position(2);
+
+        ByteBufferReader reader = new ByteBufferReader(buffer);
+
+        assertEquals(2, reader.getLength());
+        assertEquals(0x0203, reader.getUInt16(0));
+        reader.setMotorolaByteOrder(false);
+        assertEquals(0x0302, reader.getUInt16(0));
+        assertEquals(2, buffer.position());
+    }
+}
@@ -23,6 +23,11 @@ package com.drew.lang;
 
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
@@ -54,4 +59,62 @@ public class ByteTrieTest
         trie.setDefaultValue("DEFAULT");
         assertEquals("DEFAULT", trie.find("Also Not Included".getBytes()));
     }
+
+    @Test
+    public void testCompiled()
+    {
+        ByteTrie<String> trie = new ByteTrie<String>();
+
+        String[] strings = {"HELLO", "HELLO WORLD", "HERBERT", "A", "AB"};
+
+        for (String s : strings)
+            trie.addPath(s, s.getBytes());
+
+        CompiledByteTrie<String> compiled = trie.compile();
+
+        for (String s : strings)
+            assertSame(s, compiled.find(s.getBytes()));
+
+        assertNull(compiled.find("Not Included".getBytes()));
+        assertNull(compiled.find("HELL".getBytes()));
+        assertNull(compiled.find(new byte[0]));
+        assertEquals("HELLO", compiled.find("HELLO MUM".getBytes()));
+        assertEquals("HERBERT", compiled.find("xxHERBERTxx".getBytes(), 2, 7));
+        assertEquals("A", compiled.find("ABC".getBytes(), 0, 1));
+
+        assertEquals("HELLO WORLD".length(), compiled.getMaxDepth());
+
+        trie.setDefaultValue("DEFAULT");
+        assertNull(compiled.find("Not Included".getBytes()));
+        assertEquals("DEFAULT", trie.compile().find("Not Included".getBytes()));
+        assertEquals("DEFAULT", trie.compile().find("HELL".getBytes()));
+    }
+
+    @Test
+    public void testCompiledMatchesUncompiled()
+    {
+        Random random = new Random(1);
+        ByteTrie<Integer> trie = new ByteTrie<Integer>();
+        trie.setDefaultValue(-1);
+        Set<String> addedPaths = new HashSet<String>();
+
+        for (int i = 0; i < 200; i++) {
+            byte[] path = new byte[1 + random.nextInt(6)];
+            // A small alphabet makes shared prefixes likely
+            for (int j = 0; j < path.length; j++)
+                path[j] = (byte)(random.nextInt(4) * 85);
+            // Each path may only be stored once
+            if (addedPaths.add(Arrays.toString(path)))
+                trie.addPath(i, path);
+        }
+
+        CompiledByteTrie<Integer> compiled = trie.compile();
+
+        for (int i = 0; i < 10000; i++) {
+            byte[] bytes = new byte[random.nextInt(8)];
+            for (int j = 0; j < bytes.length; j++)
+                bytes[j] = (byte)(random.nextInt(4) * 85);
+            assertEquals(trie.find(bytes), compiled.find(bytes));
+        }
+    }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+
+package com.drew.lang;
+
+import com.drew.tools.FileUtil;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class FileChannelReaderTest extends RandomAccessTestBase
+{
+    private File _tempFile;
+    private RandomAccessFile _randomAccessFile;
+
+    @Override
+    protected RandomAccessReader createReader(byte[] bytes)
+    {
+        try {
+            // Unit tests can create multiple readers in the same test, as long as they're used one after the other
+            deleteTempFile();
+
+            _tempFile = File.createTempFile("metadata-extractor-test-", ".tmp");
+            FileUtil.saveBytes(_tempFile, bytes);
+            _randomAccessFile = new RandomAccessFile(_tempFile, "r");
+            return new FileChannelReader(_randomAccessFile.getChannel());
+        } catch (IOException e) {
+            fail("Unable to create temp file");
+            return null;
+        }
+    }
+
+    @After
+    public void deleteTempFile() throws IOException
+    {
+        if (_randomAccessFile == null)
+            return;
+
+        _randomAccessFile.close();
+
+        if (_tempFile == null)
+            return;
+
+        assertTrue(
+                "Unable to delete temp file used during unit test: " + _tempFile.getAbsolutePath(),
+                _tempFile.delete());
+
+        _tempFile = null;
+        _randomAccessFile = null;
+    }
+
+    @SuppressWarnings({ "ConstantConditions" })
+    @Test(expected = NullPointerException.class)
+    public void testConstructWithNullChannelThrows() throws IOException
+    {
+        new FileChannelReader(null);
+    }
+
+    @Test
+    public void testDuplicateHasIndependentByteOrder() throws IOException
+    {
+        FileChannelReader reader = (FileChannelReader)createReader(new byte[]{0x01, 0x02});
+        FileChannelReader view = reader.duplicate();
+
+        view.setMotorolaByteOrder(false);
+
+        assertEquals(0x0102, reader.getUInt16(0));
+        assertEquals(0x0201, view.getUInt16(0));
+    }
+
+    @Test
+    public void testConcurrentReadsWithDifferentByteOrders() throws Exception
+    {
+        final byte[] bytes = new byte[4096];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte)(i * 13 + (i >> 8));
+
+        final FileChannelReader reader = (FileChannelReader)createReader(bytes);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int t = 0; t < 8; t++) {
+                final boolean motorola = t % 2 == 0;
+                futures.add(executor.submit(new Callable<Void>()
+                {
+                    public Void call() throws Exception
+                    {
+                        FileChannelReader view = reader.duplicate();
+                        view.setMotorolaByteOrder(motorola);
+                        ByteArrayReader expected = new ByteArrayReader(bytes);
+                        expected.setMotorolaByteOrder(motorola);
+                        for (int i = 0; i < bytes.length - 8; i++) {
+                            assertEquals(expected.getInt32(i), view.getInt32(i));
+                            assertEquals(expected.getInt64(i), view.getInt64(i));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
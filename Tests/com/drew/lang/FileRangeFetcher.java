@@ -0,0 +1,62 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.lang;
+
+import com.drew.lang.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * A {@link RangeFetcher} over a local file, standing in for remote storage in unit tests.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class FileRangeFetcher implements RangeFetcher
+{
+    @NotNull
+    private final File _file;
+
+    public FileRangeFetcher(@NotNull File file)
+    {
+        _file = file;
+    }
+
+    public long getLength()
+    {
+        return _file.length();
+    }
+
+    @NotNull
+    public byte[] fetch(long offset, int count) throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile(_file, "r");
+        try {
+            byte[] bytes = new byte[count];
+            file.seek(offset);
+            file.readFully(bytes);
+            return bytes;
+        } finally {
+            file.close();
+        }
+    }
+}
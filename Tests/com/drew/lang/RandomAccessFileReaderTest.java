@@ -30,6 +30,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -83,4 +85,33 @@ public class RandomAccessFileReaderTest extends RandomAccessTestBase
     {
         new RandomAccessFileReader(null);
     }
+
+    @Test
+    public void testReadsSpanningPageBoundaries() throws IOException
+    {
+        byte[] bytes = new byte[50];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte)(i * 7);
+
+        createReader(bytes);
+        RandomAccessReader paged = new RandomAccessFileReader(_randomAccessFile, 0, 5, 2);
+        RandomAccessReader expected = new ByteArrayReader(bytes);
+
+        for (boolean motorola : new boolean[]{true, false}) {
+            paged.setMotorolaByteOrder(motorola);
+            expected.setMotorolaByteOrder(motorola);
+            for (int i = 0; i < bytes.length - 8; i++) {
+                assertEquals(expected.getUInt16(i), paged.getUInt16(i));
+                assertEquals(expected.getInt16(i), paged.getInt16(i));
+                assertEquals(expected.getInt32(i), paged.getInt32(i));
+                assertEquals(expected.getUInt32(i), paged.getUInt32(i));
+                assertEquals(expected.getInt64(i), paged.getInt64(i));
+                assertArrayEquals(expected.getBytes(i, 8), paged.getBytes(i, 8));
+            }
+        }
+
+        // Reading backwards forces evicted pages to be reloaded
+        for (int i = bytes.length - 1; i >= 0; i--)
+            assertEquals(bytes[i], paged.getInt8(i));
+    }
 }
@@ -21,9 +21,18 @@
 
 package com.drew.lang;
 
+import com.drew.lang.annotations.NotNull;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Drew Noakes https://drewnoakes.com
@@ -42,4 +51,212 @@ public class RandomAccessStreamReaderTest extends RandomAccessTestBase
     {
         return new RandomAccessStreamReader(new ByteArrayInputStream(bytes));
     }
+
+    private static byte[] createSequence(int length)
+    {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++)
+            bytes[i] = (byte)(i * 31 + (i >> 8));
+        return bytes;
+    }
+
+    private static void assertBoundedReads(RandomAccessStreamReader reader, byte[] bytes, int maxBufferedBytes) throws IOException
+    {
+        RandomAccessReader expected = new ByteArrayReader(bytes);
+
+        // Jump forwards and backwards, as TIFF IFD traversal does
+        int[] indexes = { 10, 900, 5, 450, 990, 0, 333, 899, 16, 600 };
+        for (int index : indexes) {
+            assertEquals(expected.getInt32(index), reader.getInt32(index));
+            assertArrayEquals(expected.getBytes(index, 7), reader.getBytes(index, 7));
+            assertTrue(reader.getBufferedByteCount() <= maxBufferedBytes);
+        }
+
+        assertEquals(bytes.length, reader.getLength());
+        assertTrue(reader.getBufferedByteCount() <= maxBufferedBytes);
+    }
+
+    @Test
+    public void testBoundedMemoryWithSpillToDisk() throws Exception
+    {
+        byte[] bytes = createSequence(1000);
+
+        // Use a stream that doesn't support mark/reset, as with a socket or file stream
+        RandomAccessStreamReader reader = new RandomAccessStreamReader(
+            new FilterInputStream(new ByteArrayInputStream(bytes)) {
+                @Override
+                public boolean markSupported()
+                {
+                    return false;
+                }
+            },
+            16, -1, 64, RandomAccessStreamReader.EvictionPolicy.SPILL_TO_DISK);
+
+        try {
+            assertBoundedReads(reader, bytes, 64);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static RandomAccessStreamReader.StreamSource createStreamSource(final byte[] bytes, final int[] openCount)
+    {
+        return new RandomAccessStreamReader.StreamSource()
+        {
+            @NotNull
+            public InputStream open()
+            {
+                openCount[0]++;
+                return new ByteArrayInputStream(bytes);
+            }
+        };
+    }
+
+    @Test
+    public void testBoundedMemoryWithStreamReopen() throws Exception
+    {
+        byte[] bytes = createSequence(1000);
+        int[] openCount = new int[1];
+
+        RandomAccessStreamReader reader = new RandomAccessStreamReader(createStreamSource(bytes, openCount), 16, 16, -1, 64);
+
+        try {
+            assertBoundedReads(reader, bytes, 64);
+        } finally {
+            reader.close();
+        }
+
+        // Evicted chunks were re-read from new streams
+        assertTrue(openCount[0] > 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStreamReopenRequiresStreamSource()
+    {
+        new RandomAccessStreamReader(new ByteArrayInputStream(new byte[10]), 16, -1, 64, RandomAccessStreamReader.EvictionPolicy.REOPEN_STREAM);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBoundedMemoryRequiresEvictionPolicy()
+    {
+        new RandomAccessStreamReader(new ByteArrayInputStream(new byte[10]), 16, -1, 64, null);
+    }
+
+    @Test
+    public void testSparseSkipsUnrequestedChunks() throws Exception
+    {
+        byte[] bytes = createSequence(1000);
+        RandomAccessReader expected = new ByteArrayReader(bytes);
+
+        RandomAccessStreamReader reader = new RandomAccessStreamReader(new ByteArrayInputStream(bytes), 16);
+        reader.setSparse(true);
+
+        assertEquals(expected.getInt32(0), reader.getInt32(0));
+        assertEquals(expected.getInt32(500), reader.getInt32(500));
+        assertArrayEquals(expected.getBytes(990, 10), reader.getBytes(990, 10));
+
+        // Only the chunks holding the requested bytes are buffered
+        assertEquals(16 * 4, reader.getBufferedByteCount());
+        assertEquals(1000, reader.getLength());
+
+        try {
+            reader.getInt32(100);
+            fail("Expecting exception");
+        } catch (IOException e) {
+            assertEquals("Data at index 96 was skipped and cannot be re-read from the stream", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testSparseReReadsHolesFromReopenedStream() throws Exception
+    {
+        byte[] bytes = createSequence(1000);
+        RandomAccessReader expected = new ByteArrayReader(bytes);
+
+        RandomAccessStreamReader reader = new RandomAccessStreamReader(createStreamSource(bytes, new int[1]), 16, 16, -1, -1);
+        reader.setSparse(true);
+
+        assertEquals(expected.getInt32(500), reader.getInt32(500));
+        assertEquals(expected.getInt32(100), reader.getInt32(100));
+        assertEquals(expected.getInt32(700), reader.getInt32(700));
+        assertEquals(expected.getInt32(92), reader.getInt32(92));
+        assertEquals(16 * 4, reader.getBufferedByteCount());
+    }
+
+    @Test
+    public void testSparseRequestBeyondEndOfStream() throws Exception
+    {
+        RandomAccessStreamReader reader = new RandomAccessStreamReader(new ByteArrayInputStream(new byte[100]), 16);
+        reader.setSparse(true);
+
+        try {
+            reader.getInt32(200);
+            fail("Expecting exception");
+        } catch (BufferBoundsException ignored) {}
+
+        assertEquals(100, reader.getLength());
+        assertEquals(0, reader.getBufferedByteCount());
+    }
+
+    @Test
+    public void testSparseGetLengthOfUnknownLengthStream() throws Exception
+    {
+        byte[] bytes = createSequence(5000000);
+        RandomAccessReader expected = new ByteArrayReader(bytes);
+
+        RandomAccessStreamReader reader = new RandomAccessStreamReader(createStreamSource(bytes, new int[1]), 2048, 2048, -1, -1);
+        reader.setSparse(true);
+
+        try {
+            assertEquals(expected.getInt32(0), reader.getInt32(0));
+
+            // Determining the length skips to the end of the stream, spanning many more chunks than fit in an int
+            assertEquals(5000000, reader.getLength());
+
+            assertEquals(expected.getInt32(4999996), reader.getInt32(4999996));
+            assertEquals(expected.getInt32(2500000), reader.getInt32(2500000));
+            assertEquals(2048 * 3, reader.getBufferedByteCount());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testGrowingChunks() throws Exception
+    {
+        byte[] bytes = createSequence(100000);
+        RandomAccessReader expected = new ByteArrayReader(bytes);
+
+        RandomAccessStreamReader reader = new RandomAccessStreamReader(new ByteArrayInputStream(bytes), 16, 1024, -1);
+
+        // Reads spanning the boundaries of growing chunks, and of full length chunks
+        for (int index : new int[] { 0, 14, 46, 110, 1006, 2030, 50000, 99996 }) {
+            assertEquals(expected.getInt32(index), reader.getInt32(index));
+            assertArrayEquals(expected.getBytes(index, 4), reader.getBytes(index, 4));
+        }
+        assertArrayEquals(bytes, reader.getBytes(0, bytes.length));
+        assertEquals(100000, reader.getLength());
+
+        // Six growing chunks of 16..512 bytes, then ceil((100000 - 1008) / 1024) full length chunks
+        assertEquals(6 + 97, reader.getChunkAllocationCount());
+    }
+
+    @Test
+    public void testGrowingChunksWithSpillToDisk() throws Exception
+    {
+        byte[] bytes = createSequence(5000);
+        RandomAccessStreamReader reader = new RandomAccessStreamReader(
+            new ByteArrayInputStream(bytes), 16, 256, -1, 512, RandomAccessStreamReader.EvictionPolicy.SPILL_TO_DISK);
+        try {
+            assertBoundedReads(reader, bytes, 512);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxChunkLengthMustNotBeLessThanInitialChunkLength()
+    {
+        new RandomAccessStreamReader(new ByteArrayInputStream(new byte[10]), 16, 8, -1);
+    }
 }
@@ -25,6 +25,7 @@ import org.junit.Test;
 
 import java.io.IOException;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -289,8 +290,22 @@ public abstract class RandomAccessTestBase
 
         try {
             reader.getBytes(0x6FFFFFFF, 0x6FFFFFFF);
+            fail("Expecting exception");
         } catch (IOException e) {
-            assertEquals("Number of requested bytes summed with starting index exceed maximum range of signed 32 bit integers (requested index: 1879048191, requested count: 1879048191)", e.getMessage());
+            assertEquals("Attempt to read from beyond end of underlying data source (requested index: 1879048191, requested count: 1879048191, max index: 9)", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testIndexBeyondIntMaxValue()
+    {
+        RandomAccessReader reader = createReader(new byte[10]);
+
+        try {
+            reader.getInt32(0x100000000L);
+            fail("Expecting exception");
+        } catch (IOException e) {
+            assertEquals("Attempt to read from beyond end of underlying data source (requested index: 4294967296, requested count: 4, max index: 9)", e.getMessage());
         }
     }
 
@@ -336,4 +351,64 @@ public abstract class RandomAccessTestBase
             fail("Expecting exception");
         } catch (IOException ignored) {}
     }
+
+    @Test
+    public void testBulkArrayGettersMatchSingleValueGetters() throws Exception
+    {
+        byte[] buffer = new byte[83];
+        for (int i = 0; i < buffer.length; i++)
+            buffer[i] = (byte)(i * 37 + 11);
+
+        for (boolean motorola : new boolean[]{true, false}) {
+            RandomAccessReader reader = createReader(buffer);
+            reader.setMotorolaByteOrder(motorola);
+
+            // Start at an odd index, so values are unaligned
+            final int index = 3;
+            final int count = 9;
+
+            short[] uint8s = reader.getUInt8Array(index, count);
+            short[] int16s = reader.getInt16Array(index, count);
+            int[] uint16s = reader.getUInt16Array(index, count);
+            int[] int32s = reader.getInt32Array(index, count);
+            long[] uint32s = reader.getUInt32Array(index, count);
+            long[] int64s = reader.getInt64Array(index, count);
+            float[] float32s = reader.getFloat32Array(index, count);
+            double[] double64s = reader.getDouble64Array(index, count);
+            Rational[] rationals = reader.getRationalArray(index, count, false);
+            Rational[] signedRationals = reader.getRationalArray(index, count, true);
+
+            for (int i = 0; i < count; i++) {
+                assertEquals(reader.getUInt8(index + i), uint8s[i]);
+                assertEquals(reader.getInt16(index + i * 2), int16s[i]);
+                assertEquals(reader.getUInt16(index + i * 2), uint16s[i]);
+                assertEquals(reader.getInt32(index + i * 4), int32s[i]);
+                assertEquals(reader.getUInt32(index + i * 4), uint32s[i]);
+                assertEquals(reader.getInt64(index + i * 8), int64s[i]);
+                assertEquals(reader.getFloat32(index + i * 4), float32s[i], 0);
+                assertEquals(reader.getDouble64(index + i * 8), double64s[i], 0);
+                assertEquals(new Rational(reader.getUInt32(index + i * 8), reader.getUInt32(index + i * 8 + 4)), rationals[i]);
+                assertEquals(new Rational(reader.getInt32(index + i * 8), reader.getInt32(index + i * 8 + 4)), signedRationals[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testBulkArrayGettersEOF() throws Exception
+    {
+        RandomAccessReader reader = createReader(new byte[16]);
+
+        assertArrayEquals(new long[2], reader.getInt64Array(0, 2));
+        assertEquals(0, reader.getInt64Array(16, 0).length);
+
+        try {
+            reader.getInt64Array(8, 2);
+            fail("Expecting exception");
+        } catch (IOException ignored) {}
+
+        try {
+            reader.getUInt16Array(0, -1);
+            fail("Expecting exception");
+        } catch (IOException ignored) {}
+    }
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.lang;
+
+import com.drew.imaging.ReadOptions;
+import com.drew.imaging.tiff.TiffMetadataReader;
+import com.drew.metadata.Directory;
+import com.drew.metadata.Metadata;
+import com.drew.tools.FileUtil;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class RangeFetchReaderTest extends RandomAccessTestBase
+{
+    private File _tempFile;
+
+    @Override
+    protected RandomAccessReader createReader(byte[] bytes)
+    {
+        try {
+            return new RangeFetchReader(createFetcher(bytes), 4, 1, 4);
+        } catch (IOException e) {
+            fail("Unable to create temp file");
+            return null;
+        }
+    }
+
+    private FileRangeFetcher createFetcher(byte[] bytes) throws IOException
+    {
+        // Unit tests can create multiple readers in the same test, as long as they're used one after the other
+        deleteTempFile();
+
+        _tempFile = File.createTempFile("metadata-extractor-test-", ".tmp");
+        FileUtil.saveBytes(_tempFile, bytes);
+        return new FileRangeFetcher(_tempFile);
+    }
+
+    @After
+    public void deleteTempFile()
+    {
+        if (_tempFile == null)
+            return;
+
+        assertTrue(
+                "Unable to delete temp file used during unit test: " + _tempFile.getAbsolutePath(),
+                _tempFile.delete());
+
+        _tempFile = null;
+    }
+
+    @SuppressWarnings({ "ConstantConditions" })
+    @Test(expected = NullPointerException.class)
+    public void testConstructWithNullFetcherThrows() throws IOException
+    {
+        new RangeFetchReader(null);
+    }
+
+    @Test
+    public void testCoalescesAndCachesFetches() throws IOException
+    {
+        byte[] bytes = new byte[100];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte)i;
+
+        RangeFetchReader reader = new RangeFetchReader(createFetcher(bytes), 10, 2, 5);
+
+        // A read spanning blocks 0 and 1 fetches them with blocks 2 and 3 as read-ahead
+        assertArrayEquals(Arrays.copyOfRange(bytes, 5, 15), reader.getBytes(5, 10));
+        assertEquals(1, reader.getFetchCount());
+
+        assertEquals(35, reader.getInt8(35));
+        assertEquals(1, reader.getFetchCount());
+
+        // Prefetching a range up front means reading it costs nothing further
+        reader.prefetch(70, 20);
+        assertEquals(2, reader.getFetchCount());
+        assertEquals(0x4647, reader.getUInt16(70));
+        assertEquals(89, reader.getInt8(89));
+        assertEquals(2, reader.getFetchCount());
+
+        // Read-ahead from the prefetch covered the final block, and prefetching beyond the end is truncated
+        reader.prefetch(95, 100);
+        assertEquals(99, reader.getInt8(99));
+        assertEquals(2, reader.getFetchCount());
+
+        // Reads too large for the cache pass straight through
+        assertArrayEquals(bytes, reader.getBytes(0, 100));
+        assertEquals(3, reader.getFetchCount());
+    }
+
+    @Test
+    public void testTiffHeaderCostsFewFetches() throws Exception
+    {
+        // Strip the "Exif\0\0" preamble to leave TIFF data
+        byte[] app1 = FileUtil.readBytes("Tests/Data/nikonMakernoteType1.jpg.app1");
+        byte[] tiff = Arrays.copyOfRange(app1, 6, app1.length);
+
+        RangeFetchReader reader = new RangeFetchReader(createFetcher(tiff));
+        Metadata fetched = TiffMetadataReader.readMetadata(reader);
+        Metadata expected = TiffMetadataReader.readMetadata(new ByteArrayReader(tiff));
+
+        assertTrue(reader.getFetchCount() <= 3);
+
+        Iterator<Directory> expectedDirectories = expected.getDirectories().iterator();
+        for (Directory directory : fetched.getDirectories()) {
+            Directory expectedDirectory = expectedDirectories.next();
+            assertEquals(expectedDirectory.getClass(), directory.getClass());
+            assertEquals(expectedDirectory.getTagCount(), directory.getTagCount());
+        }
+        assertFalse(expectedDirectories.hasNext());
+    }
+
+    @Test
+    public void testTiffPrefetchReducesFetches() throws Exception
+    {
+        byte[] app1 = FileUtil.readBytes("Tests/Data/nikonMakernoteType1.jpg.app1");
+        byte[] tiff = Arrays.copyOfRange(app1, 6, app1.length);
+
+        // Small blocks without read-ahead make each separately located range cost a fetch
+        RangeFetchReader plainReader = new RangeFetchReader(createFetcher(tiff), 64, 0, 1024);
+        Metadata plain = TiffMetadataReader.readMetadata(plainReader);
+
+        RangeFetchReader prefetchReader = new RangeFetchReader(createFetcher(tiff), 64, 0, 1024);
+        Metadata prefetched = TiffMetadataReader.readMetadata(prefetchReader, null, new ReadOptions().setPrefetchRanges(true));
+
+        assertTrue(prefetchReader.getFetchCount() < plainReader.getFetchCount());
+
+        Iterator<Directory> plainDirectories = plain.getDirectories().iterator();
+        for (Directory directory : prefetched.getDirectories()) {
+            Directory plainDirectory = plainDirectories.next();
+            assertEquals(plainDirectory.getClass(), directory.getClass());
+            assertEquals(plainDirectory.getTagCount(), directory.getTagCount());
+        }
+        assertFalse(plainDirectories.hasNext());
+    }
+}
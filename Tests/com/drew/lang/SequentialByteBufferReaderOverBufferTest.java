@@ -0,0 +1,57 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.lang;
+
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the sequential access tests against a {@link SequentialByteBufferReader} constructed over a {@link ByteBuffer}.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class SequentialByteBufferReaderOverBufferTest extends SequentialAccessTestBase
+{
+    @Override
+    protected SequentialReader createReader(byte[] bytes)
+    {
+        return new SequentialByteBufferReader(ByteBuffer.wrap(bytes));
+    }
+
+    @Test
+    public void testGetBytesBeyondBufferAfterPartialRead() throws IOException
+    {
+        SequentialReader reader = createReader(new byte[10]);
+        reader.getBytes(4);
+
+        try {
+            reader.getBytes(new byte[20], 0, 20);
+            fail("Expecting exception");
+        } catch (EOFException e) {
+            assertEquals("End of data reached.", e.getMessage());
+        }
+    }
+}
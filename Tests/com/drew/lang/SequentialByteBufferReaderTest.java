@@ -0,0 +1,136 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.lang;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class SequentialByteBufferReaderTest extends SequentialAccessTestBase
+{
+    @SuppressWarnings({"ConstantConditions"})
+    @Test(expected = NullPointerException.class)
+    public void testConstructWithNullStreamThrows()
+    {
+        new SequentialByteBufferReader((ByteBuffer)null);
+    }
+
+    @Override
+    protected SequentialReader createReader(byte[] bytes)
+    {
+        return new SequentialByteBufferReader(new ByteArrayInputStream(bytes));
+    }
+
+    @Test
+    public void testValuesSpanningRefillsMatchStreamReader() throws IOException
+    {
+        byte[] bytes = new byte[1000];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte)(i * 31 + 7);
+
+        // A small window forces multi-byte values to straddle refills
+        SequentialByteBufferReader reader = new SequentialByteBufferReader(new ByteArrayInputStream(bytes), 64);
+        StreamReader expected = new StreamReader(new ByteArrayInputStream(bytes));
+
+        while (expected.getPosition() + 8 <= bytes.length) {
+            assertEquals(expected.getInt32(), reader.getInt32());
+            assertEquals(expected.getInt16(), reader.getInt16());
+            reader.setMotorolaByteOrder(false);
+            expected.setMotorolaByteOrder(false);
+            assertEquals(expected.getUInt16(), reader.getUInt16());
+            assertEquals(expected.getInt8(), reader.getInt8());
+            reader.setMotorolaByteOrder(true);
+            expected.setMotorolaByteOrder(true);
+            assertEquals(expected.getPosition(), reader.getPosition());
+        }
+
+        reader.close();
+    }
+
+    @Test
+    public void testGetBytesLargerThanWindow() throws IOException
+    {
+        byte[] bytes = new byte[500];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte)i;
+
+        SequentialByteBufferReader reader = new SequentialByteBufferReader(Channels.newChannel(new ByteArrayInputStream(bytes)), 64);
+
+        assertEquals(0x00010203, reader.getInt32());
+        byte[] large = reader.getBytes(300);
+        assertEquals((byte)4, large[0]);
+        assertEquals((byte)303, large[299]);
+        assertEquals(304, reader.getPosition());
+
+        reader.skip(100);
+        assertEquals(404, reader.getPosition());
+        assertEquals((byte)404, reader.getByte());
+        assertFalse(reader.trySkip(100));
+
+        reader.close();
+    }
+
+    @Test
+    public void testSliceOfBufferSharesContent() throws IOException
+    {
+        byte[] bytes = new byte[]{0, 1, 2, 3, 4, 5, 6, 7};
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(2);
+
+        SequentialByteBufferReader reader = new SequentialByteBufferReader(buffer);
+
+        assertEquals(2, reader.getByte());
+        ByteBuffer slice = reader.getSlice(3);
+        assertEquals(3, slice.remaining());
+        assertEquals(6, reader.getByte());
+        assertEquals(5, reader.getPosition());
+
+        bytes[3] = 42;
+        assertEquals(42, slice.get(0));
+
+        // The source buffer is untouched
+        assertEquals(2, buffer.position());
+    }
+
+    @Test
+    public void testClosedWindowIsReused() throws IOException
+    {
+        SequentialByteBufferReader reader = new SequentialByteBufferReader(new ByteArrayInputStream(new byte[10]), 4096);
+        reader.getBytes(10);
+        reader.close();
+
+        byte[] array = BufferPool.borrowArray(4096);
+        byte[] other = BufferPool.borrowArray(4096);
+        assertNotSame(array, other);
+        BufferPool.release(array);
+        assertSame(array, BufferPool.borrowArray(4096));
+        BufferPool.release(array);
+        BufferPool.release(other);
+    }
+}
@@ -26,6 +26,7 @@ import com.drew.metadata.exif.ExifSubIFDDirectory;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.TimeZone;
@@ -246,4 +247,90 @@ public class DirectoryTest
         directory.setString(2, "Tag 2");
         assertEquals("Exif IFD0 Directory (2 tags)", directory.toString());
     }
+
+    @Test
+    public void testDeferredValueIsDecodedOnceOnFirstAccess() throws Exception
+    {
+        final int[] decodeCount = new int[1];
+        _directory.setDeferredValue(1, new DeferredTagValue()
+        {
+            public Object decode()
+            {
+                decodeCount[0]++;
+                return 123;
+            }
+        });
+
+        assertTrue(_directory.containsTag(1));
+        assertEquals(0, decodeCount[0]);
+
+        assertEquals(123, _directory.getInt(1));
+        assertEquals("123", _directory.getString(1));
+        assertEquals(1, decodeCount[0]);
+    }
+
+    @Test
+    public void testDeferredValueThatFailsToDecodeAddsError() throws Exception
+    {
+        _directory.setDeferredValue(1, new DeferredTagValue()
+        {
+            public Object decode() throws IOException
+            {
+                throw new IOException("Truncated");
+            }
+        });
+
+        assertNull(_directory.getObject(1));
+        assertNull(_directory.getObject(1));
+        assertEquals(1, _directory.getErrorCount());
+
+        // The tag remains defined, and is consistently reported as such
+        assertTrue(_directory.containsTag(1));
+        assertEquals(1, _directory.getTagCount());
+        assertEquals(1, _directory.getTags().iterator().next().getTagType());
+        assertNull(_directory.getString(1));
+    }
+
+    @Test
+    public void testDeferredValuesDecodedOnceAcrossThreads() throws Exception
+    {
+        final int[] decodeCount = new int[1];
+        for (int tagType = 0; tagType < 100; tagType++) {
+            final int value = tagType;
+            _directory.setDeferredValue(tagType, new DeferredTagValue()
+            {
+                public Object decode()
+                {
+                    synchronized (decodeCount) {
+                        decodeCount[0]++;
+                    }
+                    return value;
+                }
+            });
+        }
+
+        Thread[] threads = new Thread[4];
+        final Throwable[] failure = new Throwable[1];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    try {
+                        for (int tagType = 0; tagType < 100; tagType++)
+                            assertEquals(tagType, _directory.getInt(tagType));
+                    } catch (Throwable e) {
+                        failure[0] = e;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        assertNull(failure[0]);
+        assertEquals(100, decodeCount[0]);
+    }
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata;
+
+import com.drew.metadata.exif.ExifDirectoryBase;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifSubIFDDirectory;
+import com.drew.metadata.exif.GpsDirectory;
+import com.drew.metadata.iptc.IptcDirectory;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class ExtractionSpecTest
+{
+    @Test
+    public void testIncludesDirectory()
+    {
+        ExtractionSpec spec = new ExtractionSpec().addDirectory(GpsDirectory.class);
+
+        assertTrue(spec.includesDirectory(GpsDirectory.class));
+        assertFalse(spec.includesDirectory(ExifIFD0Directory.class));
+        assertTrue(spec.includesTag(GpsDirectory.class, GpsDirectory.TAG_LATITUDE));
+        assertTrue(spec.includesAnyDirectory(Arrays.<Class<? extends Directory>>asList(IptcDirectory.class, GpsDirectory.class)));
+        assertFalse(spec.includesAnyDirectory(Arrays.<Class<? extends Directory>>asList(IptcDirectory.class, ExifIFD0Directory.class)));
+    }
+
+    @Test
+    public void testIncludesTag()
+    {
+        ExtractionSpec spec = new ExtractionSpec()
+            .addTags(ExifIFD0Directory.class, ExifIFD0Directory.TAG_ORIENTATION)
+            .addTags(ExifIFD0Directory.class, ExifIFD0Directory.TAG_MAKE, ExifIFD0Directory.TAG_MODEL);
+
+        assertTrue(spec.includesDirectory(ExifIFD0Directory.class));
+        assertTrue(spec.includesTag(ExifIFD0Directory.class, ExifIFD0Directory.TAG_ORIENTATION));
+        assertTrue(spec.includesTag(ExifIFD0Directory.class, ExifIFD0Directory.TAG_MAKE));
+        assertTrue(spec.includesTag(ExifIFD0Directory.class, ExifIFD0Directory.TAG_MODEL));
+        assertFalse(spec.includesTag(ExifIFD0Directory.class, ExifIFD0Directory.TAG_SOFTWARE));
+        assertFalse(spec.includesTag(GpsDirectory.class, ExifIFD0Directory.TAG_ORIENTATION));
+    }
+
+    @Test
+    public void testAddDirectoryWidensTags()
+    {
+        ExtractionSpec spec = new ExtractionSpec()
+            .addTags(ExifIFD0Directory.class, ExifIFD0Directory.TAG_ORIENTATION)
+            .addDirectory(ExifIFD0Directory.class)
+            .addTags(ExifIFD0Directory.class, ExifIFD0Directory.TAG_MAKE);
+
+        assertTrue(spec.includesTag(ExifIFD0Directory.class, ExifIFD0Directory.TAG_SOFTWARE));
+    }
+
+    @Test
+    public void testBaseTypeIncludesSubclasses()
+    {
+        ExtractionSpec spec = new ExtractionSpec().addTags(ExifDirectoryBase.class, ExifDirectoryBase.TAG_DATETIME_ORIGINAL);
+
+        assertTrue(spec.includesDirectory(ExifIFD0Directory.class));
+        assertTrue(spec.includesTag(ExifSubIFDDirectory.class, ExifDirectoryBase.TAG_DATETIME_ORIGINAL));
+        assertFalse(spec.includesTag(ExifSubIFDDirectory.class, ExifDirectoryBase.TAG_MAKE));
+        assertFalse(spec.includesDirectory(IptcDirectory.class));
+    }
+}
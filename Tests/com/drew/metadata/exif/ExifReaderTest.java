@@ -26,11 +26,17 @@ import com.drew.lang.Rational;
 import com.drew.lang.annotations.NotNull;
 import com.drew.metadata.Directory;
 import com.drew.metadata.Metadata;
+import com.drew.metadata.Tag;
 import com.drew.tools.FileUtil;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.junit.Assert.*;
 
@@ -191,6 +197,63 @@ public class ExifReaderTest
         assertEquals(8, thumbnailDirectory.getInt(ExifThumbnailDirectory.TAG_ORIENTATION));
     }
 
+    @Test
+    public void testDeferredTagValuesMatchEagerValues() throws Exception
+    {
+        String[] filePaths = {
+            "Tests/Data/withExif.jpg.app1",
+            "Tests/Data/nikonMakernoteType2a.jpg.app1",
+            "Tests/Data/sonyType1.jpg.app1",
+            "Tests/Data/withPanasonicFaces.jpg.app1",
+            "Tests/Data/withUncompressedRGBThumbnail.jpg.app1"
+        };
+
+        for (String filePath : filePaths) {
+            byte[] bytes = FileUtil.readBytes(filePath);
+            Metadata eager = new Metadata();
+            new ExifReader().extract(new ByteArrayReader(bytes), eager, ExifReader.JPEG_SEGMENT_PREAMBLE.length(), null);
+            Metadata deferred = new Metadata();
+            new ExifReader(true).extract(new ByteArrayReader(bytes), deferred, ExifReader.JPEG_SEGMENT_PREAMBLE.length(), null);
+
+            assertEquals(filePath, describe(eager), describe(deferred));
+        }
+    }
+
+    @Test
+    public void testDirectoryTypesMatchThoseTheHandlerAdds() throws Exception
+    {
+        // DIRECTORY_TYPES is maintained by hand, so check it against the directories the handlers' sources refer to
+        Set<String> referenced = new TreeSet<String>();
+        Pattern pattern = Pattern.compile("(?:new (\\w+Directory)\\(\\)|(\\w+Directory)\\.class)");
+        for (String sourcePath : new String[] { "Source/com/drew/metadata/exif/ExifTiffHandler.java", "Source/com/drew/metadata/tiff/DirectoryTiffHandler.java" }) {
+            Matcher matcher = pattern.matcher(new String(FileUtil.readBytes(sourcePath), "UTF-8"));
+            while (matcher.find())
+                referenced.add(matcher.group(1) != null ? matcher.group(1) : matcher.group(2));
+        }
+
+        Set<String> declared = new TreeSet<String>();
+        for (Class<? extends Directory> type : ExifReader.DIRECTORY_TYPES)
+            declared.add(type.getSimpleName());
+
+        assertEquals(referenced, declared);
+    }
+
+    @NotNull
+    private static List<String> describe(@NotNull Metadata metadata)
+    {
+        List<String> lines = new ArrayList<String>();
+        for (Directory directory : metadata.getDirectories()) {
+            for (Tag tag : directory.getTags()) {
+                Object value = directory.getObject(tag.getTagType());
+                String type = value == null ? "null" : value.getClass().getName();
+                lines.add(directory.getName() + " " + tag.getTagName() + " (" + type + ") " + tag.getDescription());
+            }
+            for (String error : directory.getErrors())
+                lines.add(directory.getName() + " error " + error);
+        }
+        return lines;
+    }
+
 /*
     public void testUncompressedYCbCrThumbnail() throws Exception
     {
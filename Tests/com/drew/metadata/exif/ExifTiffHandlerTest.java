@@ -0,0 +1,220 @@
+/*
+ * Copyright 2002-2017 Drew Noakes
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ * More information about this project is available at:
+ *
+ *    https://drewnoakes.com/code/exif/
+ *    https://github.com/drewnoakes/metadata-extractor
+ */
+package com.drew.metadata.exif;
+
+import com.drew.lang.ByteArrayReader;
+import com.drew.lang.annotations.NotNull;
+import com.drew.metadata.Directory;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.makernotes.*;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the identification of makernotes by {@link ExifTiffHandler}, using Exif data whose makernote begins with a
+ * given signature, followed by an IFD holding a single tag.
+ *
+ * @author Drew Noakes https://drewnoakes.com
+ */
+public class ExifTiffHandlerTest
+{
+    private static final int TEST_TAG = 0x7FFF;
+
+    @Test
+    public void testOlympusSignatures() throws Exception
+    {
+        // The IFD follows an eight byte header
+        assertTagValue(OlympusMakernoteDirectory.class, extract("OLYMPUS", makernote("OLYMP\0\1\0", true)));
+
+        // A twelve byte header, whose first five bytes match the signature above
+        assertTagValue(OlympusMakernoteDirectory.class, extract("OLYMPUS", makernote("OLYMPUS\0II\3\0", true)));
+    }
+
+    @Test
+    public void testSonySignatures() throws Exception
+    {
+        // Sony makernotes are identified by make when they lack a header
+        assertTagValue(SonyType1MakernoteDirectory.class, extract("SONY", makernote("", true)));
+
+        // A signature takes precedence over the make
+        assertTagValue(SonyType1MakernoteDirectory.class, extract("SONY", makernote("SONY DSC \0\0\0", true)));
+    }
+
+    @Test
+    public void testReconyxPrecedence() throws Exception
+    {
+        byte[] hyperFire = new byte[256];
+        hyperFire[0] = (byte)(ReconyxHyperFireMakernoteDirectory.MAKERNOTE_VERSION >> 8);
+        hyperFire[1] = (byte)ReconyxHyperFireMakernoteDirectory.MAKERNOTE_VERSION;
+
+        Metadata metadata = extract("Unknown", hyperFire);
+        assertTrue(metadata.containsDirectoryOfType(ReconyxHyperFireMakernoteDirectory.class));
+        assertFalse(metadata.containsDirectoryOfType(ReconyxUltraFireMakernoteDirectory.class));
+
+        // UltraFire's signature is matched regardless of case
+        metadata = extract("Unknown", padded("reconyxuf"));
+        assertTrue(metadata.containsDirectoryOfType(ReconyxUltraFireMakernoteDirectory.class));
+
+        // Makernotes identified before Reconyx are preferred to it
+        metadata = extract("Canon", hyperFire);
+        assertTrue(metadata.containsDirectoryOfType(CanonMakernoteDirectory.class));
+        assertFalse(metadata.containsDirectoryOfType(ReconyxHyperFireMakernoteDirectory.class));
+
+        // Though Reconyx is preferred to those identified after it
+        metadata = extract("SAMSUNG", padded("RECONYXUF"));
+        assertTrue(metadata.containsDirectoryOfType(ReconyxUltraFireMakernoteDirectory.class));
+        assertFalse(metadata.containsDirectoryOfType(SamsungType2MakernoteDirectory.class));
+    }
+
+    @Test
+    public void testLeicaSignatures() throws Exception
+    {
+        // Leica makernotes are always in Intel byte order
+        assertTagValue(LeicaType5MakernoteDirectory.class, extract("LEICA CAMERA AG", makernote("LEICA\0\5\0", false)));
+
+        // Otherwise the type depends on the make
+        assertTagValue(LeicaMakernoteDirectory.class, extract("Leica Camera AG", makernote("LEICA\0\0\0", false)));
+        assertTagValue(PanasonicMakernoteDirectory.class, extract("LEICA", makernote("LEICA\0\0\0", false)));
+
+        Metadata metadata = extract("Unknown", makernote("LEICA\0\0\0", false));
+        assertFalse(metadata.containsDirectoryOfType(LeicaMakernoteDirectory.class));
+        assertFalse(metadata.containsDirectoryOfType(PanasonicMakernoteDirectory.class));
+    }
+
+    @Test
+    public void testKodakByteOrder() throws Exception
+    {
+        // Kodak makernotes hold values at fixed offsets, the image width being at offset 20
+        byte[] bytes = padded("KDK INFO");
+        bytes[20] = 0x01;
+        bytes[21] = 0x02;
+        KodakMakernoteDirectory directory = extract("EASTMAN KODAK COMPANY", bytes).getFirstDirectoryOfType(KodakMakernoteDirectory.class);
+        assertNotNull(directory);
+        assertEquals(0x0102, directory.getInt(KodakMakernoteDirectory.TAG_IMAGE_WIDTH));
+
+        bytes = padded("KDK");
+        bytes[20] = 0x01;
+        bytes[21] = 0x02;
+        directory = extract("EASTMAN KODAK COMPANY", bytes).getFirstDirectoryOfType(KodakMakernoteDirectory.class);
+        assertNotNull(directory);
+        assertEquals(0x0201, directory.getInt(KodakMakernoteDirectory.TAG_IMAGE_WIDTH));
+    }
+
+    private static void assertTagValue(@NotNull Class<? extends Directory> directoryType, @NotNull Metadata metadata) throws Exception
+    {
+        Directory directory = metadata.getFirstDirectoryOfType(directoryType);
+        assertNotNull(directoryType.getSimpleName(), directory);
+        assertEquals(3, directory.getInt(TEST_TAG));
+    }
+
+    /** Gets <code>header</code> followed by an IFD holding a single SHORT tag, with a value of three. */
+    @NotNull
+    private static byte[] makernote(@NotNull String header, boolean motorola) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(header.getBytes("ISO-8859-1"));
+        writeShort(bytes, 1, motorola);
+        writeShort(bytes, TEST_TAG, motorola);
+        writeShort(bytes, 3, motorola);
+        writeInt(bytes, 1, motorola);
+        writeShort(bytes, 3, motorola);
+        writeShort(bytes, 0, motorola);
+        writeInt(bytes, 0, motorola);
+        bytes.write(new byte[32]);
+        return bytes.toByteArray();
+    }
+
+    @NotNull
+    private static byte[] padded(@NotNull String header) throws IOException
+    {
+        byte[] bytes = new byte[128];
+        byte[] headerBytes = header.getBytes("ISO-8859-1");
+        System.arraycopy(headerBytes, 0, bytes, 0, headerBytes.length);
+        return bytes;
+    }
+
+    /** Reads Motorola-ordered TIFF data having an IFD0 with a Make tag, and a SubIFD holding only a makernote. */
+    @NotNull
+    private static Metadata extract(@NotNull String make, @NotNull byte[] makernote) throws IOException
+    {
+        byte[] makeBytes = (make + "\0").getBytes("ISO-8859-1");
+        int makeOffset = 8 + 2 + 2 * 12 + 4;
+        int subIfdOffset = makeOffset + makeBytes.length;
+        int makernoteOffset = subIfdOffset + 2 + 12 + 4;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream stream = new DataOutputStream(bytes);
+        stream.writeBytes("MM");
+        stream.writeShort(42);
+        stream.writeInt(8);
+
+        stream.writeShort(2);
+        stream.writeShort(ExifIFD0Directory.TAG_MAKE);
+        stream.writeShort(2);
+        stream.writeInt(makeBytes.length);
+        stream.writeInt(makeOffset);
+        stream.writeShort(ExifIFD0Directory.TAG_EXIF_SUB_IFD_OFFSET);
+        stream.writeShort(4);
+        stream.writeInt(1);
+        stream.writeInt(subIfdOffset);
+        stream.writeInt(0);
+        stream.write(makeBytes);
+
+        stream.writeShort(1);
+        stream.writeShort(ExifSubIFDDirectory.TAG_MAKERNOTE);
+        stream.writeShort(7);
+        stream.writeInt(makernote.length);
+        stream.writeInt(makernoteOffset);
+        stream.writeInt(0);
+        stream.write(makernote);
+
+        Metadata metadata = new Metadata();
+        new ExifReader().extract(new ByteArrayReader(bytes.toByteArray()), metadata);
+        return metadata;
+    }
+
+    private static void writeShort(@NotNull ByteArrayOutputStream bytes, int value, boolean motorola)
+    {
+        if (motorola) {
+            bytes.write(value >> 8);
+            bytes.write(value);
+        } else {
+            bytes.write(value);
+            bytes.write(value >> 8);
+        }
+    }
+
+    private static void writeInt(@NotNull ByteArrayOutputStream bytes, int value, boolean motorola)
+    {
+        if (motorola) {
+            writeShort(bytes, value >>> 16, true);
+            writeShort(bytes, value, true);
+        } else {
+            writeShort(bytes, value, false);
+            writeShort(bytes, value >>> 16, false);
+        }
+    }
+}